@@ -0,0 +1,57 @@
+package com.gfs.chunkserver.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Asigna un plazo a cada petición entrante
+ * - Usa el presupuesto del header X-GFS-Timeout-Ms o el presupuesto por defecto
+ * - Una petición que llega con el plazo vencido se descarta con 504 sin ejecutarla
+ */
+@Component
+public class DeadlineFilter extends OncePerRequestFilter {
+
+    @Value("${chunkserver.deadline.default-ms:60000}")
+    private long DEFAULT_BUDGET_MS;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        long budgetMs = DEFAULT_BUDGET_MS;
+        String header = request.getHeader(RequestDeadline.HEADER);
+        if (header != null) {
+            try {
+                budgetMs = Long.parseLong(header.trim());
+            } catch (NumberFormatException e) {
+                // Header inválido: se usa el presupuesto por defecto
+            }
+        }
+
+        if (budgetMs <= 0) {
+            System.out.println("   ⏱️  Petición descartada, plazo vencido: " + request.getMethod() + " " +
+                               request.getRequestURI());
+            response.setStatus(HttpStatus.GATEWAY_TIMEOUT.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.getWriter().write("{\"status\":\"error\",\"message\":\"Plazo de la petición vencido\"}");
+            return;
+        }
+
+        RequestDeadline.start(budgetMs);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestDeadline.clear();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.gfs.chunkserver.config;
+
+import java.util.function.Supplier;
+
+/**
+ * Plazo (deadline) de la operación en curso
+ * - Se fija al recibir una petición, con el presupuesto del header X-GFS-Timeout-Ms
+ * - Las llamadas salientes envían el presupuesto restante en el mismo header
+ * - Se guarda por hilo: el trabajo que cambia de hilo lo captura con wrap()
+ */
+public final class RequestDeadline {
+
+    public static final String HEADER = "X-GFS-Timeout-Ms";
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private RequestDeadline() {
+    }
+
+    /**
+     * Inicia un plazo de budgetMs a partir de ahora en el hilo actual
+     */
+    public static void start(long budgetMs) {
+        DEADLINE.set(System.currentTimeMillis() + budgetMs);
+    }
+
+    /**
+     * Instante límite (epoch ms) del hilo actual, o null si no hay plazo
+     */
+    public static Long current() {
+        return DEADLINE.get();
+    }
+
+    /**
+     * Restablece un plazo capturado en otro hilo (null lo quita)
+     */
+    public static void set(Long deadline) {
+        if (deadline == null) {
+            DEADLINE.remove();
+        } else {
+            DEADLINE.set(deadline);
+        }
+    }
+
+    public static void clear() {
+        DEADLINE.remove();
+    }
+
+    /**
+     * Milisegundos restantes; Long.MAX_VALUE si no hay plazo
+     */
+    public static long remainingMs() {
+        Long deadline = DEADLINE.get();
+        return deadline != null ? deadline - System.currentTimeMillis() : Long.MAX_VALUE;
+    }
+
+    public static boolean isExpired() {
+        return remainingMs() <= 0;
+    }
+
+    /**
+     * Lanza ExceededException si el plazo ya venció
+     */
+    public static void check(String operation) {
+        if (isExpired()) {
+            throw new ExceededException("Plazo vencido: " + operation);
+        }
+    }
+
+    /**
+     * Ejecuta la tarea en otro hilo con el plazo del hilo que la crea
+     */
+    public static Runnable wrap(Runnable task) {
+        Long deadline = current();
+        return () -> {
+            Long previous = current();
+            set(deadline);
+            try {
+                task.run();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    public static <T> Supplier<T> wrap(Supplier<T> task) {
+        Long deadline = current();
+        return () -> {
+            Long previous = current();
+            set(deadline);
+            try {
+                return task.get();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    /**
+     * El plazo de la operación venció antes de completar el trabajo
+     */
+    public static class ExceededException extends RuntimeException {
+        public ExceededException(String message) {
+            super(message);
+        }
+    }
+}
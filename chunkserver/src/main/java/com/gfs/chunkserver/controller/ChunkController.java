@@ -1,29 +1,50 @@
 package com.gfs.chunkserver.controller;
 
+import com.gfs.chunkserver.config.HttpTransportConfig;
+import com.gfs.chunkserver.service.ReplicationService;
 import com.gfs.chunkserver.service.StorageService;
+import com.gfs.chunkserver.service.WriteTokenService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/chunk")
-@CrossOrigin(origins = "*")
+// Solo el cliente GFS sirve páginas que escriben directamente en los chunkservers
+@CrossOrigin(origins = "${chunkserver.cors.allowed-origins:http://localhost:8080}")
 public class ChunkController {
 
     @Autowired
     private StorageService storageService;
 
+    @Autowired
+    private ReplicationService replicationService;
+
+    @Autowired
+    private WriteTokenService writeTokens;
+
+    @Autowired
+    private HttpTransportConfig httpTransport;
+
     /**
      * Escribe un chunk en disco
+     * Con secreto configurado exige un token de escritura que incluya a este servidor
      */
     @PostMapping("/write")
-    public ResponseEntity<Map<String, String>> writeChunk(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<Map<String, String>> writeChunk(
+            @RequestHeader(value = WriteTokenService.TOKEN_HEADER, required = false) String token,
+            @RequestBody Map<String, Object> request) {
         try {
             String pdfId = (String) request.get("pdfId");
             Integer chunkIndex = (Integer) request.get("chunkIndex");
@@ -36,7 +57,14 @@ public class ChunkController {
                 return ResponseEntity.badRequest().body(error);
             }
 
-            storageService.writeChunk(pdfId, chunkIndex, data);
+            if (writeTokens.isEnabled()) {
+                byte[] bytes = Base64.getDecoder().decode(data);
+                writeTokens.verify(token, pdfId, chunkIndex, bytes)
+                        .downstreamOf(replicationService.getChunkserverUrl());
+                storageService.writeChunk(pdfId, chunkIndex, bytes);
+            } else {
+                storageService.writeChunk(pdfId, chunkIndex, data);
+            }
 
             Map<String, String> response = new HashMap<>();
             response.put("status", "success");
@@ -44,6 +72,19 @@ public class ChunkController {
 
             return ResponseEntity.ok(response);
 
+        } catch (SecurityException e) {
+            System.out.println("   🚫 Escritura rechazada: " + e.getMessage());
+            Map<String, String> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(error);
+
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+
         } catch (Exception e) {
             e.printStackTrace();
             Map<String, String> error = new HashMap<>();
@@ -86,6 +127,178 @@ public class ChunkController {
         }
     }
 
+    /**
+     * Escribe un chunk en disco a partir de los bytes crudos
+     * Evita el costo de Base64 y JSON en el camino de datos
+     * Si llega una cadena de réplicas, reenvía el chunk al siguiente servidor
+     * mientras escribe en disco y confirma cuando la cadena completa termina
+     * Con X-GFS-Chain-Ack responde en cuanto escribieron esos servidores de la cadena;
+     * el último de ellos informa al Master las réplicas que se escriben después
+     * Con secreto configurado exige token de escritura (lo envían el cliente GFS, el Master
+     * y los chunkservers al reenviar) y la cadena sale del token
+     */
+    @PostMapping(value = "/data/{pdfId}/{chunkIndex}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Map<String, Object>> writeChunkData(
+            @PathVariable String pdfId,
+            @PathVariable int chunkIndex,
+            @RequestHeader(value = WriteTokenService.TOKEN_HEADER, required = false) String token,
+            @RequestHeader(value = ReplicationService.REPLICA_CHAIN_HEADER, required = false) String chainHeader,
+            @RequestHeader(value = ReplicationService.CHAIN_ACK_HEADER, defaultValue = "0") int ack,
+            @RequestHeader(value = ReplicationService.UPLOAD_REF_HEADER, required = false) String uploadRef,
+            @RequestBody byte[] data) {
+        if (token == null && !writeTokens.isEnabled()) {
+            return writeChain(pdfId, chunkIndex, data, replicationService.parseChain(chainHeader), null,
+                    ack, uploadRef);
+        }
+        return writeAuthorized(pdfId, chunkIndex, token, data, ack, uploadRef);
+    }
+
+    /**
+     * Escribe un chunk enviado directamente por el navegador
+     * Requiere un token de escritura firmado por el cliente GFS (header X-GFS-Write-Token);
+     * reenvía solo a los servidores de la cadena autorizada por el token y cada servidor
+     * que guardó el chunk agrega su recibo firmado
+     */
+    @PutMapping(value = "/data/{pdfId}/{chunkIndex}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Map<String, Object>> writeChunkDirect(
+            @PathVariable String pdfId,
+            @PathVariable int chunkIndex,
+            @RequestHeader(value = WriteTokenService.TOKEN_HEADER, required = false) String token,
+            @RequestBody byte[] data) {
+        return writeAuthorized(pdfId, chunkIndex, token, data, 0, null);
+    }
+
+    private ResponseEntity<Map<String, Object>> writeAuthorized(String pdfId, int chunkIndex, String token,
+                                                                byte[] data, int ack, String uploadRef) {
+        List<String> downstream;
+        try {
+            downstream = writeTokens.verify(token, pdfId, chunkIndex, data)
+                    .downstreamOf(replicationService.getChunkserverUrl());
+
+        } catch (SecurityException e) {
+            System.out.println("   🚫 Escritura rechazada (" + pdfId + "/" + chunkIndex + "): " +
+                               e.getMessage());
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(error);
+
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        return writeChain(pdfId, chunkIndex, data, downstream, token, ack, uploadRef);
+    }
+
+    /**
+     * Escribe el chunk en disco mientras lo reenvía aguas abajo
+     * Con token, stored solo incluye los servidores con recibo válido: este servidor
+     * firma el suyo y verifica los que llegan de la cadena
+     * Con ack = 1 y sesión de upload no espera el reenvío: responde con su propia
+     * escritura y lo que confirme el resto de la cadena se informa al Master
+     */
+    private ResponseEntity<Map<String, Object>> writeChain(String pdfId, int chunkIndex, byte[] data,
+                                                           List<String> downstream, String token,
+                                                           int ack, String uploadRef) {
+        CompletableFuture<ReplicationService.Forwarded> forward = replicationService.forwardAsync(
+                pdfId, chunkIndex, data, downstream, token, ack > 1 ? ack - 1 : 0, uploadRef);
+        boolean deferred = ack == 1 && uploadRef != null && !downstream.isEmpty();
+
+        List<String> stored = new ArrayList<>();
+        Map<String, String> receipts = new LinkedHashMap<>();
+        Map<String, Object> response = new HashMap<>();
+        HttpStatus status;
+        try {
+            storageService.writeChunk(pdfId, chunkIndex, data);
+            String self = replicationService.getChunkserverUrl();
+            stored.add(self);
+            if (token != null) {
+                receipts.put(self, writeTokens.receipt(token, self));
+            }
+
+            response.put("status", "success");
+            response.put("message", "Chunk guardado");
+            status = HttpStatus.OK;
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            status = HttpStatus.INTERNAL_SERVER_ERROR;
+        }
+
+        if (deferred) {
+            forward.thenAccept(forwarded -> replicationService.reportDeferred(
+                    uploadRef, downstream, new ArrayList<>(confirmed(token, forwarded).keySet())));
+        } else {
+            Map<String, String> confirmed = confirmed(token, forward.join());
+            stored.addAll(confirmed.keySet());
+            receipts.putAll(confirmed);
+        }
+        if (token != null) {
+            response.put("receipts", receipts);
+        }
+        response.put("stored", stored);
+        return ResponseEntity.status(status).body(response);
+    }
+
+    /**
+     * Servidores aguas abajo que confirmaron la escritura, con su recibo si hay token
+     */
+    private Map<String, String> confirmed(String token, ReplicationService.Forwarded forwarded) {
+        if (token != null) {
+            return writeTokens.verifiedReceipts(token, forwarded.stored(), forwarded.receipts());
+        }
+        Map<String, String> confirmed = new LinkedHashMap<>();
+        forwarded.stored().forEach(url -> confirmed.put(url, ""));
+        return confirmed;
+    }
+
+    /**
+     * Lee un chunk desde disco y lo devuelve como bytes crudos
+     */
+    @GetMapping(value = "/data/{pdfId}/{chunkIndex}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> readChunkData(
+            @PathVariable String pdfId,
+            @PathVariable int chunkIndex) {
+        try {
+            byte[] data = storageService.readChunk(pdfId, chunkIndex);
+            return ResponseEntity.ok(data);
+
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Lee un fragmento de un chunk (offset y longitud dentro del chunk)
+     */
+    @GetMapping(value = "/data/{pdfId}/{chunkIndex}/range", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> readChunkRange(
+            @PathVariable String pdfId,
+            @PathVariable int chunkIndex,
+            @RequestParam long offset,
+            @RequestParam int length) {
+        try {
+            byte[] data = storageService.readChunkRange(pdfId, chunkIndex, offset, length);
+            return ResponseEntity.ok(data);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).build();
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     /**
      * Verifica si un chunk existe
      */
@@ -126,12 +339,17 @@ public class ChunkController {
 
     /**
      * Elimina un chunk
+     * Con secreto configurado solo con un token de borrado del Master para este servidor
      */
     @DeleteMapping("/delete")
     public ResponseEntity<Map<String, String>> deleteChunk(
             @RequestParam String pdfId,
-            @RequestParam int chunkIndex) {
+            @RequestParam int chunkIndex,
+            @RequestHeader(value = WriteTokenService.DELETE_TOKEN_HEADER, required = false) String token) {
         try {
+            if (writeTokens.isEnabled()) {
+                writeTokens.verifyDelete(token, pdfId, chunkIndex, replicationService.getChunkserverUrl());
+            }
             storageService.deleteChunk(pdfId, chunkIndex);
 
             Map<String, String> response = new HashMap<>();
@@ -140,6 +358,13 @@ public class ChunkController {
 
             return ResponseEntity.ok(response);
 
+        } catch (SecurityException e) {
+            System.out.println("   🚫 Borrado rechazado (" + pdfId + "/" + chunkIndex + "): " + e.getMessage());
+            Map<String, String> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(error);
+
         } catch (Exception e) {
             e.printStackTrace();
             Map<String, String> error = new HashMap<>();
@@ -156,6 +381,7 @@ public class ChunkController {
     public ResponseEntity<Map<String, Object>> getStats() {
         try {
             Map<String, Object> stats = storageService.getStats();
+            stats.put("httpPool", httpTransport.getPoolStats());
             return ResponseEntity.ok(stats);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -35,7 +35,9 @@ public class HeartbeatService {
     @Autowired
     private StorageService storageService;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private RestTemplate restTemplate;
+
     private String chunkserverUrl;
     private int consecutiveFailures = 0;
     private boolean wasDisconnected = false;
@@ -1,6 +1,7 @@
 package com.gfs.chunkserver.service;
 
 import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -30,7 +31,8 @@ public class RegistrationService {
     @Value("${chunkserver.hostname:localhost}")
     private String hostname;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private RestTemplate restTemplate;
 
     @PostConstruct
     public void autoRegister() {
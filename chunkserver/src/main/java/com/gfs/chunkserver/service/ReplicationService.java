@@ -0,0 +1,192 @@
+package com.gfs.chunkserver.service;
+
+import com.gfs.chunkserver.config.RequestDeadline;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Servicio de replicación en cadena (estilo GFS)
+ * El cliente envía cada chunk una sola vez a la primaria; cada chunkserver
+ * lo reenvía al siguiente de la cadena mientras lo escribe en su disco
+ */
+@Service
+public class ReplicationService {
+
+    public static final String REPLICA_CHAIN_HEADER = "X-GFS-Replica-Chain";
+
+    // Servidores de la cadena (este incluido) que deben escribir antes de responder; sin header, todos
+    public static final String CHAIN_ACK_HEADER = "X-GFS-Chain-Ack";
+
+    // Sesión de upload del chunk (uploadId/chunkIndex/pdfId): a quién informar las réplicas diferidas
+    public static final String UPLOAD_REF_HEADER = "X-GFS-Upload-Ref";
+
+    /**
+     * Resultado del reenvío: servidores de la cadena que confirmaron la escritura
+     * y sus recibos (solo en escrituras con token)
+     */
+    public record Forwarded(List<String> stored, Map<String, String> receipts) {
+        static final Forwarded NONE = new Forwarded(Collections.emptyList(), Collections.emptyMap());
+    }
+
+    @Value("${server.port}")
+    private int serverPort;
+
+    @Value("${chunkserver.hostname:localhost}")
+    private String hostname;
+
+    @Value("${chunkserver.master-url}")
+    private String masterUrl;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    private ExecutorService forwardExecutor;
+    private String chunkserverUrl;
+
+    @PostConstruct
+    public void init() {
+        chunkserverUrl = "http://" + hostname + ":" + serverPort;
+        forwardExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "chunk-forward");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        forwardExecutor.shutdownNow();
+    }
+
+    /**
+     * URL con la que este chunkserver se identifica en la cadena
+     */
+    public String getChunkserverUrl() {
+        return chunkserverUrl;
+    }
+
+    /**
+     * Interpreta el header de cadena: URLs separadas por coma
+     */
+    public List<String> parseChain(String chainHeader) {
+        if (chainHeader == null || chainHeader.isBlank()) {
+            return Collections.emptyList();
+        }
+        List<String> chain = new ArrayList<>();
+        for (String url : chainHeader.split(",")) {
+            if (!url.isBlank()) {
+                chain.add(url.trim());
+            }
+        }
+        return chain;
+    }
+
+    /**
+     * Reenvía el chunk al siguiente servidor de la cadena de forma asíncrona
+     * Retorna las URLs que confirmaron la escritura aguas abajo (vacía si falla);
+     * solo cuentan servidores de la propia cadena
+     * El reenvío lleva el plazo restante de la petición recibida, el token de escritura
+     * y las confirmaciones que aún faltan para responder (ack, 0 = toda la cadena)
+     */
+    public CompletableFuture<Forwarded> forwardAsync(String pdfId, int chunkIndex, byte[] data,
+                                                     List<String> chain, String token,
+                                                     int ack, String uploadRef) {
+        if (chain.isEmpty()) {
+            return CompletableFuture.completedFuture(Forwarded.NONE);
+        }
+
+        return CompletableFuture.supplyAsync(RequestDeadline.wrap(() -> {
+            String next = chain.get(0);
+            List<String> rest = chain.subList(1, chain.size());
+
+            try {
+                HttpHeaders headers = new HttpHeaders();
+                headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+                headers.set(REPLICA_CHAIN_HEADER, String.join(",", rest));
+                if (token != null) {
+                    headers.set(WriteTokenService.TOKEN_HEADER, token);
+                }
+                if (ack > 0) {
+                    headers.set(CHAIN_ACK_HEADER, String.valueOf(ack));
+                }
+                if (uploadRef != null) {
+                    headers.set(UPLOAD_REF_HEADER, uploadRef);
+                }
+
+                HttpEntity<byte[]> entity = new HttpEntity<>(data, headers);
+                ResponseEntity<Map> response = restTemplate.postForEntity(
+                        next + "/api/chunk/data/{pdfId}/{chunkIndex}",
+                        entity, Map.class, pdfId, chunkIndex);
+
+                Map<?, ?> body = response.getBody() != null ? response.getBody() : Collections.emptyMap();
+                List<String> stored = new ArrayList<>();
+                if (body.get("stored") instanceof List<?> confirmed) {
+                    for (Object url : confirmed) {
+                        if (chain.contains(url) && !stored.contains(url)) {
+                            stored.add((String) url);
+                        }
+                    }
+                } else {
+                    stored.add(next);
+                }
+
+                Map<String, String> receipts = new HashMap<>();
+                if (body.get("receipts") instanceof Map<?, ?> signed) {
+                    signed.forEach((url, receipt) -> receipts.put(String.valueOf(url), String.valueOf(receipt)));
+                }
+                return new Forwarded(stored, receipts);
+
+            } catch (Exception e) {
+                System.err.println("⚠️  Error reenviando chunk " + chunkIndex + " a " + next +
+                                   ": " + e.getMessage());
+                return Forwarded.NONE;
+            }
+        }), forwardExecutor);
+    }
+
+    /**
+     * Informa al Master las réplicas que la cadena escribió después de responder al cliente
+     * Las que no confirmaron quedan como fallidas para que el Master las reponga
+     */
+    public void reportDeferred(String uploadRef, List<String> downstream, List<String> stored) {
+        String[] ref = uploadRef != null ? uploadRef.split("/", 3) : new String[0];
+        if (ref.length != 3) {
+            System.err.println("⚠️  Referencia de upload inválida, réplicas diferidas sin informar: " + uploadRef);
+            return;
+        }
+
+        List<String> failed = new ArrayList<>(downstream);
+        failed.removeAll(stored);
+        try {
+            Map<String, Object> request = new HashMap<>();
+            request.put("pdfId", URLDecoder.decode(ref[2], StandardCharsets.UTF_8));
+            request.put("chunkIndex", Integer.parseInt(ref[1]));
+            request.put("stored", stored);
+            request.put("failed", failed);
+            restTemplate.postForEntity(masterUrl + "/api/master/upload/session/{uploadId}/deferred-replicas",
+                    request, Map.class, ref[0]);
+
+        } catch (Exception e) {
+            System.err.println("⚠️  Error informando réplicas diferidas (" + uploadRef + "): " + e.getMessage());
+        }
+    }
+}
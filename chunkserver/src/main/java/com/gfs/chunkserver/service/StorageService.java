@@ -6,9 +6,14 @@ import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.stream.Stream;
 
@@ -47,19 +52,39 @@ public class StorageService {
     }
 
     /**
-     * Guarda un chunk en disco
+     * Guarda un chunk en disco a partir de datos en Base64
      */
     public void writeChunk(String pdfId, int chunkIndex, String base64Data) {
+        byte[] data;
+        try {
+            data = Base64.getDecoder().decode(base64Data);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Error decodificando Base64: " + e.getMessage(), e);
+        }
+        writeChunk(pdfId, chunkIndex, data);
+    }
+
+    /**
+     * Guarda un chunk en disco
+     * Se escribe en un archivo temporal y se renombra: los chunks deduplicados
+     * (cas_<hash>) pueden escribirse a la vez desde varios uploads y nunca deben
+     * leerse a medio escribir
+     */
+    public void writeChunk(String pdfId, int chunkIndex, byte[] data) {
         try {
             String filename = generateFilename(pdfId, chunkIndex);
             Path filePath = resolvedStoragePath.resolve(filename);
-
-            byte[] data = Base64.getDecoder().decode(base64Data);
-            Files.write(filePath, data);
+            Path tempPath = resolvedStoragePath.resolve(filename + "." + UUID.randomUUID() + ".tmp");
+
+            try {
+                Files.write(tempPath, data);
+                Files.move(tempPath, filePath, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempPath);
+            }
             System.out.println("[" + chunkserverId + "] Chunk guardado: " + filename +
                                " (" + data.length + " bytes)");
-        } catch (IllegalArgumentException e) {
-            throw new RuntimeException("Error decodificando Base64: " + e.getMessage(), e);
         } catch (IOException e) {
             throw new RuntimeException("Error escribiendo chunk: " + e.getMessage(), e);
         }
@@ -67,6 +92,7 @@ public class StorageService {
 
     /**
      * Lee un chunk desde disco
+     * Lanza NoSuchElementException si el chunk no está en este servidor
      */
     public byte[] readChunk(String pdfId, int chunkIndex) {
         try {
@@ -74,13 +100,53 @@ public class StorageService {
             Path filePath = resolvedStoragePath.resolve(filename);
 
             if (!Files.exists(filePath)) {
-                throw new RuntimeException("Chunk no encontrado: " + filename);
+                throw new NoSuchElementException("Chunk no encontrado: " + filename);
             }
 
             byte[] data = Files.readAllBytes(filePath);
             System.out.println("📖 [" + chunkserverId + "] Chunk leído: " + filename +
                                " (" + data.length + " bytes)");
             return data;
+        } catch (NoSuchFileException e) {
+            // Borrado entre la comprobación y la lectura
+            throw new NoSuchElementException("Chunk no encontrado: " + e.getFile());
+        } catch (IOException e) {
+            throw new RuntimeException("Error leyendo chunk: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lee un fragmento de un chunk desde disco
+     * Solo se leen los bytes pedidos, no el chunk completo
+     * Lanza NoSuchElementException si el chunk no está e IllegalArgumentException si el rango no cabe
+     */
+    public byte[] readChunkRange(String pdfId, int chunkIndex, long offset, int length) {
+        String filename = generateFilename(pdfId, chunkIndex);
+        Path filePath = resolvedStoragePath.resolve(filename);
+
+        if (!Files.exists(filePath)) {
+            throw new NoSuchElementException("Chunk no encontrado: " + filename);
+        }
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long available = channel.size() - offset;
+            if (offset < 0 || length < 0 || available < length) {
+                throw new IllegalArgumentException("Rango fuera del chunk: offset=" + offset +
+                                                   ", length=" + length);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    break;
+                }
+            }
+
+            System.out.println("📖 [" + chunkserverId + "] Rango leído: " + filename +
+                               " (" + offset + "+" + length + " bytes)");
+            return buffer.array();
+        } catch (NoSuchFileException e) {
+            throw new NoSuchElementException("Chunk no encontrado: " + filename);
         } catch (IOException e) {
             throw new RuntimeException("Error leyendo chunk: " + e.getMessage(), e);
         }
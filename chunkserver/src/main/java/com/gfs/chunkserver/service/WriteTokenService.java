@@ -0,0 +1,173 @@
+package com.gfs.chunkserver.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tokens de escritura para chunks subidos directamente desde el navegador
+ * - El cliente GFS los firma con HMAC-SHA256 y un secreto compartido con los chunkservers
+ * - Cada token autoriza un chunk concreto (id, índice, tamaño y hash) en una cadena
+ *   de chunkservers concreta hasta que vence: el chunk solo se reenvía a esa cadena
+ * - Tras escribir, cada chunkserver firma un recibo solo para sí mismo
+ * - El Master firma con el mismo secreto tokens de borrado para un chunk y un servidor
+ * Sin secreto configurado la escritura directa queda deshabilitada
+ */
+@Service
+public class WriteTokenService {
+
+    public static final String TOKEN_HEADER = "X-GFS-Write-Token";
+    public static final String DELETE_TOKEN_HEADER = "X-GFS-Delete-Token";
+
+    @Value("${chunkserver.write-token.secret:}")
+    private String SECRET;
+
+    /**
+     * Contenido verificado de un token: la cadena de chunkservers autorizada
+     */
+    public record Claims(List<String> targets) {
+
+        /**
+         * Servidores a los que chunkserverUrl debe reenviar el chunk
+         * Lanza SecurityException si el token no incluye a chunkserverUrl
+         */
+        public List<String> downstreamOf(String chunkserverUrl) {
+            int position = targets.indexOf(chunkserverUrl);
+            if (position < 0) {
+                throw new SecurityException("El token no autoriza escribir en " + chunkserverUrl);
+            }
+            return targets.subList(position + 1, targets.size());
+        }
+    }
+
+    public boolean isEnabled() {
+        return !SECRET.isEmpty();
+    }
+
+    /**
+     * Verifica que el token autorice escribir estos bytes en pdfId/chunkIndex
+     * Lanza SecurityException si el token no es válido y IllegalArgumentException
+     * si el contenido no coincide con lo autorizado
+     */
+    public Claims verify(String token, String pdfId, int chunkIndex, byte[] data) {
+        if (!isEnabled()) {
+            throw new SecurityException("Escritura directa deshabilitada");
+        }
+        if (token == null || token.isBlank()) {
+            throw new SecurityException("Falta el token de escritura");
+        }
+
+        String[] claims = claims(token, "write", 6);
+        if (Long.parseLong(claims[5]) < System.currentTimeMillis()) {
+            throw new SecurityException("Token de escritura vencido");
+        }
+        if (!claims[0].equals(pdfId) || Integer.parseInt(claims[1]) != chunkIndex) {
+            throw new SecurityException("El token no autoriza el chunk " + pdfId + "/" + chunkIndex);
+        }
+        if (Integer.parseInt(claims[2]) != data.length) {
+            throw new IllegalArgumentException("Tamaño de chunk inválido: " + data.length +
+                                               " (esperado " + claims[2] + ")");
+        }
+        // Un chunk direccionado por contenido lo comparten otros PDFs: debe coincidir con su hash
+        if (!claims[3].isEmpty() && !claims[3].equals(sha256(data))) {
+            throw new IllegalArgumentException("El contenido del chunk no coincide con su hash");
+        }
+        return new Claims(claims[4].isEmpty() ? List.of() : List.of(claims[4].split(",")));
+    }
+
+    /**
+     * Verifica que el token del Master autorice borrar pdfId/chunkIndex de chunkserverUrl
+     * Lanza SecurityException si falta, no es válido, venció o es de otro chunk o servidor
+     */
+    public void verifyDelete(String token, String pdfId, int chunkIndex, String chunkserverUrl) {
+        if (token == null || token.isBlank()) {
+            throw new SecurityException("Falta el token de borrado");
+        }
+
+        String[] claims = claims(token, "delete", 4);
+        if (Long.parseLong(claims[3]) < System.currentTimeMillis()) {
+            throw new SecurityException("Token de borrado vencido");
+        }
+        if (!claims[0].equals(pdfId) || Integer.parseInt(claims[1]) != chunkIndex
+                || !claims[2].equals(chunkserverUrl)) {
+            throw new SecurityException("El token no autoriza borrar " + pdfId + "/" + chunkIndex);
+        }
+    }
+
+    /**
+     * Claims de un token firmado para purpose (write o delete)
+     */
+    private String[] claims(String token, String purpose, int count) {
+        String[] parts = token.split("\\.");
+        if (parts.length != 2 || !MessageDigest.isEqual(
+                sign(purpose + "\n" + parts[0]).getBytes(StandardCharsets.UTF_8),
+                parts[1].getBytes(StandardCharsets.UTF_8))) {
+            throw new SecurityException("Token inválido");
+        }
+
+        String[] claims;
+        try {
+            claims = new String(Base64.getUrlDecoder().decode(parts[0]), StandardCharsets.UTF_8)
+                    .split("\n", -1);
+        } catch (IllegalArgumentException e) {
+            throw new SecurityException("Token inválido");
+        }
+        if (claims.length != count) {
+            throw new SecurityException("Token inválido");
+        }
+        return claims;
+    }
+
+    /**
+     * Recibo firmado de que chunkserverUrl guardó el chunk autorizado por el token
+     */
+    public String receipt(String token, String chunkserverUrl) {
+        return sign("receipt\n" + token + "\n" + chunkserverUrl);
+    }
+
+    /**
+     * Recibos válidos de los servidores stored (los demás se descartan)
+     */
+    public Map<String, String> verifiedReceipts(String token, List<String> stored, Map<String, String> receipts) {
+        Map<String, String> verified = new LinkedHashMap<>();
+        for (String chunkserverUrl : stored) {
+            String receipt = receipts.get(chunkserverUrl);
+            if (receipt != null && MessageDigest.isEqual(
+                    receipt(token, chunkserverUrl).getBytes(StandardCharsets.UTF_8),
+                    receipt.getBytes(StandardCharsets.UTF_8))) {
+                verified.put(chunkserverUrl, receipt);
+            }
+        }
+        return verified;
+    }
+
+    private String sign(String value) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(mac.doFinal(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
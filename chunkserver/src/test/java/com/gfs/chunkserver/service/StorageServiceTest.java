@@ -0,0 +1,62 @@
+package com.gfs.chunkserver.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Errores de lectura: chunk ausente frente a fallo de disco
+ */
+class StorageServiceTest {
+
+    private static final byte[] DATA = {1, 2, 3, 4, 5};
+
+    @TempDir
+    Path storage;
+
+    private StorageService storageService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        storageService = new StorageService();
+        ReflectionTestUtils.setField(storageService, "storagePath", storage.toString());
+        ReflectionTestUtils.setField(storageService, "chunkserverId", "test");
+        storageService.init();
+        storageService.writeChunk("doc.pdf", 0, DATA);
+    }
+
+    @Test
+    void readsStoredChunkAndRange() {
+        assertArrayEquals(DATA, storageService.readChunk("doc.pdf", 0));
+        assertArrayEquals(new byte[]{2, 3}, storageService.readChunkRange("doc.pdf", 0, 1, 2));
+    }
+
+    @Test
+    void missingChunkIsNotFound() {
+        assertThrows(NoSuchElementException.class, () -> storageService.readChunk("doc.pdf", 1));
+        assertThrows(NoSuchElementException.class, () -> storageService.readChunkRange("doc.pdf", 1, 0, 1));
+    }
+
+    @Test
+    void rangeOutsideChunkIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> storageService.readChunkRange("doc.pdf", 0, 4, 2));
+        assertThrows(IllegalArgumentException.class, () -> storageService.readChunkRange("doc.pdf", 0, -1, 1));
+    }
+
+    @Test
+    void unreadableChunkIsNotReportedAsMissing() throws Exception {
+        // Un directorio en lugar del fichero: existe pero no se puede leer
+        Files.createDirectory(storage.resolve("doc.pdf_chunk_2.bin"));
+
+        RuntimeException error = assertThrows(RuntimeException.class, () -> storageService.readChunk("doc.pdf", 2));
+
+        assertFalse(error instanceof NoSuchElementException);
+    }
+}
@@ -0,0 +1,163 @@
+package com.gfs.chunkserver.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteTokenServiceTest {
+
+    private static final String SECRET = "test-secret";
+    private static final String PRIMARY = "http://localhost:9001";
+    private static final String SECONDARY = "http://localhost:9002";
+    private static final String TERTIARY = "http://localhost:9003";
+    private static final byte[] DATA = "chunk".getBytes(StandardCharsets.UTF_8);
+
+    private WriteTokenService writeTokens;
+
+    @BeforeEach
+    void setUp() {
+        writeTokens = new WriteTokenService();
+        ReflectionTestUtils.setField(writeTokens, "SECRET", SECRET);
+    }
+
+    @Test
+    void verifiedTokenAuthorizesItsChain() {
+        String token = token(SECRET, "doc.pdf", 2, DATA.length, "", List.of(PRIMARY, SECONDARY, TERTIARY), future());
+
+        WriteTokenService.Claims claims = writeTokens.verify(token, "doc.pdf", 2, DATA);
+
+        assertEquals(List.of(SECONDARY, TERTIARY), claims.downstreamOf(PRIMARY));
+        assertEquals(List.of(TERTIARY), claims.downstreamOf(SECONDARY));
+        assertEquals(List.of(), claims.downstreamOf(TERTIARY));
+        assertThrows(SecurityException.class, () -> claims.downstreamOf("http://evil:80"));
+    }
+
+    @Test
+    void rejectsWhenDisabledMissingForgedOrExpired() {
+        WriteTokenService disabled = new WriteTokenService();
+        ReflectionTestUtils.setField(disabled, "SECRET", "");
+        String valid = token(SECRET, "doc.pdf", 0, DATA.length, "", List.of(PRIMARY), future());
+
+        assertThrows(SecurityException.class, () -> disabled.verify(valid, "doc.pdf", 0, DATA));
+        assertThrows(SecurityException.class, () -> writeTokens.verify(null, "doc.pdf", 0, DATA));
+        assertThrows(SecurityException.class, () -> writeTokens.verify(
+                token("other-secret", "doc.pdf", 0, DATA.length, "", List.of(PRIMARY), future()), "doc.pdf", 0, DATA));
+        assertThrows(SecurityException.class, () -> writeTokens.verify(
+                token(SECRET, "doc.pdf", 0, DATA.length, "", List.of(PRIMARY), System.currentTimeMillis() - 1),
+                "doc.pdf", 0, DATA));
+    }
+
+    @Test
+    void rejectsOtherChunkOrContent() {
+        String token = token(SECRET, "doc.pdf", 0, DATA.length, "", List.of(PRIMARY), future());
+
+        assertThrows(SecurityException.class, () -> writeTokens.verify(token, "doc.pdf", 1, DATA));
+        assertThrows(SecurityException.class, () -> writeTokens.verify(token, "other.pdf", 0, DATA));
+        assertThrows(IllegalArgumentException.class, () -> writeTokens.verify(token, "doc.pdf", 0, new byte[3]));
+
+        byte[] other = "other".getBytes(StandardCharsets.UTF_8);
+        String hashed = token(SECRET, "cas_x", 0, DATA.length, sha256(DATA), List.of(PRIMARY), future());
+        writeTokens.verify(hashed, "cas_x", 0, DATA);
+        assertThrows(IllegalArgumentException.class, () -> writeTokens.verify(hashed, "cas_x", 0, other));
+    }
+
+    @Test
+    void keepsOnlyValidReceiptsOfStoredServers() {
+        String token = token(SECRET, "doc.pdf", 0, DATA.length, "", List.of(PRIMARY, SECONDARY, TERTIARY), future());
+        String otherToken = token(SECRET, "doc.pdf", 1, DATA.length, "", List.of(PRIMARY, SECONDARY), future());
+
+        Map<String, String> receipts = Map.of(
+                SECONDARY, writeTokens.receipt(token, SECONDARY),
+                // Recibo de otro servidor o de otro token: no prueba la escritura
+                TERTIARY, writeTokens.receipt(token, SECONDARY),
+                PRIMARY, writeTokens.receipt(otherToken, PRIMARY));
+
+        Map<String, String> verified = writeTokens.verifiedReceipts(token, List.of(PRIMARY, SECONDARY, TERTIARY),
+                receipts);
+
+        assertEquals(Map.of(SECONDARY, receipts.get(SECONDARY)), verified);
+        assertTrue(writeTokens.verifiedReceipts(token, List.of(SECONDARY), Map.of()).isEmpty());
+    }
+
+    @Test
+    void deleteTokenIsBoundToChunkAndServer() {
+        String token = deleteToken(SECRET, "doc.pdf", 1, PRIMARY, future());
+
+        writeTokens.verifyDelete(token, "doc.pdf", 1, PRIMARY);
+
+        assertThrows(SecurityException.class, () -> writeTokens.verifyDelete(null, "doc.pdf", 1, PRIMARY));
+        assertThrows(SecurityException.class, () -> writeTokens.verifyDelete(token, "doc.pdf", 2, PRIMARY));
+        assertThrows(SecurityException.class, () -> writeTokens.verifyDelete(token, "doc.pdf", 1, SECONDARY));
+        assertThrows(SecurityException.class, () -> writeTokens.verifyDelete(
+                deleteToken("other-secret", "doc.pdf", 1, PRIMARY, future()), "doc.pdf", 1, PRIMARY));
+        assertThrows(SecurityException.class, () -> writeTokens.verifyDelete(
+                deleteToken(SECRET, "doc.pdf", 1, PRIMARY, System.currentTimeMillis() - 1), "doc.pdf", 1, PRIMARY));
+    }
+
+    @Test
+    void writeAndDeleteTokensAreNotInterchangeable() {
+        String write = token(SECRET, "doc.pdf", 0, DATA.length, "", List.of(PRIMARY), future());
+        String delete = deleteToken(SECRET, "doc.pdf", 0, PRIMARY, future());
+
+        assertThrows(SecurityException.class, () -> writeTokens.verifyDelete(write, "doc.pdf", 0, PRIMARY));
+        assertThrows(SecurityException.class, () -> writeTokens.verify(delete, "doc.pdf", 0, DATA));
+    }
+
+    /**
+     * Token de borrado con el formato que emite el Master
+     */
+    private static String deleteToken(String secret, String storageId, int storageIndex, String chunkserverUrl,
+                                      long expiresAt) {
+        String claims = String.join("\n", storageId, String.valueOf(storageIndex), chunkserverUrl,
+                String.valueOf(expiresAt));
+        String payload = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(claims.getBytes(StandardCharsets.UTF_8));
+        return payload + "." + hmac(secret, "delete\n" + payload);
+    }
+
+    /**
+     * Token con el formato que emite el cliente GFS
+     */
+    private static String token(String secret, String storageId, int storageIndex, int length, String contentHash,
+                                List<String> targets, long expiresAt) {
+        String claims = String.join("\n", storageId, String.valueOf(storageIndex), String.valueOf(length),
+                contentHash, String.join(",", targets), String.valueOf(expiresAt));
+        String payload = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(claims.getBytes(StandardCharsets.UTF_8));
+        return payload + "." + hmac(secret, "write\n" + payload);
+    }
+
+    private static String hmac(String secret, String value) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(mac.doFinal(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long future() {
+        return System.currentTimeMillis() + 60_000;
+    }
+}
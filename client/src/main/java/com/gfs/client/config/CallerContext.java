@@ -0,0 +1,57 @@
+package com.gfs.client.config;
+
+/**
+ * Caller (tenant) de la operación en curso
+ * - Se fija al recibir una petición, a partir de su API key (sin ella, ANONYMOUS)
+ * - Las transferencias de chunks se reparten entre callers según su peso y su cuota
+ * - Se guarda por hilo: el trabajo que cambia de hilo lo captura con wrap()
+ */
+public final class CallerContext {
+
+    public static final String API_KEY_HEADER = "X-API-Key";
+    public static final String ANONYMOUS = "anonymous";
+
+    private static final ThreadLocal<String> CALLER = new ThreadLocal<>();
+
+    private CallerContext() {
+    }
+
+    /**
+     * Caller del hilo actual; ANONYMOUS si no hay ninguno
+     */
+    public static String current() {
+        String caller = CALLER.get();
+        return caller != null ? caller : ANONYMOUS;
+    }
+
+    /**
+     * Restablece un caller capturado en otro hilo (null lo quita)
+     */
+    public static void set(String caller) {
+        if (caller == null) {
+            CALLER.remove();
+        } else {
+            CALLER.set(caller);
+        }
+    }
+
+    public static void clear() {
+        CALLER.remove();
+    }
+
+    /**
+     * Ejecuta la tarea en otro hilo con el caller del hilo que la crea
+     */
+    public static Runnable wrap(Runnable task) {
+        String caller = CALLER.get();
+        return () -> {
+            String previous = CALLER.get();
+            set(caller);
+            try {
+                task.run();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+}
@@ -0,0 +1,36 @@
+package com.gfs.client.config;
+
+import com.gfs.client.service.CallerQuotaRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Identifica al caller de cada petición entrante
+ * - Una API key configurada se traduce al nombre de su caller
+ * - Sin API key válida la petición es del caller anónimo: un nombre sin autenticar
+ *   no obtiene peso ni cuota propios
+ */
+@Component
+public class CallerFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private CallerQuotaRegistry callerQuotas;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        CallerContext.set(callerQuotas.resolve(request.getHeader(CallerContext.API_KEY_HEADER)));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            CallerContext.clear();
+        }
+    }
+}
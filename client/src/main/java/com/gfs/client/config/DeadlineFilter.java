@@ -0,0 +1,86 @@
+package com.gfs.client.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Asigna un plazo a cada petición entrante
+ * - Usa el presupuesto del header X-GFS-Timeout-Ms o el presupuesto por defecto
+ * - Sin header, la descarga completa y los uploads multipart (directo o como job) van sin
+ *   plazo: transfieren en streaming y duran lo que tarde el archivo
+ * - Una petición que llega con el plazo vencido se descarta con 504 sin ejecutarla
+ */
+@Component
+public class DeadlineFilter extends OncePerRequestFilter {
+
+    // Método y ruta de los handlers en streaming
+    private static final List<String[]> STREAMING = List.of(
+            new String[]{"GET", "/api/pdf/download/*"},
+            new String[]{"POST", "/api/pdf/upload"},
+            new String[]{"POST", "/api/pdf/upload/jobs"});
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Value("${gfs.deadline.default-ms:60000}")
+    private long DEFAULT_BUDGET_MS;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        Long budgetMs = null;
+        String header = request.getHeader(RequestDeadline.HEADER);
+        if (header != null) {
+            try {
+                budgetMs = Long.parseLong(header.trim());
+            } catch (NumberFormatException e) {
+                // Header inválido: como si no viniera
+            }
+        }
+        if (budgetMs == null) {
+            if (DEFAULT_BUDGET_MS <= 0 || isStreaming(request)) {
+                chain.doFilter(request, response);
+                return;
+            }
+            budgetMs = DEFAULT_BUDGET_MS;
+        }
+
+        if (budgetMs <= 0) {
+            System.out.println("   ⏱️  Petición descartada, plazo vencido: " + request.getMethod() + " " +
+                               request.getRequestURI());
+            response.setStatus(HttpStatus.GATEWAY_TIMEOUT.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.getWriter().write("{\"status\":\"error\",\"message\":\"Plazo de la petición vencido\"}");
+            return;
+        }
+
+        RequestDeadline.start(budgetMs);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestDeadline.clear();
+        }
+    }
+
+    private boolean isStreaming(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (String[] handler : STREAMING) {
+            if (handler[0].equals(request.getMethod()) && pathMatcher.match(handler[1], path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
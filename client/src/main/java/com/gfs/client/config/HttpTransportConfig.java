@@ -0,0 +1,164 @@
+package com.gfs.client.config;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Transporte HTTP compartido para las llamadas entre nodos
+ * - Pool de conexiones keep-alive por chunkserver
+ * - Timeouts de conexión, de espera de conexión y de lectura
+ * - Propagación del plazo de la petición en curso (header X-GFS-Timeout-Ms)
+ * - Peticiones abortables desde otro hilo (RequestCancellation)
+ * - Métricas del pool
+ */
+@Configuration
+public class HttpTransportConfig {
+
+    @Value("${gfs.http.max-connections:200}")
+    private int MAX_CONNECTIONS;
+
+    @Value("${gfs.http.max-connections-per-route:32}")
+    private int MAX_CONNECTIONS_PER_ROUTE;
+
+    @Value("${gfs.http.connect-timeout-ms:2000}")
+    private long CONNECT_TIMEOUT_MS;
+
+    @Value("${gfs.http.connection-request-timeout-ms:5000}")
+    private long CONNECTION_REQUEST_TIMEOUT_MS;
+
+    @Value("${gfs.http.read-timeout-ms:30000}")
+    private long READ_TIMEOUT_MS;
+
+    @Value("${gfs.http.idle-timeout-seconds:30}")
+    private long IDLE_TIMEOUT_SECONDS;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient gfsHttpClient() {
+        connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(MAX_CONNECTIONS)
+                .setMaxConnPerRoute(MAX_CONNECTIONS_PER_ROUTE)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(CONNECT_TIMEOUT_MS))
+                        .setSocketTimeout(Timeout.ofMilliseconds(READ_TIMEOUT_MS))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(CONNECTION_REQUEST_TIMEOUT_MS))
+                        .setResponseTimeout(Timeout.ofMilliseconds(READ_TIMEOUT_MS))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(IDLE_TIMEOUT_SECONDS))
+                .build();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(CloseableHttpClient gfsHttpClient) {
+        HttpComponentsClientHttpRequestFactory requestFactory =
+                new HttpComponentsClientHttpRequestFactory(gfsHttpClient) {
+                    @Override
+                    protected ClassicHttpRequest createHttpUriRequest(HttpMethod httpMethod, URI uri) {
+                        ClassicHttpRequest request = super.createHttpUriRequest(httpMethod, uri);
+                        RequestCancellation.register(request);
+                        return request;
+                    }
+                };
+        requestFactory.setHttpContextFactory((method, uri) -> deadlineContext());
+
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(this::propagateDeadline);
+        return restTemplate;
+    }
+
+    /**
+     * Envía el presupuesto restante al nodo destino; con el plazo vencido no se envía nada
+     */
+    private ClientHttpResponse propagateDeadline(HttpRequest request, byte[] body,
+                                                 ClientHttpRequestExecution execution) throws IOException {
+        if (RequestDeadline.current() != null) {
+            long remainingMs = RequestDeadline.remainingMs();
+            if (remainingMs <= 0) {
+                throw new RequestDeadline.ExceededException("Plazo vencido antes de llamar a " + request.getURI());
+            }
+            request.getHeaders().set(RequestDeadline.HEADER, String.valueOf(remainingMs));
+        }
+        return execution.execute(request, body);
+    }
+
+    /**
+     * Recorta los timeouts de la llamada al presupuesto restante (null = timeouts del pool)
+     */
+    private HttpContext deadlineContext() {
+        if (RequestDeadline.current() == null) {
+            return null;
+        }
+        long remainingMs = Math.max(1, RequestDeadline.remainingMs());
+
+        HttpClientContext context = HttpClientContext.create();
+        context.setRequestConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(
+                        Math.min(CONNECTION_REQUEST_TIMEOUT_MS, remainingMs)))
+                .setResponseTimeout(Timeout.ofMilliseconds(Math.min(READ_TIMEOUT_MS, remainingMs)))
+                .build());
+        return context;
+    }
+
+    /**
+     * Obtiene estadísticas del pool de conexiones (total y por servidor)
+     */
+    public Map<String, Object> getPoolStats() {
+        Map<String, Object> stats = new HashMap<>();
+        if (connectionManager == null) {
+            return stats;
+        }
+        stats.put("maxConnections", MAX_CONNECTIONS);
+        stats.put("maxConnectionsPerRoute", MAX_CONNECTIONS_PER_ROUTE);
+        stats.put("total", toMap(connectionManager.getTotalStats()));
+
+        Map<String, Object> routes = new HashMap<>();
+        for (HttpRoute route : connectionManager.getRoutes()) {
+            routes.put(route.getTargetHost().toURI(), toMap(connectionManager.getStats(route)));
+        }
+        stats.put("routes", routes);
+        return stats;
+    }
+
+    private Map<String, Object> toMap(PoolStats poolStats) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("leased", poolStats.getLeased());
+        map.put("available", poolStats.getAvailable());
+        map.put("pending", poolStats.getPending());
+        map.put("max", poolStats.getMax());
+        return map;
+    }
+}
@@ -0,0 +1,68 @@
+package com.gfs.client.config;
+
+import org.apache.hc.core5.concurrent.Cancellable;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Cancelación desde otro hilo de las llamadas HTTP de una tarea
+ * - Las peticiones que la tarea crea mientras corre con call() quedan registradas
+ * - cancel() las aborta aunque sigan esperando la respuesta o leyendo el cuerpo:
+ *   la conexión se descarta y la llamada falla al instante
+ * - Sirve para cortar la lectura que pierde una carrera hedged
+ */
+public final class RequestCancellation {
+
+    private static final ThreadLocal<RequestCancellation> CURRENT = new ThreadLocal<>();
+
+    private boolean cancelled = false;
+    private Cancellable request;
+
+    /**
+     * Ejecuta la tarea en el hilo actual asociándole esta cancelación
+     */
+    public <T> T call(Callable<T> task) throws Exception {
+        RequestCancellation previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return task.call();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Aborta la petición en curso y las que la tarea intente después
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        if (request != null) {
+            request.cancel();
+        }
+    }
+
+    /**
+     * Registra una petición recién creada en el hilo actual
+     */
+    static void register(Object request) {
+        RequestCancellation cancellation = CURRENT.get();
+        if (cancellation != null && request instanceof Cancellable cancellable) {
+            cancellation.attach(cancellable);
+        }
+    }
+
+    private synchronized void attach(Cancellable request) {
+        this.request = request;
+        if (cancelled) {
+            request.cancel();
+        }
+    }
+}
@@ -1,64 +1,46 @@
 package com.gfs.client.controller;
 
+import com.gfs.client.config.CallerContext;
+import com.gfs.client.config.RequestDeadline;
 import com.gfs.client.service.GfsClientService;
+import com.gfs.client.service.UploadJobService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/pdf")
 @CrossOrigin(origins = "*")
 public class PdfController {
 
+    private static final String PAGE_INDEX_HEADER = "X-GFS-Page-Index";
+
     @Autowired
     private GfsClientService gfsClientService;
 
+    @Autowired
+    private UploadJobService uploadJobService;
+
     /**
      * Sube un PDF al sistema GFS
      */
     @PostMapping("/upload")
-    public ResponseEntity<Map<String, String>> uploadPdf(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<Map<String, Object>> uploadPdf(@RequestParam("file") MultipartFile file) {
         try {
-            if (file.isEmpty()) {
-                Map<String, String> error = new HashMap<>();
-                error.put("status", "error");
-                error.put("message", "Archivo vacío");
-                return ResponseEntity.badRequest().body(error);
-            }
-
-            // Validar que sea PDF
-            String contentType = file.getContentType();
-            if (contentType == null || !contentType.equals("application/pdf")) {
-                Map<String, String> error = new HashMap<>();
-                error.put("status", "error");
-                error.put("message", "Solo se permiten archivos PDF");
-                return ResponseEntity.badRequest().body(error);
-            }
-
-            // Verificar que hay chunkservers saludables
-            try {
-                Map<String, Object> systemStatus = gfsClientService.getSystemStatus();
-                Integer healthyChunkservers = (Integer) systemStatus.get("healthyChunkservers");
-                
-                if (healthyChunkservers == null || healthyChunkservers == 0) {
-                    Map<String, String> error = new HashMap<>();
-                    error.put("status", "error");
-                    error.put("message", "No hay chunkservers saludables disponibles. Los chunkservers están registrados pero no responden.");
-                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
-                }
-            } catch (Exception e) {
-                Map<String, String> error = new HashMap<>();
-                error.put("status", "error");
-                error.put("message", "No se puede conectar al Master Server. Verifica que esté ejecutándose.");
-                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+            ResponseEntity<Map<String, Object>> rejection = validateUpload(file);
+            if (rejection != null) {
+                return rejection;
             }
 
             System.out.println("\n╔════════════════════════════════════════════════════════╗");
@@ -67,50 +49,513 @@ public class PdfController {
             System.out.println("   Archivo: " + file.getOriginalFilename());
             System.out.println("   Tamaño: " + file.getSize() + " bytes");
 
-            String pdfId = gfsClientService.uploadPdf(file);
+            Map<String, Object> result = gfsClientService.uploadPdf(file);
+            String pdfId = (String) result.get("pdfId");
+
+            Map<String, Object> response = new HashMap<>(result);
+            if (!Boolean.TRUE.equals(result.get("committed"))) {
+                // La sesión sigue abierta: se puede reanudar subiendo los chunks pendientes
+                response.put("status", "error");
+                response.put("message", "Upload incompleto; reanudable con uploadId " + result.get("uploadId"));
+                System.out.println("   ⚠️  Upload incompleto: " + pdfId);
+                System.out.println();
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+            }
 
-            Map<String, String> response = new HashMap<>();
             response.put("status", "success");
             response.put("message", "PDF subido exitosamente");
-            response.put("pdfId", pdfId);
 
             System.out.println("   ✅ Upload completado: " + pdfId);
             System.out.println();
 
             return ResponseEntity.ok(response);
 
+        } catch (RequestDeadline.ExceededException e) {
+            System.err.println("   ⏱️  " + e.getMessage());
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(error);
+
         } catch (Exception e) {
             e.printStackTrace();
-            Map<String, String> error = new HashMap<>();
+            Map<String, Object> error = new HashMap<>();
             error.put("status", "error");
             error.put("message", "Error al subir PDF: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
         }
     }
 
+    /**
+     * Acepta un PDF para subirlo en segundo plano (202 Accepted)
+     * El avance se consulta en /upload/jobs/{jobId}; con la cola llena responde 503
+     */
+    @PostMapping("/upload/jobs")
+    public ResponseEntity<Map<String, Object>> submitUploadJob(@RequestParam("file") MultipartFile file) {
+        try {
+            ResponseEntity<Map<String, Object>> rejection = validateUpload(file);
+            if (rejection != null) {
+                return rejection;
+            }
+
+            Map<String, Object> response = new HashMap<>(uploadJobService.submit(file));
+            String statusUrl = "/api/pdf/upload/jobs/" + response.get("jobId");
+            response.put("status", "accepted");
+            response.put("statusUrl", statusUrl);
+
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header(HttpHeaders.LOCATION, statusUrl)
+                    .body(response);
+
+        } catch (RejectedExecutionException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", "Cola de uploads llena, reintente más tarde");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(error);
+
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", "Error al encolar upload: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
+    /**
+     * Estado y avance por chunk de un upload asíncrono
+     */
+    @GetMapping("/upload/jobs/{jobId}")
+    public ResponseEntity<Map<String, Object>> getUploadJob(@PathVariable String jobId) {
+        try {
+            Map<String, Object> response = new HashMap<>(uploadJobService.getJob(jobId));
+            response.put("status", "success");
+            return ResponseEntity.ok(response);
+
+        } catch (RuntimeException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+    }
+
+    /**
+     * Valida un PDF recibido y que haya chunkservers disponibles
+     * Retorna la respuesta de error, o null si el upload puede continuar
+     */
+    private ResponseEntity<Map<String, Object>> validateUpload(MultipartFile file) {
+        if (file.isEmpty()) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", "Archivo vacío");
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        // Validar que sea PDF
+        String contentType = file.getContentType();
+        if (contentType == null || !contentType.equals("application/pdf")) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", "Solo se permiten archivos PDF");
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        // Verificar que hay chunkservers saludables
+        try {
+            Map<String, Object> systemStatus = gfsClientService.getSystemStatus();
+            Integer healthyChunkservers = (Integer) systemStatus.get("healthyChunkservers");
+
+            if (healthyChunkservers == null || healthyChunkservers == 0) {
+                Map<String, Object> error = new HashMap<>();
+                error.put("status", "error");
+                error.put("message", "No hay chunkservers saludables disponibles. Los chunkservers están registrados pero no responden.");
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+            }
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", "No se puede conectar al Master Server. Verifica que esté ejecutándose.");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+        }
+        return null;
+    }
+
+    /**
+     * Abre una sesión de upload reanudable
+     * Body: {pdfId, size}; retorna uploadId, chunkSize y totalChunks
+     */
+    @PostMapping("/upload/session")
+    public ResponseEntity<Map<String, Object>> createUploadSession(@RequestBody Map<String, Object> request) {
+        try {
+            String pdfId = (String) request.get("pdfId");
+            Number size = (Number) request.get("size");
+            if (pdfId == null || pdfId.isBlank() || size == null || size.longValue() <= 0) {
+                Map<String, Object> error = new HashMap<>();
+                error.put("status", "error");
+                error.put("message", "pdfId y size son obligatorios");
+                return ResponseEntity.badRequest().body(error);
+            }
+
+            Map<String, Object> session = gfsClientService.createUploadSession(pdfId, size.longValue());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "success");
+            response.put("uploadId", session.get("uploadId"));
+            response.put("pdfId", pdfId);
+            response.put("size", size.longValue());
+            response.put("totalChunks", session.get("totalChunks"));
+            response.put("chunkSize", gfsClientService.getChunkSize());
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", "Error abriendo sesión de upload: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
+    /**
+     * Sube un chunk de una sesión (cuerpo binario); los chunks pueden llegar en cualquier orden
+     */
+    @PutMapping(value = "/upload/session/{uploadId}/chunk/{chunkIndex}",
+                consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Map<String, Object>> uploadSessionChunk(@PathVariable String uploadId,
+                                                                  @PathVariable int chunkIndex,
+                                                                  @RequestBody byte[] data) {
+        try {
+            Map<String, Object> response = new HashMap<>(
+                    gfsClientService.uploadSessionChunk(uploadId, chunkIndex, data));
+            int replicasOk = (Integer) response.get("replicasOk");
+            response.put("status", replicasOk > 0 ? "success" : "error");
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+
+        } catch (RuntimeException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+    }
+
+    /**
+     * Estado de una sesión de upload (chunks pendientes para reanudar)
+     */
+    @GetMapping("/upload/session/{uploadId}")
+    public ResponseEntity<Map<String, Object>> getUploadSession(@PathVariable String uploadId) {
+        try {
+            Map<String, Object> session = gfsClientService.getUploadSession(uploadId);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "success");
+            response.put("uploadId", uploadId);
+            response.put("pdfId", session.get("pdfId"));
+            response.put("size", session.get("size"));
+            response.put("totalChunks", session.get("totalChunks"));
+            response.put("chunkSize", gfsClientService.getChunkSize());
+            response.put("missingChunks", session.get("missingChunks"));
+            return ResponseEntity.ok(response);
+
+        } catch (RuntimeException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+    }
+
+    /**
+     * Confirma una sesión de upload; responde 409 con los chunks pendientes si está incompleta
+     */
+    @PostMapping("/upload/session/{uploadId}/commit")
+    public ResponseEntity<Map<String, Object>> commitUploadSession(@PathVariable String uploadId) {
+        try {
+            Map<String, Object> response = new HashMap<>(gfsClientService.commitUploadSession(uploadId));
+
+            if (!Boolean.TRUE.equals(response.get("committed"))) {
+                response.put("status", "error");
+                response.put("message", "Faltan chunks por subir");
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+            }
+
+            response.put("status", "success");
+            response.put("message", "PDF subido exitosamente");
+            return ResponseEntity.ok(response);
+
+        } catch (RuntimeException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+    }
+
+    /**
+     * Cancela una sesión de upload
+     */
+    @DeleteMapping("/upload/session/{uploadId}")
+    public ResponseEntity<Map<String, Object>> abortUploadSession(@PathVariable String uploadId) {
+        try {
+            gfsClientService.abortUploadSession(uploadId);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "success");
+            response.put("message", "Sesión de upload cancelada");
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
+    /**
+     * Indica si el upload directo está disponible y el tamaño de chunk para dividir el archivo
+     */
+    @GetMapping("/upload/direct")
+    public ResponseEntity<Map<String, Object>> getDirectUploadConfig() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "success");
+        response.put("enabled", gfsClientService.isDirectUploadEnabled());
+        response.put("chunkSize", gfsClientService.getChunkSize());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Planifica un upload directo desde el navegador
+     * Body: {pdfId, size, chunkHashes?}; retorna por chunk la cadena de chunkservers y un
+     * token de escritura firmado. El navegador envía los bytes con PUT a los chunkservers
+     */
+    @PostMapping("/upload/direct")
+    public ResponseEntity<Map<String, Object>> planDirectUpload(@RequestBody Map<String, Object> request) {
+        if (!gfsClientService.isDirectUploadEnabled()) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", "Upload directo deshabilitado");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+
+        try {
+            String pdfId = (String) request.get("pdfId");
+            Number size = (Number) request.get("size");
+            if (pdfId == null || pdfId.isBlank() || size == null || size.longValue() <= 0) {
+                Map<String, Object> error = new HashMap<>();
+                error.put("status", "error");
+                error.put("message", "pdfId y size son obligatorios");
+                return ResponseEntity.badRequest().body(error);
+            }
+            @SuppressWarnings("unchecked")
+            List<String> chunkHashes = (List<String>) request.get("chunkHashes");
+
+            System.out.println("\n╔════════════════════════════════════════════════════════╗");
+            System.out.println("║  🧭 CLIENTE: PLAN DE UPLOAD DIRECTO                   ║");
+            System.out.println("╚════════════════════════════════════════════════════════╝");
+            System.out.println("   Archivo: " + pdfId);
+            System.out.println("   Tamaño: " + size.longValue() + " bytes");
+
+            Map<String, Object> response = new HashMap<>(
+                    gfsClientService.planUpload(pdfId, size.longValue(), chunkHashes));
+            response.put("status", "success");
+
+            System.out.println("   ✅ Plan emitido: " + ((List<?>) response.get("chunks")).size() + " chunks " +
+                               "[sesión " + response.get("uploadId") + "]");
+            System.out.println();
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", "Error planificando upload: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
+    /**
+     * Plan renovado de un upload directo: réplicas pendientes con tokens nuevos
+     */
+    @GetMapping("/upload/direct/{uploadId}")
+    public ResponseEntity<Map<String, Object>> getDirectUploadPlan(@PathVariable String uploadId) {
+        try {
+            Map<String, Object> response = new HashMap<>(gfsClientService.getUploadPlan(uploadId));
+            response.put("status", "success");
+            return ResponseEntity.ok(response);
+
+        } catch (RuntimeException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+    }
+
+    /**
+     * Confirma chunks escritos por el navegador
+     * Body: {chunks: [{chunkIndex, token, stored, receipts, failed}]}; retorna los chunks pendientes
+     */
+    @PostMapping("/upload/direct/{uploadId}/chunks")
+    public ResponseEntity<Map<String, Object>> confirmDirectChunks(@PathVariable String uploadId,
+                                                                   @RequestBody Map<String, Object> request) {
+        try {
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> chunks = (List<Map<String, Object>>) request.get("chunks");
+            if (chunks == null) {
+                Map<String, Object> error = new HashMap<>();
+                error.put("status", "error");
+                error.put("message", "chunks es obligatorio");
+                return ResponseEntity.badRequest().body(error);
+            }
+
+            Map<String, Object> confirmation = gfsClientService.confirmDirectChunks(uploadId, chunks);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "success");
+            response.put("uploadId", uploadId);
+            response.put("missingChunks", confirmation.get("missingChunks"));
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            System.err.println("   🚫 Confirmación rechazada [sesión " + uploadId + "]: " + e.getMessage());
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+
+        } catch (RuntimeException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+    }
+
+    /**
+     * Confirma un upload directo; responde 409 con los chunks pendientes si está incompleto
+     */
+    @PostMapping("/upload/direct/{uploadId}/commit")
+    public ResponseEntity<Map<String, Object>> commitDirectUpload(@PathVariable String uploadId) {
+        try {
+            Map<String, Object> response = new HashMap<>(gfsClientService.commitDirectUpload(uploadId));
+
+            if (!Boolean.TRUE.equals(response.get("committed"))) {
+                response.put("status", "error");
+                response.put("message", "Faltan chunks por subir");
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+            }
+
+            System.out.println("   ✅ Upload directo completado: " + response.get("pdfId"));
+            System.out.println();
+            response.put("status", "success");
+            response.put("message", "PDF subido exitosamente");
+            return ResponseEntity.ok(response);
+
+        } catch (RuntimeException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+    }
+
     /**
      * Descarga un PDF desde el sistema GFS
+     * El contenido se envía en streaming a medida que llegan los chunks
+     * Soporta Range de un solo rango (206 Partial Content) para visores de PDF
      */
     @GetMapping("/download/{pdfId}")
-    public ResponseEntity<byte[]> downloadPdf(@PathVariable String pdfId) {
+    public ResponseEntity<StreamingResponseBody> downloadPdf(
+            @PathVariable String pdfId,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader) {
         try {
             System.out.println("\n╔════════════════════════════════════════════════════════╗");
             System.out.println("║  📥 CLIENTE: DESCARGANDO PDF                          ║");
             System.out.println("╚════════════════════════════════════════════════════════╝");
             System.out.println("   PDF ID: " + pdfId);
 
-            byte[] pdfData = gfsClientService.downloadPdf(pdfId);
+            Map<String, Object> metadata = gfsClientService.getMetadata(pdfId);
+            long size = ((Number) metadata.get("size")).longValue();
+
+            // El streaming corre en otro hilo: se lleva el plazo y el caller de la petición
+            Long deadline = RequestDeadline.current();
+            String caller = CallerContext.current();
 
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentLength(pdfData.length);
             headers.setContentDispositionFormData("inline", pdfId + ".pdf");
+            headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
 
-            System.out.println("   ✅ Download completado: " + pdfData.length + " bytes");
-            System.out.println();
+            HttpRange range = parseSingleRange(rangeHeader);
+
+            if (range != null) {
+                long start = range.getRangeStart(size);
+                long end = range.getRangeEnd(size);
+
+                if (start >= size || start > end) {
+                    headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                    return new ResponseEntity<>(headers, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+                }
+
+                System.out.println("   Rango: bytes " + start + "-" + end + "/" + size);
+
+                StreamingResponseBody body = outputStream -> {
+                    RequestDeadline.set(deadline);
+                    CallerContext.set(caller);
+                    try {
+                        gfsClientService.downloadRange(pdfId, metadata, start, end, outputStream);
+
+                        System.out.println("   ✅ Rango completado: " + (end - start + 1) + " bytes");
+                        System.out.println();
+                    } catch (RuntimeException e) {
+                        System.err.println("   ❌ Error durante el streaming: " + e.getMessage());
+                        System.out.println();
+                        throw e;
+                    } finally {
+                        RequestDeadline.clear();
+                        CallerContext.clear();
+                    }
+                };
+
+                headers.setContentLength(end - start + 1);
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+                return new ResponseEntity<>(body, headers, HttpStatus.PARTIAL_CONTENT);
+            }
+
+            StreamingResponseBody body = outputStream -> {
+                RequestDeadline.set(deadline);
+                CallerContext.set(caller);
+                try {
+                    gfsClientService.downloadPdf(pdfId, metadata, outputStream);
+
+                    System.out.println("   ✅ Download completado: " + size + " bytes");
+                    System.out.println();
+                } catch (RuntimeException e) {
+                    // La respuesta ya está en curso: solo se puede abortar la conexión
+                    System.err.println("   ❌ Error durante el streaming: " + e.getMessage());
+                    System.out.println();
+                    throw e;
+                } finally {
+                    RequestDeadline.clear();
+                    CallerContext.clear();
+                }
+            };
+
+            headers.setContentLength(size);
 
-            return new ResponseEntity<>(pdfData, headers, HttpStatus.OK);
+            return new ResponseEntity<>(body, headers, HttpStatus.OK);
 
+        } catch (RequestDeadline.ExceededException e) {
+            System.err.println("   ⏱️  " + e.getMessage());
+            System.out.println();
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
         } catch (RuntimeException e) {
             System.err.println("   ❌ Error: " + e.getMessage());
             System.out.println();
@@ -121,6 +566,81 @@ public class PdfController {
         }
     }
 
+    /**
+     * Descarga una página como un PDF independiente
+     * Solo se leen los chunks de la página según el índice del Master;
+     * sin índice vigente se responde con el PDF completo (X-GFS-Page-Index: unavailable)
+     */
+    @GetMapping("/download/{pdfId}/page/{pageNumber}")
+    public ResponseEntity<StreamingResponseBody> downloadPage(@PathVariable String pdfId,
+                                                              @PathVariable int pageNumber) {
+        System.out.println("\n╔════════════════════════════════════════════════════════╗");
+        System.out.println("║  📄 CLIENTE: DESCARGANDO PÁGINA                       ║");
+        System.out.println("╚════════════════════════════════════════════════════════╝");
+        System.out.println("   PDF ID: " + pdfId + " (página " + pageNumber + ")");
+
+        try {
+            long startTime = System.currentTimeMillis();
+            byte[] page = gfsClientService.downloadPage(pdfId, pageNumber);
+
+            if (page != null) {
+                System.out.println("   ✅ Página lista: " + page.length + " bytes (" +
+                                   (System.currentTimeMillis() - startTime) + " ms)");
+                System.out.println();
+
+                HttpHeaders headers = new HttpHeaders();
+                headers.setContentType(MediaType.APPLICATION_PDF);
+                headers.setContentDispositionFormData("inline", pdfId + "-p" + pageNumber + ".pdf");
+                headers.setContentLength(page.length);
+                headers.set(PAGE_INDEX_HEADER, "hit");
+                return new ResponseEntity<>(outputStream -> outputStream.write(page), headers, HttpStatus.OK);
+            }
+            System.out.println("   ⚠️  Sin índice de páginas: se envía el PDF completo");
+
+        } catch (IllegalArgumentException e) {
+            System.err.println("   ❌ " + e.getMessage());
+            System.out.println();
+            return ResponseEntity.badRequest().build();
+
+        } catch (RequestDeadline.ExceededException e) {
+            System.err.println("   ⏱️  " + e.getMessage());
+            System.out.println();
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+
+        } catch (Exception e) {
+            // El error puede llegar envuelto (PDFBox, réplicas); sin plazo no tiene sentido el PDF completo
+            if (RequestDeadline.isExpired()) {
+                System.err.println("   ⏱️  Plazo vencido extrayendo la página " + pageNumber);
+                System.out.println();
+                return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+            }
+            System.err.println("   ⚠️  No se pudo extraer la página (" + e.getMessage() +
+                               "): se envía el PDF completo");
+        }
+
+        ResponseEntity<StreamingResponseBody> fullDownload = downloadPdf(pdfId, null);
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(fullDownload.getHeaders());
+        headers.set(PAGE_INDEX_HEADER, "unavailable");
+        return new ResponseEntity<>(fullDownload.getBody(), headers, fullDownload.getStatusCode());
+    }
+
+    /**
+     * Interpreta el header Range
+     * Solo se atiende un rango; rangos múltiples o inválidos se ignoran (respuesta completa)
+     */
+    private HttpRange parseSingleRange(String rangeHeader) {
+        if (rangeHeader == null || rangeHeader.isBlank()) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     /**
      * Lista todos los PDFs almacenados
      */
@@ -144,6 +664,27 @@ public class PdfController {
         }
     }
 
+    /**
+     * Elimina un PDF del sistema GFS
+     */
+    @DeleteMapping("/delete/{pdfId}")
+    public ResponseEntity<Map<String, Object>> deletePdf(@PathVariable String pdfId) {
+        try {
+            gfsClientService.deletePdf(pdfId);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "success");
+            response.put("message", "PDF eliminado");
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
     /**
      * Obtiene estado del sistema GFS
      */
@@ -159,4 +700,14 @@ public class PdfController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
         }
     }
+
+    /**
+     * Obtiene estadísticas del cliente (caché de chunks, transferencias)
+     */
+    @GetMapping("/client-stats")
+    public ResponseEntity<Map<String, Object>> getClientStats() {
+        Map<String, Object> stats = new HashMap<>(gfsClientService.getClientStats());
+        stats.put("uploadJobs", uploadJobService.getStats());
+        return ResponseEntity.ok(stats);
+    }
 }
\ No newline at end of file
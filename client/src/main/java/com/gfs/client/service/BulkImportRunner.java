@@ -0,0 +1,330 @@
+package com.gfs.client.service;
+
+import com.gfs.client.config.CallerContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Importación masiva de PDFs desde un directorio, sin navegador
+ * - Se activa con gfs.bulk-import.dir (p. ej. --gfs.bulk-import.dir=/datos/pdfs
+ *   --spring.main.web-application-type=none)
+ * - Los archivos se procesan en lotes: una llamada al Master abre las sesiones del
+ *   lote y otra las confirma, con una sola escritura de metadatos cada una
+ * - Dentro del lote varios archivos se suben a la vez por el mismo ejecutor de
+ *   transferencias que usan los uploads interactivos, como un caller propio
+ *   (gfs.bulk-import.caller) con su peso y cuota de fair-share
+ * - Informa el avance y el rendimiento (archivos/s, MB/s) al terminar cada lote
+ */
+@Component
+@ConditionalOnProperty(name = "gfs.bulk-import.dir")
+public class BulkImportRunner implements ApplicationRunner {
+
+    @Value("${gfs.bulk-import.dir}")
+    private String IMPORT_DIR;
+
+    @Value("${gfs.bulk-import.batch-size:64}")
+    private int BATCH_SIZE;
+
+    @Value("${gfs.bulk-import.parallel-files:4}")
+    private int PARALLEL_FILES;
+
+    // El índice de páginas cuesta una llamada al Master por archivo
+    @Value("${gfs.bulk-import.index-pages:false}")
+    private boolean INDEX_PAGES;
+
+    @Value("${gfs.bulk-import.exit-on-finish:true}")
+    private boolean EXIT_ON_FINISH;
+
+    @Value("${gfs.bulk-import.caller:bulk-import}")
+    private String CALLER;
+
+    @Autowired
+    private GfsClientService gfsClientService;
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    // Progreso
+    private final AtomicInteger imported = new AtomicInteger();
+    private final AtomicInteger deduplicated = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong importedBytes = new AtomicLong();
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Path root = Paths.get(IMPORT_DIR);
+        if (!Files.isDirectory(root)) {
+            throw new IllegalArgumentException("gfs.bulk-import.dir no es un directorio: " + IMPORT_DIR);
+        }
+
+        List<Path> files = listPdfs(root);
+        long totalBytes = 0;
+        for (Path file : files) {
+            totalBytes += Files.size(file);
+        }
+
+        System.out.println("\n╔════════════════════════════════════════════════════════╗");
+        System.out.println("║  📚 IMPORTACIÓN MASIVA                                ║");
+        System.out.println("╚════════════════════════════════════════════════════════╝");
+        System.out.println("   Directorio: " + root.toAbsolutePath());
+        System.out.println("   Archivos: " + files.size() + " (" + formatMb(totalBytes) + ")");
+        System.out.println("   Lotes de " + BATCH_SIZE + ", " + PARALLEL_FILES + " archivos en paralelo");
+        System.out.println("   Caller: " + CALLER);
+
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, PARALLEL_FILES), runnable -> {
+            Thread thread = new Thread(() -> {
+                CallerContext.set(CALLER);
+                runnable.run();
+            }, "gfs-bulk-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long startTime = System.currentTimeMillis();
+        try {
+            int batches = (files.size() + BATCH_SIZE - 1) / BATCH_SIZE;
+            for (int batch = 0; batch < batches; batch++) {
+                List<Path> slice = files.subList(batch * BATCH_SIZE, Math.min(files.size(), (batch + 1) * BATCH_SIZE));
+                importBatch(slice, workers);
+
+                long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+                int done = imported.get() + deduplicated.get() + failed.get();
+                System.out.println("📦 Lote " + (batch + 1) + "/" + batches + ": " + done + "/" + files.size() +
+                                   " archivos · " + formatMb(importedBytes.get()) + " · " +
+                                   formatRate(importedBytes.get(), done, elapsed));
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+        System.out.println("\n   📊 Importación terminada:");
+        System.out.println("      ✅ Subidos: " + imported.get());
+        System.out.println("      ♻️  Ya almacenados (deduplicados): " + deduplicated.get());
+        if (failed.get() > 0) {
+            System.out.println("      ❌ Fallidos: " + failed.get());
+        }
+        System.out.println("      ⏱️  Tiempo: " + elapsed + " ms · " +
+                           formatRate(importedBytes.get(), imported.get() + deduplicated.get(), elapsed));
+        System.out.println();
+
+        if (EXIT_ON_FINISH) {
+            int exitCode = failed.get() > 0 ? 1 : 0;
+            System.exit(SpringApplication.exit(context, () -> exitCode));
+        }
+    }
+
+    /**
+     * PDFs del directorio (recursivo) en orden estable; el nombre de archivo es el pdfId
+     * y los nombres repetidos en subdirectorios se omiten
+     */
+    private List<Path> listPdfs(Path root) throws IOException {
+        List<Path> pdfs;
+        try (Stream<Path> walk = Files.walk(root)) {
+            pdfs = walk.filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().toLowerCase().endsWith(".pdf"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        Set<String> names = new HashSet<>();
+        List<Path> unique = new ArrayList<>();
+        for (Path pdf : pdfs) {
+            if (names.add(pdf.getFileName().toString())) {
+                unique.add(pdf);
+            } else {
+                System.out.println("   ⚠️  Nombre repetido, se omite: " + root.relativize(pdf));
+            }
+        }
+        return unique;
+    }
+
+    /**
+     * Importa un lote: hashes en paralelo, una llamada para abrir las sesiones,
+     * subida de los archivos en paralelo y una llamada para confirmarlas
+     */
+    private void importBatch(List<Path> files, ExecutorService workers) {
+        Map<String, Path> filesById = new HashMap<>();
+        for (Path file : files) {
+            filesById.put(file.getFileName().toString(), file);
+        }
+
+        // 1. Hashes de contenido (lectura de disco) para no reenviar lo ya almacenado
+        List<CompletableFuture<Map<String, Object>>> hashing = files.stream()
+                .map(file -> CompletableFuture.supplyAsync(() -> describe(file), workers))
+                .collect(Collectors.toList());
+        List<Map<String, Object>> requests = new ArrayList<>();
+        for (CompletableFuture<Map<String, Object>> future : hashing) {
+            Map<String, Object> request = future.join();
+            if (request != null) {
+                requests.add(request);
+            }
+        }
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        // 2. Una sola llamada abre las sesiones de todo el lote, sin quórum: el lote
+        //    se confirma cuando cada archivo tiene todas sus réplicas escritas
+        Map<String, Object> opened;
+        try {
+            opened = gfsClientService.createUploadSessions(requests, 0);
+        } catch (Exception e) {
+            System.err.println("   ❌ No se pudo abrir el lote en el Master: " + e.getMessage());
+            failed.addAndGet(requests.size());
+            return;
+        }
+        reportErrors(opened, "pdfId");
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> sessions = (List<Map<String, Object>>) opened.get("sessions");
+
+        // 3. Subida en paralelo de los archivos con contenido nuevo
+        List<CompletableFuture<String>> uploads = new ArrayList<>();
+        for (Map<String, Object> session : sessions) {
+            Path file = filesById.get((String) session.get("pdfId"));
+            if (Boolean.TRUE.equals(session.get("committed"))) {
+                deduplicated.incrementAndGet();
+                importedBytes.addAndGet(((Number) session.get("size")).longValue());
+                continue;
+            }
+            uploads.add(CompletableFuture.supplyAsync(() -> upload(session, file), workers));
+        }
+
+        List<String> ready = new ArrayList<>();
+        for (CompletableFuture<String> upload : uploads) {
+            String uploadId = upload.join();
+            if (uploadId != null) {
+                ready.add(uploadId);
+            }
+        }
+        if (ready.isEmpty()) {
+            return;
+        }
+
+        // 4. Una sola llamada publica todo el lote
+        Map<String, Object> commit;
+        try {
+            commit = gfsClientService.commitUploadSessions(ready);
+        } catch (Exception e) {
+            System.err.println("   ❌ No se pudo confirmar el lote en el Master: " + e.getMessage());
+            failed.addAndGet(ready.size());
+            return;
+        }
+        reportErrors(commit, "uploadId");
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> committed = (List<Map<String, Object>>) commit.get("committed");
+        List<CompletableFuture<?>> indexing = new ArrayList<>();
+        for (Map<String, Object> entry : committed) {
+            imported.incrementAndGet();
+            long size = ((Number) entry.get("size")).longValue();
+            importedBytes.addAndGet(size);
+
+            if (INDEX_PAGES) {
+                String pdfId = (String) entry.get("pdfId");
+                long timestamp = ((Number) entry.get("timestamp")).longValue();
+                indexing.add(CompletableFuture.runAsync(() -> gfsClientService.indexPages(pdfId, size,
+                        new FileSystemResource(filesById.get(pdfId)), timestamp), workers));
+            }
+        }
+        indexing.forEach(CompletableFuture::join);
+    }
+
+    /**
+     * Datos del archivo para abrir su sesión: {pdfId, size, chunkHashes}
+     */
+    private Map<String, Object> describe(Path file) {
+        try {
+            long size = Files.size(file);
+            Map<String, Object> request = new HashMap<>();
+            request.put("pdfId", file.getFileName().toString());
+            request.put("size", size);
+            if (gfsClientService.isDedupEnabled()) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    request.put("chunkHashes", gfsClientService.hashChunks(in, size));
+                }
+            }
+            return request;
+        } catch (IOException e) {
+            System.err.println("   ❌ No se pudo leer " + file + ": " + e.getMessage());
+            failed.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Sube los chunks de un archivo a su sesión sin confirmarla
+     * Retorna el uploadId si quedó completa; si no, la sesión se cancela
+     */
+    private String upload(Map<String, Object> session, Path file) {
+        String uploadId = (String) session.get("uploadId");
+        try (InputStream in = Files.newInputStream(file)) {
+            Map<String, Object> result = gfsClientService.uploadToSession(session, in,
+                    UploadProgressListener.NONE, false, System.currentTimeMillis());
+
+            List<?> missing = (List<?>) result.get("missingChunks");
+            if (missing == null || missing.isEmpty()) {
+                return uploadId;
+            }
+            System.err.println("   ❌ " + file.getFileName() + ": " + missing.size() + " chunks sin escribir");
+        } catch (Exception e) {
+            System.err.println("   ❌ " + file.getFileName() + ": " + e.getMessage());
+        }
+
+        failed.incrementAndGet();
+        try {
+            gfsClientService.abortUploadSession(uploadId);
+        } catch (Exception e) {
+            // La sesión expira sola y el garbage collector limpia sus chunks
+        }
+        return null;
+    }
+
+    private void reportErrors(Map<String, Object> response, String keyName) {
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> errors = (List<Map<String, Object>>) response.get("errors");
+        if (errors == null) {
+            return;
+        }
+        for (Map<String, Object> error : errors) {
+            failed.incrementAndGet();
+            System.err.println("   ❌ " + error.get(keyName) + ": " + error.get("message"));
+        }
+    }
+
+    private static String formatMb(long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    private static String formatRate(long bytes, int files, long elapsedMs) {
+        double seconds = elapsedMs / 1000.0;
+        return String.format("%.1f archivos/s, %.1f MB/s", files / seconds, bytes / (1024.0 * 1024.0) / seconds);
+    }
+}
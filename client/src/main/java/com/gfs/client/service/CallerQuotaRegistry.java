@@ -0,0 +1,245 @@
+package com.gfs.client.service;
+
+import com.gfs.client.config.CallerContext;
+import com.gfs.client.service.ChunkTransferExecutor.TransferClass;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Peso y cuota de transferencias por caller (tenant)
+ * - Cada caller tiene un peso para el reparto justo de las colas de cada chunkserver;
+ *   las lecturas pesan más que las escrituras para que las descargas interactivas
+ *   no esperen detrás de uploads masivos
+ * - Cuota opcional por token bucket de operaciones/s y bytes/s, compartida por todos
+ *   los chunkservers: un caller que la agota espera sin frenar a los demás
+ * - Callers y API keys se configuran en gfs.fair-share.callers y gfs.fair-share.api-keys;
+ *   las peticiones sin API key comparten la cola y la cuota del caller anónimo
+ */
+@Component
+public class CallerQuotaRegistry {
+
+    @Value("${gfs.fair-share.enabled:true}")
+    private boolean ENABLED;
+
+    @Value("${gfs.fair-share.read-weight:4}")
+    private double READ_WEIGHT;
+
+    @Value("${gfs.fair-share.write-weight:1}")
+    private double WRITE_WEIGHT;
+
+    @Value("${gfs.fair-share.default.weight:1}")
+    private double DEFAULT_WEIGHT;
+
+    // 0 = sin límite
+    @Value("${gfs.fair-share.default.ops-per-second:0}")
+    private double DEFAULT_OPS_PER_SECOND;
+
+    @Value("${gfs.fair-share.default.bytes-per-second:0}")
+    private double DEFAULT_BYTES_PER_SECOND;
+
+    // Ráfaga que admite un bucket lleno, en segundos de su tasa
+    @Value("${gfs.fair-share.burst-seconds:1}")
+    private double BURST_SECONDS;
+
+    // nombre:peso[:ops/s[:bytes/s]] separados por comas
+    @Value("${gfs.fair-share.callers:}")
+    private String CALLERS;
+
+    // apiKey:nombre separados por comas
+    @Value("${gfs.fair-share.api-keys:}")
+    private String API_KEYS;
+
+    // Callers distintos como máximo; el resto se trata como anónimo
+    @Value("${gfs.fair-share.max-callers:1000}")
+    private int MAX_CALLERS;
+
+    private static final long IDLE_EVICT_MS = 300_000;
+
+    private final Map<String, String> apiKeys = new HashMap<>();
+    private final Map<String, Quota> quotas = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (String entry : CALLERS.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split(":");
+            try {
+                double weight = parts.length > 1 ? Double.parseDouble(parts[1]) : DEFAULT_WEIGHT;
+                double opsPerSecond = parts.length > 2 ? Double.parseDouble(parts[2]) : DEFAULT_OPS_PER_SECOND;
+                double bytesPerSecond = parts.length > 3 ? Double.parseDouble(parts[3]) : DEFAULT_BYTES_PER_SECOND;
+                if (parts.length > 4 || weight <= 0 || opsPerSecond < 0 || bytesPerSecond < 0) {
+                    throw new NumberFormatException();
+                }
+                quotas.put(parts[0], new Quota(parts[0], weight, opsPerSecond, bytesPerSecond, true));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Caller inválido en gfs.fair-share.callers: " + entry);
+            }
+        }
+
+        for (String entry : API_KEYS.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2 || parts[0].isEmpty() || parts[1].isEmpty()) {
+                throw new IllegalArgumentException("API key inválida en gfs.fair-share.api-keys");
+            }
+            apiKeys.put(parts[0], parts[1]);
+        }
+    }
+
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Nombre del caller de una petición: el de su API key si está configurada,
+     * si no el caller anónimo
+     * Solo la API key identifica al caller: un nombre declarado por la petición podría
+     * cambiarse en cada una para sumar colas y cuotas nuevas
+     */
+    public String resolve(String apiKey) {
+        if (apiKey != null && apiKeys.containsKey(apiKey.trim())) {
+            return apiKeys.get(apiKey.trim());
+        }
+        return CallerContext.ANONYMOUS;
+    }
+
+    /**
+     * Cuota de un caller; los no configurados reciben el peso y la cuota por defecto
+     */
+    Quota quota(String caller) {
+        Quota quota = quotas.get(caller);
+        if (quota != null) {
+            return quota;
+        }
+        if (quotas.size() >= MAX_CALLERS) {
+            long now = System.currentTimeMillis();
+            quotas.values().removeIf(idle -> !idle.configured && now - idle.lastActiveAt > IDLE_EVICT_MS);
+            if (quotas.size() >= MAX_CALLERS) {
+                caller = CallerContext.ANONYMOUS;
+            }
+        }
+        return quotas.computeIfAbsent(caller, name ->
+                new Quota(name, DEFAULT_WEIGHT, DEFAULT_OPS_PER_SECOND, DEFAULT_BYTES_PER_SECOND, false));
+    }
+
+    /**
+     * Obtiene pesos, cuotas y consumo por caller
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("readWeight", READ_WEIGHT);
+        stats.put("writeWeight", WRITE_WEIGHT);
+        stats.put("apiKeys", apiKeys.size());
+
+        Map<String, Object> callers = new HashMap<>();
+        quotas.forEach((name, quota) -> callers.put(name, quota.snapshot()));
+        stats.put("callers", callers);
+        return stats;
+    }
+
+    /**
+     * Peso y token buckets (operaciones y bytes) de un caller
+     * Los buckets admiten deuda: una transferencia arranca con saldo positivo y
+     * lo que consume de más lo paga esperando antes de la siguiente
+     */
+    class Quota {
+        final String name;
+        private final double weight;
+        private final double opsPerSecond;
+        private final double bytesPerSecond;
+        private final boolean configured;
+
+        private double opsTokens;
+        private double bytesTokens;
+        private long refilledAt = System.currentTimeMillis();
+        private volatile long lastActiveAt = System.currentTimeMillis();
+
+        // Estadísticas
+        private long operations = 0;
+        private long bytes = 0;
+        private long throttled = 0;
+
+        Quota(String name, double weight, double opsPerSecond, double bytesPerSecond, boolean configured) {
+            this.name = name;
+            this.weight = weight;
+            this.opsPerSecond = opsPerSecond;
+            this.bytesPerSecond = bytesPerSecond;
+            this.configured = configured;
+            this.opsTokens = opsPerSecond * BURST_SECONDS;
+            this.bytesTokens = bytesPerSecond * BURST_SECONDS;
+        }
+
+        /**
+         * Peso de una transferencia de este caller según su tipo
+         */
+        double weight(TransferClass transferClass) {
+            return weight * (transferClass == TransferClass.READ ? READ_WEIGHT : WRITE_WEIGHT);
+        }
+
+        /**
+         * Milisegundos hasta que el caller recupere saldo; 0 si puede transferir ya
+         */
+        synchronized long delayMs(long now) {
+            refill(now);
+            double waitSeconds = 0;
+            if (opsPerSecond > 0 && opsTokens <= 0) {
+                waitSeconds = Math.max(waitSeconds, -opsTokens / opsPerSecond);
+            }
+            if (bytesPerSecond > 0 && bytesTokens <= 0) {
+                waitSeconds = Math.max(waitSeconds, -bytesTokens / bytesPerSecond);
+            }
+            return waitSeconds > 0 ? (long) Math.ceil(waitSeconds * 1000) + 1 : 0;
+        }
+
+        /**
+         * Descuenta una transferencia que arranca
+         */
+        synchronized void charge(long transferBytes) {
+            lastActiveAt = System.currentTimeMillis();
+            operations++;
+            bytes += transferBytes;
+            opsTokens -= 1;
+            bytesTokens -= transferBytes;
+        }
+
+        /**
+         * Corrige los bytes descontados con los realmente transferidos
+         */
+        synchronized void adjust(long extraBytes) {
+            bytes += extraBytes;
+            bytesTokens -= extraBytes;
+        }
+
+        synchronized void onThrottled() {
+            throttled++;
+        }
+
+        private void refill(long now) {
+            double elapsedSeconds = Math.max(0, now - refilledAt) / 1000.0;
+            refilledAt = now;
+            opsTokens = Math.min(opsPerSecond * BURST_SECONDS, opsTokens + elapsedSeconds * opsPerSecond);
+            bytesTokens = Math.min(bytesPerSecond * BURST_SECONDS, bytesTokens + elapsedSeconds * bytesPerSecond);
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("weight", weight);
+            snapshot.put("opsPerSecond", opsPerSecond);
+            snapshot.put("bytesPerSecond", bytesPerSecond);
+            snapshot.put("operations", operations);
+            snapshot.put("bytes", bytes);
+            snapshot.put("throttled", throttled);
+            return snapshot;
+        }
+    }
+}
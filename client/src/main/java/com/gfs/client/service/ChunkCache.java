@@ -0,0 +1,90 @@
+package com.gfs.client.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Caché en memoria de chunks leídos desde los chunkservers
+ * - Acotada por bytes (no por cantidad de entradas)
+ * - Admisión/desalojo W-TinyLFU: resiste escaneos de archivos grandes leídos una sola vez
+ * - Se invalida por PDF al eliminarlo o volver a subirlo
+ */
+@Component
+public class ChunkCache {
+
+    @Value("${gfs.cache.enabled:true}")
+    private boolean ENABLED;
+
+    @Value("${gfs.cache.max-bytes:67108864}")
+    private long MAX_BYTES;
+
+    private Cache<ChunkKey, byte[]> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(MAX_BYTES)
+                .weigher((ChunkKey key, byte[] data) -> data.length)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Obtiene un chunk de la caché o null si no está
+     */
+    public byte[] get(String pdfId, int chunkIndex) {
+        if (!ENABLED) {
+            return null;
+        }
+        return cache.getIfPresent(new ChunkKey(pdfId, chunkIndex));
+    }
+
+    /**
+     * Guarda un chunk completo en la caché
+     */
+    public void put(String pdfId, int chunkIndex, byte[] data) {
+        if (ENABLED) {
+            cache.put(new ChunkKey(pdfId, chunkIndex), data);
+        }
+    }
+
+    /**
+     * Elimina todos los chunks de un PDF
+     */
+    public void invalidatePdf(String pdfId) {
+        cache.asMap().keySet().removeIf(key -> key.pdfId().equals(pdfId));
+    }
+
+    /**
+     * Obtiene estadísticas de la caché
+     */
+    public Map<String, Object> getStats() {
+        CacheStats cacheStats = cache.stats();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("maxBytes", MAX_BYTES);
+        stats.put("usedBytes", cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L));
+        stats.put("entries", cache.estimatedSize());
+        stats.put("hits", cacheStats.hitCount());
+        stats.put("misses", cacheStats.missCount());
+        stats.put("hitRate", cacheStats.hitRate());
+        stats.put("evictions", cacheStats.evictionCount());
+        return stats;
+    }
+
+    /**
+     * Clave de un chunk: (pdfId, chunkIndex)
+     */
+    private record ChunkKey(String pdfId, int chunkIndex) {
+    }
+}
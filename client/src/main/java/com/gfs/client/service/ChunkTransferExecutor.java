@@ -0,0 +1,446 @@
+package com.gfs.client.service;
+
+import com.gfs.client.config.CallerContext;
+import com.gfs.client.config.RequestDeadline;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ejecutor de transferencias de chunks con concurrencia acotada
+ * - Pool fijo de hilos compartido por uploads y downloads
+ * - Límite de peticiones en vuelo por chunkserver, adaptativo (AIMD): sube de a uno por
+ *   ventana mientras la latencia se mantiene y se reduce a una fracción ante errores o
+ *   latencia creciente, hasta estabilizarse en la capacidad real de cada servidor
+ * - Las peticiones que exceden el límite esperan en cola sin bloquear hilos
+ * - La cola de cada servidor se reparte entre callers con fair queuing ponderado
+ *   (self-clocked): cada caller y tipo de transferencia es un flujo, y arranca
+ *   primero la transferencia con menor tiempo virtual de fin; un caller con cuota
+ *   agotada espera en su flujo sin frenar a los demás
+ * - Con el circuito del servidor abierto las peticiones fallan al instante
+ * - Las transferencias heredan el plazo de la petición que las encola: no
+ *   arrancan si ya venció y su futuro falla al vencer aunque sigan en cola
+ */
+@Component
+public class ChunkTransferExecutor {
+
+    @Value("${gfs.transfer.threads:16}")
+    private int THREADS;
+
+    @Value("${gfs.transfer.max-in-flight-per-server:4}")
+    private int MAX_IN_FLIGHT_PER_SERVER;
+
+    @Value("${gfs.transfer.adaptive.enabled:true}")
+    private boolean ADAPTIVE;
+
+    @Value("${gfs.transfer.adaptive.min-limit:1}")
+    private int MIN_LIMIT;
+
+    @Value("${gfs.transfer.adaptive.max-limit:32}")
+    private int MAX_LIMIT;
+
+    // Latencia suavizada sobre la línea base a partir de la cual se considera congestión
+    @Value("${gfs.transfer.adaptive.latency-tolerance:2.0}")
+    private double LATENCY_TOLERANCE;
+
+    @Value("${gfs.transfer.adaptive.backoff:0.7}")
+    private double BACKOFF;
+
+    // Margen absoluto para que el ruido en latencias de pocos ms no cuente como congestión
+    private static final double LATENCY_SLACK_MS = 5;
+    private static final double LATENCY_SMOOTHING = 0.2;
+    private static final double BASELINE_DRIFT = 0.01;
+
+    // Bytes que equivalen a una operación en el costo de fair queuing
+    private static final double COST_UNIT_BYTES = 65536;
+    private static final String FIFO_FLOW = "fifo";
+
+    /**
+     * Tipo de transferencia: las lecturas sirven descargas interactivas
+     */
+    public enum TransferClass { READ, WRITE }
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakers;
+
+    @Autowired
+    private CallerQuotaRegistry callerQuotas;
+
+    private ExecutorService pool;
+    private ScheduledThreadPoolExecutor deadlineTimer;
+    private final Map<String, ServerLane> lanes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "gfs-transfer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        deadlineTimer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "gfs-transfer-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        deadlineTimer.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+        deadlineTimer.shutdownNow();
+    }
+
+    /**
+     * Encola una transferencia hacia un chunkserver a nombre del caller actual
+     * Se ejecuta en cuanto el servidor tenga un hueco libre y le toque a su flujo
+     * bytes es el tamaño estimado; en lecturas se corrige con los bytes leídos
+     * Cancelar el futuro antes de que arranque evita la petición
+     */
+    public <T> CompletableFuture<T> submit(String chunkserverUrl, TransferClass transferClass, long bytes,
+                                           Callable<T> call) {
+        if (circuitBreakers.isOpen(chunkserverUrl)) {
+            return CompletableFuture.failedFuture(circuitOpen(chunkserverUrl));
+        }
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        ServerLane lane = lanes.computeIfAbsent(chunkserverUrl, k -> new ServerLane());
+        Long deadline = RequestDeadline.current();
+        String caller = CallerContext.current();
+        if (deadline != null) {
+            expireAt(deadline, caller, future, chunkserverUrl);
+        }
+        CallerQuotaRegistry.Quota quota = callerQuotas.isEnabled() ? callerQuotas.quota(caller) : null;
+
+        Runnable task = () -> {
+            Long previousDeadline = RequestDeadline.current();
+            RequestDeadline.set(deadline);
+            CallerContext.set(caller);
+            try {
+                // Transferencias canceladas mientras esperaban en cola no se ejecutan
+                if (future.isDone()) {
+                    return;
+                }
+                // Quien la pidió ya no espera la respuesta
+                if (RequestDeadline.isExpired()) {
+                    future.completeExceptionally(new RequestDeadline.ExceededException(
+                            "Plazo vencido en cola hacia " + chunkserverUrl));
+                    return;
+                }
+                // El circuito pudo abrirse mientras la transferencia esperaba en cola
+                if (!circuitBreakers.tryAcquire(chunkserverUrl)) {
+                    future.completeExceptionally(circuitOpen(chunkserverUrl));
+                    return;
+                }
+
+                long start = System.currentTimeMillis();
+                try {
+                    T result = call.call();
+                    long latencyMs = System.currentTimeMillis() - start;
+                    circuitBreakers.recordSuccess(chunkserverUrl, latencyMs);
+                    lane.onSuccess(latencyMs);
+                    if (quota != null && result instanceof byte[] data) {
+                        quota.adjust(data.length - bytes);
+                    }
+                    future.complete(result);
+                } catch (HttpClientErrorException e) {
+                    // 4xx: el servidor respondió, el error es de la petición
+                    long latencyMs = System.currentTimeMillis() - start;
+                    circuitBreakers.recordSuccess(chunkserverUrl, latencyMs);
+                    lane.onSuccess(latencyMs);
+                    throw e;
+                } catch (Throwable t) {
+                    // Un timeout por plazo agotado o una lectura cancelada no son culpa del servidor
+                    if (!RequestDeadline.isExpired() && !future.isCancelled()) {
+                        circuitBreakers.recordFailure(chunkserverUrl, t.getClass().getSimpleName());
+                        lane.onFailure();
+                    }
+                    throw t;
+                }
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                RequestDeadline.set(previousDeadline);
+                CallerContext.clear();
+                lane.release();
+            }
+        };
+
+        if (quota == null) {
+            lane.offer(new QueuedTransfer(FIFO_FLOW, 1, 1, null, bytes, future, task));
+        } else {
+            lane.offer(new QueuedTransfer(quota.name + "/" + transferClass.name().toLowerCase(),
+                    1 + bytes / COST_UNIT_BYTES, quota.weight(transferClass), quota, bytes, future, task));
+        }
+        return future;
+    }
+
+    /**
+     * Falla el futuro al vencer el plazo aunque la transferencia siga en cola
+     * (p. ej. detrás de escrituras en segundo plano hacia un servidor que no responde)
+     */
+    private void expireAt(long deadline, String caller, CompletableFuture<?> future, String chunkserverUrl) {
+        ScheduledFuture<?> expiry = deadlineTimer.schedule(() -> {
+            // Las continuaciones del futuro corren en este hilo con el plazo y el caller de la petición
+            RequestDeadline.set(deadline);
+            CallerContext.set(caller);
+            try {
+                future.completeExceptionally(new RequestDeadline.ExceededException(
+                        "Plazo vencido esperando a " + chunkserverUrl));
+            } finally {
+                RequestDeadline.clear();
+                CallerContext.clear();
+            }
+        }, Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        future.whenComplete((result, e) -> expiry.cancel(false));
+    }
+
+    private RuntimeException circuitOpen(String chunkserverUrl) {
+        return new RuntimeException("Circuito abierto: " + chunkserverUrl);
+    }
+
+    /**
+     * Obtiene estadísticas de transferencias por chunkserver
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("threads", THREADS);
+        stats.put("maxInFlightPerServer", MAX_IN_FLIGHT_PER_SERVER);
+        stats.put("adaptive", ADAPTIVE);
+        stats.put("fairShare", callerQuotas.isEnabled());
+        if (ADAPTIVE) {
+            stats.put("minLimit", MIN_LIMIT);
+            stats.put("maxLimit", MAX_LIMIT);
+        }
+
+        Map<String, Object> servers = new HashMap<>();
+        lanes.forEach((url, lane) -> servers.put(url, lane.snapshot()));
+        stats.put("servers", servers);
+        return stats;
+    }
+
+    /**
+     * Transferencia en cola con su etiqueta de fair queuing
+     */
+    private static class QueuedTransfer {
+        final String flow;
+        final double cost;
+        final double weight;
+        final CallerQuotaRegistry.Quota quota;
+        final long bytes;
+        final CompletableFuture<?> future;
+        final Runnable task;
+        double finishTag;
+        boolean throttled = false;
+
+        QueuedTransfer(String flow, double cost, double weight, CallerQuotaRegistry.Quota quota, long bytes,
+                       CompletableFuture<?> future, Runnable task) {
+            this.flow = flow;
+            this.cost = cost;
+            this.weight = weight;
+            this.quota = quota;
+            this.bytes = bytes;
+            this.future = future;
+            this.task = task;
+        }
+    }
+
+    /**
+     * Cola FIFO de un flujo (caller y tipo de transferencia) dentro de un servidor
+     */
+    private static class Flow {
+        final Deque<QueuedTransfer> pending = new ArrayDeque<>();
+        double lastFinishTag = 0;
+    }
+
+    /**
+     * Cola de transferencias de un chunkserver con su límite de concurrencia
+     * Sin modo adaptativo el límite queda fijo en MAX_IN_FLIGHT_PER_SERVER
+     */
+    private class ServerLane {
+        private final Map<String, Flow> flows = new HashMap<>();
+        private int queued = 0;
+        private int inFlight = 0;
+        private long completed = 0;
+
+        // Fair queuing: tiempo virtual = etiqueta de la última transferencia arrancada
+        private double virtualTime = 0;
+        private boolean retryScheduled = false;
+
+        // Control AIMD
+        private double limit = MAX_IN_FLIGHT_PER_SERVER;
+        private double smoothedLatencyMs = -1;
+        private double baselineLatencyMs = -1;
+        private int samplesSinceDecrease = 0;
+        private long increases = 0;
+        private long decreases = 0;
+
+        /**
+         * Encola en el flujo de la transferencia: su etiqueta de fin avanza cost/weight
+         * desde el tiempo virtual o desde la anterior del mismo flujo si aún no terminó
+         */
+        synchronized void offer(QueuedTransfer transfer) {
+            Flow flow = flows.computeIfAbsent(transfer.flow, k -> new Flow());
+            transfer.finishTag = Math.max(virtualTime, flow.lastFinishTag) + transfer.cost / transfer.weight;
+            flow.lastFinishTag = transfer.finishTag;
+            flow.pending.addLast(transfer);
+            queued++;
+            dispatch();
+        }
+
+        synchronized void release() {
+            completed++;
+            inFlight--;
+            dispatch();
+        }
+
+        /**
+         * Arranca transferencias en cola mientras haya hueco bajo el límite actual,
+         * eligiendo entre las cabezas de flujo con saldo la de menor etiqueta de fin
+         * Si el límite bajó, las que están en vuelo terminan y no se reemplazan
+         * Si solo quedan flujos sin saldo, reintenta cuando el primero lo recupere
+         */
+        private void dispatch() {
+            long now = System.currentTimeMillis();
+            long retryMs = Long.MAX_VALUE;
+            while (inFlight < (int) limit && queued > 0) {
+                Flow selected = null;
+                for (Flow flow : flows.values()) {
+                    QueuedTransfer head = flow.pending.peekFirst();
+                    if (head == null ||
+                        (selected != null && head.finishTag >= selected.pending.peekFirst().finishTag)) {
+                        continue;
+                    }
+                    // Canceladas o vencidas en cola: salen sin consumir cuota
+                    long delayMs = head.future.isDone() || head.quota == null ? 0 : head.quota.delayMs(now);
+                    if (delayMs > 0) {
+                        if (!head.throttled) {
+                            head.throttled = true;
+                            head.quota.onThrottled();
+                        }
+                        retryMs = Math.min(retryMs, delayMs);
+                        continue;
+                    }
+                    selected = flow;
+                }
+                if (selected == null) {
+                    break;
+                }
+
+                QueuedTransfer next = selected.pending.pollFirst();
+                queued--;
+                if (next.future.isDone()) {
+                    continue;
+                }
+                virtualTime = Math.max(virtualTime, next.finishTag);
+                if (next.quota != null) {
+                    next.quota.charge(next.bytes);
+                }
+                inFlight++;
+                pool.execute(next.task);
+            }
+
+            flows.values().removeIf(flow -> flow.pending.isEmpty() && flow.lastFinishTag <= virtualTime);
+            if (queued > 0 && inFlight < (int) limit && retryMs != Long.MAX_VALUE && !retryScheduled) {
+                retryScheduled = true;
+                deadlineTimer.schedule(this::retryDispatch, retryMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private synchronized void retryDispatch() {
+            retryScheduled = false;
+            dispatch();
+        }
+
+        /**
+         * Transferencia completada: con latencia estable y demanda suficiente el límite
+         * sube 1/limit (uno por ventana); con latencia por encima de la tolerancia baja
+         */
+        synchronized void onSuccess(long latencyMs) {
+            if (!ADAPTIVE) {
+                return;
+            }
+            samplesSinceDecrease++;
+            if (smoothedLatencyMs < 0) {
+                smoothedLatencyMs = latencyMs;
+                baselineLatencyMs = latencyMs;
+            } else {
+                smoothedLatencyMs += (latencyMs - smoothedLatencyMs) * LATENCY_SMOOTHING;
+                // La línea base es el mínimo de la latencia suavizada (no de muestras sueltas),
+                // y deriva hacia arriba para seguir a un servidor que se volvió más lento
+                baselineLatencyMs = smoothedLatencyMs < baselineLatencyMs
+                        ? smoothedLatencyMs
+                        : baselineLatencyMs + (smoothedLatencyMs - baselineLatencyMs) * BASELINE_DRIFT;
+            }
+
+            if (smoothedLatencyMs > baselineLatencyMs * LATENCY_TOLERANCE + LATENCY_SLACK_MS) {
+                decrease();
+            } else if (inFlight + queued >= (int) limit && limit < MAX_LIMIT) {
+                // Solo crece si el límite es el que frena: sin demanda no hay información
+                limit = Math.min(MAX_LIMIT, limit + 1.0 / limit);
+                increases++;
+                dispatch();
+            }
+        }
+
+        /**
+         * Transferencia fallida (conexión, timeout o 5xx)
+         */
+        synchronized void onFailure() {
+            if (ADAPTIVE) {
+                samplesSinceDecrease++;
+                decrease();
+            }
+        }
+
+        /**
+         * Reducción multiplicativa, como mucho una vez por ventana (limit respuestas):
+         * las respuestas de la misma ventana reflejan la misma congestión
+         */
+        private void decrease() {
+            if (samplesSinceDecrease < (int) limit) {
+                return;
+            }
+            samplesSinceDecrease = 0;
+            limit = Math.max(Math.max(1, MIN_LIMIT), limit * BACKOFF);
+            decreases++;
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("inFlight", inFlight);
+            snapshot.put("queued", queued);
+            Map<String, Object> queuedByFlow = new HashMap<>();
+            flows.forEach((name, flow) -> queuedByFlow.put(name, flow.pending.size()));
+            snapshot.put("flows", queuedByFlow);
+            snapshot.put("completed", completed);
+            snapshot.put("limit", (int) limit);
+            if (ADAPTIVE) {
+                snapshot.put("latencyMs", Math.round(smoothedLatencyMs * 10) / 10.0);
+                snapshot.put("baselineLatencyMs", Math.round(baselineLatencyMs * 10) / 10.0);
+                snapshot.put("increases", increases);
+                snapshot.put("decreases", decreases);
+            }
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.gfs.client.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breakers por chunkserver
+ * - CLOSED: las transferencias pasan; fallos o llamadas lentas consecutivas abren el circuito
+ * - OPEN: las transferencias fallan al instante sin tocar la red
+ * - HALF_OPEN: vencido el tiempo de apertura pasa una sola prueba; si responde bien se cierra
+ * Los errores 4xx no cuentan: el servidor respondió
+ */
+@Component
+public class CircuitBreakerRegistry {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    @Value("${gfs.circuit-breaker.enabled:true}")
+    private boolean ENABLED;
+
+    @Value("${gfs.circuit-breaker.failure-threshold:5}")
+    private int FAILURE_THRESHOLD;
+
+    @Value("${gfs.circuit-breaker.slow-call-ms:5000}")
+    private long SLOW_CALL_MS;
+
+    @Value("${gfs.circuit-breaker.open-ms:5000}")
+    private long OPEN_MS;
+
+    private final Map<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+    // Estadísticas
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Indica si el circuito está abierto (sin consumir la prueba de HALF_OPEN)
+     * Sirve para ordenar réplicas y planificar escrituras
+     */
+    public boolean isOpen(String chunkserverUrl) {
+        if (!ENABLED) {
+            return false;
+        }
+        Breaker breaker = breakers.get(chunkserverUrl);
+        return breaker != null && breaker.isOpen();
+    }
+
+    /**
+     * Autoriza una transferencia a punto de arrancar
+     * En HALF_OPEN solo autoriza la prueba en curso
+     */
+    public boolean tryAcquire(String chunkserverUrl) {
+        if (!ENABLED) {
+            return true;
+        }
+        Breaker breaker = breakers.get(chunkserverUrl);
+        if (breaker == null || breaker.tryAcquire(chunkserverUrl)) {
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Registra una transferencia terminada; las lentas cuentan como fallo
+     */
+    public void recordSuccess(String chunkserverUrl, long latencyMs) {
+        if (!ENABLED) {
+            return;
+        }
+        Breaker breaker = breakers.computeIfAbsent(chunkserverUrl, k -> new Breaker());
+        if (latencyMs >= SLOW_CALL_MS) {
+            breaker.onFailure(chunkserverUrl, "llamada lenta (" + latencyMs + " ms)");
+        } else {
+            breaker.onSuccess(chunkserverUrl);
+        }
+    }
+
+    /**
+     * Registra una transferencia fallida (conexión, timeout o 5xx)
+     */
+    public void recordFailure(String chunkserverUrl, String reason) {
+        if (!ENABLED) {
+            return;
+        }
+        breakers.computeIfAbsent(chunkserverUrl, k -> new Breaker()).onFailure(chunkserverUrl, reason);
+    }
+
+    /**
+     * Obtiene el estado del circuito de cada chunkserver
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("failureThreshold", FAILURE_THRESHOLD);
+        stats.put("slowCallMs", SLOW_CALL_MS);
+        stats.put("openMs", OPEN_MS);
+        stats.put("rejected", rejected.get());
+
+        Map<String, Object> servers = new HashMap<>();
+        breakers.forEach((url, breaker) -> servers.put(url, breaker.snapshot()));
+        stats.put("servers", servers);
+        return stats;
+    }
+
+    /**
+     * Circuito de un chunkserver
+     */
+    private class Breaker {
+        private State state = State.CLOSED;
+        private int consecutiveFailures = 0;
+        private long openedAt = 0;
+        private long probeStartedAt = 0;
+        private long timesOpened = 0;
+
+        synchronized boolean isOpen() {
+            return state == State.OPEN && System.currentTimeMillis() - openedAt < OPEN_MS;
+        }
+
+        synchronized boolean tryAcquire(String chunkserverUrl) {
+            long now = System.currentTimeMillis();
+            switch (state) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (now - openedAt < OPEN_MS) {
+                        return false;
+                    }
+                    state = State.HALF_OPEN;
+                    probeStartedAt = now;
+                    System.out.println("   🟡 Circuito " + chunkserverUrl + " HALF_OPEN: enviando prueba");
+                    return true;
+                default:
+                    // Una prueba a la vez; si la anterior se perdió (cancelada) se permite otra
+                    if (now - probeStartedAt < OPEN_MS) {
+                        return false;
+                    }
+                    probeStartedAt = now;
+                    return true;
+            }
+        }
+
+        synchronized void onSuccess(String chunkserverUrl) {
+            consecutiveFailures = 0;
+            if (state != State.CLOSED) {
+                state = State.CLOSED;
+                System.out.println("   🟢 Circuito " + chunkserverUrl + " CLOSED: servidor recuperado");
+            }
+        }
+
+        synchronized void onFailure(String chunkserverUrl, String reason) {
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN ||
+                    (state == State.CLOSED && consecutiveFailures >= FAILURE_THRESHOLD)) {
+                state = State.OPEN;
+                openedAt = System.currentTimeMillis();
+                timesOpened++;
+                System.out.println("   🔴 Circuito " + chunkserverUrl + " OPEN tras " + consecutiveFailures +
+                                   " fallos (" + reason + ")");
+            }
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("state", state.name());
+            snapshot.put("consecutiveFailures", consecutiveFailures);
+            snapshot.put("timesOpened", timesOpened);
+            if (state == State.OPEN) {
+                snapshot.put("retryInMs", Math.max(0, OPEN_MS - (System.currentTimeMillis() - openedAt)));
+            }
+            return snapshot;
+        }
+    }
+}
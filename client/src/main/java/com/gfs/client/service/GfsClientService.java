@@ -1,121 +1,1516 @@
 package com.gfs.client.service;
 
+import com.gfs.client.config.HttpTransportConfig;
+import com.gfs.client.config.RequestCancellation;
+import com.gfs.client.config.RequestDeadline;
+import com.gfs.client.service.ChunkTransferExecutor.TransferClass;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.IntFunction;
 
 @Service
 public class GfsClientService {
 
+    private static final String REPLICA_CHAIN_HEADER = "X-GFS-Replica-Chain";
+    private static final String CHAIN_ACK_HEADER = "X-GFS-Chain-Ack";
+    private static final String UPLOAD_REF_HEADER = "X-GFS-Upload-Ref";
+    private static final String WRITE_TOKEN_HEADER = "X-GFS-Write-Token";
+    private static final String CAS_PREFIX = "cas_";
+
     @Value("${gfs.master-url}")
     private String masterUrl;
 
-    @Value("${gfs.chunk-size:65536}")
-    private int CHUNK_SIZE;
+    @Value("${gfs.chunk-size:65536}")
+    private int CHUNK_SIZE;
+
+    @Value("${gfs.upload.window:8}")
+    private int UPLOAD_WINDOW;
+
+    @Value("${gfs.upload.pipelined:true}")
+    private boolean PIPELINED_WRITES;
+
+    @Value("${gfs.upload.max-attempts:3}")
+    private int UPLOAD_MAX_ATTEMPTS;
+
+    @Value("${gfs.upload.write-quorum:0}")
+    private int WRITE_QUORUM;
+
+    @Value("${gfs.dedup.enabled:true}")
+    private boolean DEDUP_ENABLED;
+
+    @Value("${gfs.download.window:8}")
+    private int DOWNLOAD_WINDOW;
+
+    @Value("${gfs.page-index.enabled:true}")
+    private boolean PAGE_INDEX_ENABLED;
+
+    @Autowired
+    private ChunkTransferExecutor transferExecutor;
+
+    @Autowired
+    private ChunkCache chunkCache;
+
+    @Autowired
+    private MetadataCache metadataCache;
+
+    @Autowired
+    private HedgedReadPolicy hedgedReadPolicy;
+
+    @Autowired
+    private ReplicaSelector replicaSelector;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakers;
+
+    @Autowired
+    private WriteTokenService writeTokens;
+
+    @Autowired
+    private ReadRepairReporter readRepair;
+
+    @Autowired
+    private CallerQuotaRegistry callerQuotas;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private HttpTransportConfig httpTransport;
+
+    @Autowired
+    private PdfPageIndexer pageIndexer;
+
+    // Lecturas concurrentes del mismo PDF o chunk comparten una sola petición
+    private final SingleFlight<String, Map<String, Object>> metadataFlights = new SingleFlight<>();
+    private final SingleFlight<String, byte[]> chunkFlights = new SingleFlight<>();
+
+    // Planes de las sesiones de upload abiertas desde este cliente
+    private final Cache<String, Map<String, Object>> uploadSessions = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofHours(24))
+            .maximumSize(1000)
+            .build();
+
+    /**
+     * Sube un PDF al sistema GFS
+     * Las escrituras de chunks se reparten en paralelo entre los chunkservers
+     * Retorna el resultado de cada chunk y réplica
+     */
+    public Map<String, Object> uploadPdf(MultipartFile file) throws Exception {
+        return uploadPdf(file.getOriginalFilename(), file.getSize(), file, UploadProgressListener.NONE);
+    }
+
+    /**
+     * Sube un PDF desde una fuente que puede leerse más de una vez
+     * (archivo multipart o archivo temporal de un job de upload)
+     */
+    public Map<String, Object> uploadPdf(String pdfId, long size, InputStreamSource source,
+                                         UploadProgressListener listener) throws Exception {
+        // Primera pasada: hashes de contenido para no reenviar chunks ya almacenados
+        List<String> chunkHashes = null;
+        if (DEDUP_ENABLED) {
+            listener.onHashing();
+            try (InputStream in = source.getInputStream()) {
+                chunkHashes = hashChunks(in, size);
+            }
+        }
+
+        Map<String, Object> result;
+        try (InputStream in = source.getInputStream()) {
+            result = uploadPdf(pdfId, size, chunkHashes, in, listener);
+        }
+
+        // Última pasada: índice de páginas de la versión publicada
+        if (PAGE_INDEX_ENABLED && result.get("timestamp") instanceof Number timestamp) {
+            Integer pageCount = indexPages(pdfId, size, source, timestamp.longValue());
+            if (pageCount != null) {
+                result.put("pageCount", pageCount);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Calcula el índice de páginas y lo registra en el Master
+     * Un PDF que no se puede indexar solo pierde la lectura por página
+     * El índice se calcula sobre un archivo: una fuente que no lo es (multipart) se copia
+     * antes a un temporal para no cargar el PDF en memoria
+     */
+    public Integer indexPages(String pdfId, long size, InputStreamSource source, long timestamp) {
+        long startTime = System.currentTimeMillis();
+        Map<String, Object> pageIndex;
+        Path spooled = null;
+        try {
+            File file;
+            if (source instanceof Resource resource && resource.isFile()) {
+                file = resource.getFile();
+            } else {
+                spooled = Files.createTempFile("gfs-index-", ".pdf");
+                try (InputStream in = source.getInputStream()) {
+                    Files.copy(in, spooled, StandardCopyOption.REPLACE_EXISTING);
+                }
+                file = spooled.toFile();
+            }
+            pageIndex = pageIndexer.buildIndex(file, size);
+        } catch (IOException e) {
+            pageIndex = null;
+        } finally {
+            if (spooled != null) {
+                try {
+                    Files.deleteIfExists(spooled);
+                } catch (IOException e) {
+                    // El sistema operativo limpia los temporales
+                }
+            }
+        }
+        if (pageIndex == null) {
+            System.out.println("   📄 Sin índice de páginas para " + pdfId);
+            return null;
+        }
+
+        pageIndex.put("pdfId", pdfId);
+        pageIndex.put("timestamp", timestamp);
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            restTemplate.put(masterUrl + "/api/master/pdf/{pdfId}/pages",
+                    new HttpEntity<>(pageIndex, headers), pdfId);
+        } catch (Exception e) {
+            System.err.println("   ⚠️  No se pudo registrar el índice de páginas: " + e.getMessage());
+            return null;
+        }
+
+        int pageCount = ((List<?>) pageIndex.get("pages")).size();
+        System.out.println("   📄 Índice de páginas: " + pageCount + " páginas (" +
+                           (System.currentTimeMillis() - startTime) + " ms)");
+        return pageCount;
+    }
+
+    public Map<String, Object> uploadPdf(String pdfId, long size, InputStream in) throws Exception {
+        return uploadPdf(pdfId, size, null, in, UploadProgressListener.NONE);
+    }
+
+    /**
+     * Sube un PDF leyendo el stream de a un chunk por vez
+     * Cada bloque se envía mientras se lee el siguiente; solo hay UPLOAD_WINDOW
+     * chunks en memoria sin importar el tamaño del archivo.
+     * La subida usa una sesión reanudable: los chunks con réplicas fallidas se
+     * reintentan sin reenviar el archivo y el PDF solo se publica al confirmarla.
+     * Con chunkHashes (SHA-256 por chunk) el contenido ya almacenado no se envía.
+     * Con WRITE_QUORUM cada chunk espera solo ese número de réplicas; el resto se
+     * escribe en segundo plano y se informa al Master al terminar
+     */
+    public Map<String, Object> uploadPdf(String pdfId, long size, List<String> chunkHashes,
+                                         InputStream in, UploadProgressListener listener) throws Exception {
+        // Una nueva versión del PDF invalida los chunks y metadatos cacheados
+        chunkCache.invalidatePdf(pdfId);
+        metadataCache.invalidate(pdfId);
+
+        long startTime = System.currentTimeMillis();
+
+        // 1. Abrir sesión de upload en el Master
+        Map<String, Object> session = createUploadSession(pdfId, size, chunkHashes);
+        return uploadToSession(session, in, listener, true, startTime);
+    }
+
+    /**
+     * Envía los chunks de una sesión ya abierta leyendo el stream en orden
+     * Con publish=false la sesión queda con sus réplicas confirmadas para publicarse
+     * en lote (commitUploadSessions); en ese caso conviene abrirla sin quórum, para
+     * que no queden réplicas escribiéndose en segundo plano tras el commit
+     */
+    public Map<String, Object> uploadToSession(Map<String, Object> session, InputStream in,
+                                               UploadProgressListener listener, boolean publish,
+                                               long startTime) throws Exception {
+        String pdfId = (String) session.get("pdfId");
+        long size = ((Number) session.get("size")).longValue();
+        int writeQuorum = ((Number) session.getOrDefault("writeQuorum", WRITE_QUORUM)).intValue();
+        String uploadId = (String) session.get("uploadId");
+        int totalChunks = ((Number) session.get("totalChunks")).intValue();
+        Map<Integer, List<Map<String, Object>>> chunksByIndex = groupPlanByIndex(session);
+
+        @SuppressWarnings("unchecked")
+        Set<Integer> alreadyStored = new HashSet<>(
+                (List<Integer>) session.getOrDefault("alreadyStored", Collections.emptyList()));
+        listener.onSessionOpened(uploadId, totalChunks, alreadyStored);
+
+        // Contenido completo ya almacenado: el Master confirmó la sesión al abrirla
+        if (Boolean.TRUE.equals(session.get("committed"))) {
+            long elapsed = System.currentTimeMillis() - startTime;
+            System.out.println("   ♻️  Contenido ya almacenado: " + totalChunks +
+                               " chunks deduplicados, sin transferencias (" + elapsed + " ms)");
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("pdfId", pdfId);
+            result.put("uploadId", uploadId);
+            result.put("committed", true);
+            result.put("timestamp", session.get("timestamp"));
+            result.put("missingChunks", Collections.emptyList());
+            result.put("attempts", 0);
+            result.put("totalChunks", totalChunks);
+            result.put("deduplicatedChunks", totalChunks);
+            result.put("successfulWrites", 0);
+            result.put("failedWrites", 0);
+            result.put("elapsedMs", elapsed);
+            result.put("chunks", Collections.emptyList());
+            return result;
+        }
+
+        System.out.println("   📦 Enviando " + (totalChunks - alreadyStored.size()) + " de " + totalChunks +
+                           " chunks en paralelo" +
+                           (PIPELINED_WRITES ? " (cadena de replicación)" : "") +
+                           " [sesión " + uploadId + "]...");
+
+        // 2. Leer y enviar chunks en orden; el ejecutor limita las peticiones en vuelo por servidor
+        Map<Integer, CompletableFuture<List<Map<String, Object>>>> writesByChunk = new TreeMap<>();
+        Map<String, CompletableFuture<List<Map<String, Object>>>> writesByHash = new HashMap<>();
+        Map<Integer, CompletableFuture<List<Map<String, Object>>>> backgroundByChunk = new TreeMap<>();
+        Map<String, CompletableFuture<List<Map<String, Object>>>> backgroundByHash = new HashMap<>();
+        Map<Integer, byte[]> inFlightData = new ConcurrentHashMap<>();
+        Semaphore window = new Semaphore(UPLOAD_WINDOW);
+        // Sin cadena las réplicas en segundo plano las escribe el cliente: se acotan igual que el resto
+        Semaphore backgroundWindow = new Semaphore(UPLOAD_WINDOW);
+        int deduplicated = alreadyStored.size();
+
+        for (int chunkIndex = 0; chunkIndex < totalChunks; chunkIndex++) {
+            // Con el plazo vencido se deja de leer; la sesión queda abierta y reanudable
+            RequestDeadline.check("upload de " + pdfId);
+
+            List<Map<String, Object>> replicas = chunksByIndex.get(chunkIndex);
+            int expectedLength = (int) Math.min(CHUNK_SIZE, size - (long) chunkIndex * CHUNK_SIZE);
+
+            // Contenido ya almacenado: se avanza el stream sin enviar nada
+            if (alreadyStored.contains(chunkIndex)) {
+                in.skipNBytes(expectedLength);
+                continue;
+            }
+
+            // Réplicas que se esperan (quórum) y réplicas que se completan en segundo plano
+            List<Map<String, Object>> quorumReplicas = quorumReplicas(replicas, writeQuorum);
+            List<Map<String, Object>> laggingReplicas = new ArrayList<>(replicas);
+            laggingReplicas.removeAll(quorumReplicas);
+
+            String contentHash = contentHash(replicas);
+            CompletableFuture<List<Map<String, Object>>> sameContent =
+                    contentHash != null ? writesByHash.get(contentHash) : null;
+
+            // Esperar a que se libere un hueco antes de leer el siguiente bloque
+            if (sameContent == null) {
+                window.acquire();
+            }
+
+            byte[] chunkData = in.readNBytes(expectedLength);
+            if (chunkData.length < expectedLength) {
+                throw new IOException("Fin de archivo inesperado en chunk " + chunkIndex);
+            }
+
+            int index = chunkIndex;
+            CompletableFuture<List<Map<String, Object>>> writes;
+            CompletableFuture<List<Map<String, Object>>> background = null;
+            if (sameContent != null) {
+                // Repetido dentro del archivo: comparte la escritura de su primera aparición
+                writes = sameContent;
+                background = backgroundByHash.get(contentHash);
+                deduplicated++;
+            } else if (PIPELINED_WRITES) {
+                // En cadena las réplicas en segundo plano van al final: la cadena responde con el
+                // quórum y el chunkserver que lo completa informa al Master las demás
+                writes = writeChunkAsync(pdfId, chunkIndex, chunkData, quorumReplicas, laggingReplicas, uploadId);
+                writes.whenComplete((ignored, e) -> window.release());
+            } else {
+                writes = writeReplicasAsync(pdfId, chunkIndex, chunkData, quorumReplicas);
+                writes.whenComplete((ignored, e) -> window.release());
+                if (!laggingReplicas.isEmpty()) {
+                    // Las réplicas en segundo plano sobreviven al plazo de la petición
+                    backgroundWindow.acquire();
+                    Long deadline = RequestDeadline.current();
+                    RequestDeadline.clear();
+                    try {
+                        background = writeReplicasAsync(pdfId, chunkIndex, chunkData, laggingReplicas);
+                    } finally {
+                        RequestDeadline.set(deadline);
+                    }
+                    background.whenComplete((ignored, e) -> backgroundWindow.release());
+                }
+            }
+            // Las siguientes apariciones del mismo contenido comparten esta escritura
+            if (sameContent == null && contentHash != null) {
+                writesByHash.put(contentHash, writes);
+                if (background != null) {
+                    backgroundByHash.put(contentHash, background);
+                }
+            }
+            writesByChunk.put(chunkIndex, writes);
+            inFlightData.put(chunkIndex, chunkData);
+            if (background != null) {
+                backgroundByChunk.put(chunkIndex, background);
+            }
+
+            writes.whenComplete((replicaResults, e) -> {
+                int replicasOk = e != null ? 0 : countSuccessful(replicaResults);
+                // Solo se retienen en memoria los chunks que habrá que reintentar
+                if (replicasOk >= quorumReplicas.size()) {
+                    inFlightData.remove(index);
+                }
+                listener.onChunkWritten(index, replicasOk, quorumReplicas.size());
+            });
+        }
+
+        // 3. Recolectar resultados por chunk y confirmar las réplicas escritas
+        // Los chunks a reintentar salen de los resultados recolectados, no de los callbacks:
+        // join() puede volver antes de que corra el whenComplete de la escritura
+        Map<Integer, byte[]> pendingData = new HashMap<>();
+        List<Map<String, Object>> chunkResults = new ArrayList<>();
+        List<Map<String, Object>> acks = new ArrayList<>();
+        int successCount = 0;
+        int failCount = 0;
+
+        for (Map.Entry<Integer, CompletableFuture<List<Map<String, Object>>>> entry : writesByChunk.entrySet()) {
+            List<Map<String, Object>> replicaResults = entry.getValue().join();
+            int replicasOk = countSuccessful(replicaResults);
+            successCount += replicasOk;
+            failCount += replicaResults.size() - replicasOk;
+            if (replicasOk < replicaResults.size()) {
+                pendingData.put(entry.getKey(), inFlightData.get(entry.getKey()));
+            }
+
+            chunkResults.add(toChunkResult(entry.getKey(), replicaResults));
+            acks.add(toChunkAck(entry.getKey(), replicaResults));
+        }
+        Map<String, Object> confirmation = confirmUploadChunks(uploadId, acks);
+        @SuppressWarnings("unchecked")
+        List<Integer> missingChunks = (List<Integer>) confirmation.getOrDefault("missingChunks",
+                Collections.emptyList());
+
+        // 4. Reintentar solo las réplicas pendientes (el Master re-planifica servidores caídos)
+        int attempt = 1;
+        while (!pendingData.isEmpty() && attempt < UPLOAD_MAX_ATTEMPTS) {
+            RequestDeadline.check("upload de " + pdfId);
+            attempt++;
+            System.out.println("   🔄 Reintento #" + attempt + ": " + pendingData.size() + " chunks pendientes");
+
+            Map<String, Object> status = getUploadSession(uploadId);
+            Map<Integer, List<Map<String, Object>>> missingReplicas = groupMissingReplicas(status);
+
+            Map<Integer, CompletableFuture<List<Map<String, Object>>>> retries = new TreeMap<>();
+            for (Map.Entry<Integer, List<Map<String, Object>>> entry : missingReplicas.entrySet()) {
+                byte[] chunkData = pendingData.get(entry.getKey());
+                if (chunkData != null) {
+                    retries.put(entry.getKey(),
+                            writeReplicasAsync(pdfId, entry.getKey(), chunkData, entry.getValue()));
+                }
+            }
+
+            List<Map<String, Object>> retryAcks = new ArrayList<>();
+            for (Map.Entry<Integer, CompletableFuture<List<Map<String, Object>>>> entry : retries.entrySet()) {
+                List<Map<String, Object>> replicaResults = entry.getValue().join();
+                int replicasOk = countSuccessful(replicaResults);
+                successCount += replicasOk;
+                failCount += replicaResults.size() - replicasOk;
+                retryAcks.add(toChunkAck(entry.getKey(), replicaResults));
+                listener.onChunkWritten(entry.getKey(), replicasOk, replicaResults.size());
+            }
+
+            confirmation = confirmUploadChunks(uploadId, retryAcks);
+            @SuppressWarnings("unchecked")
+            List<Integer> stillMissing = (List<Integer>) confirmation.get("missingChunks");
+            missingChunks = stillMissing;
+            pendingData.keySet().retainAll(stillMissing);
+        }
+
+        // 5. Confirmar la sesión: el Master verifica que cada chunk tenga sus réplicas
+        Map<String, Object> commit;
+        if (publish) {
+            listener.onCommitting();
+            commit = commitUploadSession(uploadId);
+        } else {
+            commit = new HashMap<>();
+            commit.put("committed", false);
+            commit.put("missingChunks", missingChunks);
+        }
+        boolean committed = Boolean.TRUE.equals(commit.get("committed"));
+
+        // 6. Las réplicas en segundo plano se informan al Master cuando terminan
+        long backgroundInFlight = backgroundByChunk.values().stream().filter(write -> !write.isDone()).count();
+        reportBackgroundReplicas(pdfId, uploadId, committed, backgroundByChunk);
+
+        long elapsed = System.currentTimeMillis() - startTime;
+
+        // Descartar lecturas de la versión anterior cacheadas durante el upload
+        chunkCache.invalidatePdf(pdfId);
+        metadataCache.invalidate(pdfId);
+
+        System.out.println("\n   📊 Resultado:");
+        System.out.println("      ✅ Exitosos: " + successCount);
+        if (deduplicated > 0) {
+            System.out.println("      ♻️  Deduplicados: " + deduplicated + " chunks");
+        }
+        if (failCount > 0) {
+            System.out.println("      ❌ Fallidos: " + failCount);
+        }
+        if (!backgroundByChunk.isEmpty()) {
+            System.out.println("      ⏳ Quórum " + writeQuorum + ": " + backgroundInFlight +
+                               " chunks completando réplicas en segundo plano");
+        }
+        System.out.println("      " + (committed ? "✅ Sesión confirmada"
+                : !publish && missingChunks.isEmpty() ? "⏳ Sesión completa, se confirma en lote"
+                : "⚠️  Sesión incompleta (reanudable)"));
+        System.out.println("      ⏱️  Tiempo: " + elapsed + " ms");
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("pdfId", pdfId);
+        result.put("uploadId", uploadId);
+        result.put("committed", committed);
+        if (committed) {
+            result.put("timestamp", commit.get("timestamp"));
+        }
+        result.put("missingChunks", commit.getOrDefault("missingChunks", Collections.emptyList()));
+        result.put("attempts", attempt);
+        result.put("totalChunks", totalChunks);
+        result.put("deduplicatedChunks", deduplicated);
+        result.put("writeQuorum", writeQuorum);
+        result.put("backgroundReplicaChunks", backgroundInFlight);
+        result.put("successfulWrites", successCount);
+        result.put("failedWrites", failCount);
+        result.put("elapsedMs", elapsed);
+        result.put("chunks", chunkResults);
+        return result;
+    }
+
+    /**
+     * Abre una sesión de upload reanudable en el Master
+     * Retorna el uploadId y el plan de réplicas de cada chunk
+     */
+    public Map<String, Object> createUploadSession(String pdfId, long size) {
+        return createUploadSession(pdfId, size, null);
+    }
+
+    /**
+     * Abre una sesión enviando el hash de cada chunk
+     * El Master informa en alreadyStored los chunks que no hace falta enviar
+     */
+    public Map<String, Object> createUploadSession(String pdfId, long size, List<String> chunkHashes) {
+        return openUploadSession(pdfId, size, chunkHashes, WRITE_QUORUM);
+    }
+
+    private Map<String, Object> openUploadSession(String pdfId, long size, List<String> chunkHashes,
+                                                  int writeQuorum) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("pdfId", pdfId);
+        request.put("size", size);
+        if (chunkHashes != null) {
+            request.put("chunkHashes", chunkHashes);
+        }
+        if (writeQuorum > 0) {
+            request.put("writeQuorum", writeQuorum);
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        ResponseEntity<Map> response = restTemplate.postForEntity(
+                masterUrl + "/api/master/upload/session",
+                new HttpEntity<>(request, headers),
+                Map.class
+        );
+
+        if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
+            throw new RuntimeException("Error abriendo sesión de upload en el Master");
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> session = response.getBody();
+        uploadSessions.put((String) session.get("uploadId"), session);
+        return session;
+    }
+
+    /**
+     * Abre las sesiones de muchos archivos en una sola llamada al Master
+     * Cada archivo: {pdfId, size, chunkHashes}. Retorna las sesiones abiertas y,
+     * en errors, los archivos que el Master no pudo planificar
+     */
+    public Map<String, Object> createUploadSessions(List<Map<String, Object>> files, int writeQuorum) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("files", files);
+        request.put("writeQuorum", writeQuorum);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        ResponseEntity<Map> response = restTemplate.postForEntity(
+                masterUrl + "/api/master/upload/batch",
+                new HttpEntity<>(request, headers),
+                Map.class
+        );
+
+        if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
+            throw new RuntimeException("Error abriendo lote de sesiones en el Master");
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> body = response.getBody();
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> sessions = (List<Map<String, Object>>) body.get("sessions");
+        for (Map<String, Object> session : sessions) {
+            uploadSessions.put((String) session.get("uploadId"), session);
+        }
+        return body;
+    }
+
+    /**
+     * Confirma muchas sesiones en una sola llamada al Master
+     * Retorna los PDFs publicados (committed) y las sesiones que siguen abiertas (errors)
+     */
+    public Map<String, Object> commitUploadSessions(List<String> uploadIds) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("uploadIds", uploadIds);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        ResponseEntity<Map> response = restTemplate.postForEntity(
+                masterUrl + "/api/master/upload/batch/commit",
+                new HttpEntity<>(request, headers),
+                Map.class
+        );
+
+        if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
+            throw new RuntimeException("Error confirmando lote de sesiones en el Master");
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> body = response.getBody();
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> committed = (List<Map<String, Object>>) body.get("committed");
+        for (Map<String, Object> entry : committed) {
+            uploadSessions.invalidate((String) entry.get("uploadId"));
+            chunkCache.invalidatePdf((String) entry.get("pdfId"));
+            metadataCache.invalidate((String) entry.get("pdfId"));
+        }
+        return body;
+    }
+
+    /**
+     * Estado de una sesión: réplicas confirmadas y chunks pendientes
+     * Refresca el plan local, que el Master puede haber re-planificado
+     */
+    public Map<String, Object> getUploadSession(String uploadId) {
+        try {
+            ResponseEntity<Map> response = restTemplate.getForEntity(
+                    masterUrl + "/api/master/upload/session/{uploadId}",
+                    Map.class,
+                    uploadId
+            );
+
+            @SuppressWarnings("unchecked")
+            Map<String, Object> session = response.getBody();
+            uploadSessions.put(uploadId, session);
+            return session;
+
+        } catch (HttpClientErrorException.NotFound e) {
+            uploadSessions.invalidate(uploadId);
+            throw new RuntimeException("Sesión de upload no encontrada: " + uploadId);
+        }
+    }
+
+    /**
+     * Sube un chunk de una sesión, en cualquier orden
+     * Se escribe en las réplicas planificadas y se confirma en el Master
+     */
+    public Map<String, Object> uploadSessionChunk(String uploadId, int chunkIndex, byte[] chunkData) {
+        Map<String, Object> session = uploadSessions.getIfPresent(uploadId);
+        if (session == null) {
+            session = getUploadSession(uploadId);
+        }
+
+        String pdfId = (String) session.get("pdfId");
+        long size = ((Number) session.get("size")).longValue();
+        int totalChunks = ((Number) session.get("totalChunks")).intValue();
+
+        if (chunkIndex < 0 || chunkIndex >= totalChunks) {
+            throw new IllegalArgumentException("Chunk fuera de rango: " + chunkIndex);
+        }
+        int expectedLength = (int) Math.min(CHUNK_SIZE, size - (long) chunkIndex * CHUNK_SIZE);
+        if (chunkData.length != expectedLength) {
+            throw new IllegalArgumentException("Tamaño de chunk " + chunkIndex + " inválido: " +
+                                               chunkData.length + " (esperado " + expectedLength + ")");
+        }
+
+        List<Map<String, Object>> replicas = groupPlanByIndex(session).get(chunkIndex);
+
+        // Un chunk direccionado por contenido debe coincidir con su hash: lo comparten otros PDFs
+        String contentHash = contentHash(replicas);
+        if (contentHash != null && !contentHash.equals(sha256(chunkData))) {
+            throw new IllegalArgumentException("El contenido del chunk " + chunkIndex + " no coincide con su hash");
+        }
+
+        List<Map<String, Object>> replicaResults = writeChunkAsync(pdfId, chunkIndex, chunkData, replicas).join();
+
+        Map<String, Object> confirmation = confirmUploadChunks(uploadId,
+                Collections.singletonList(toChunkAck(chunkIndex, replicaResults)));
+
+        Map<String, Object> result = toChunkResult(chunkIndex, replicaResults);
+        result.put("uploadId", uploadId);
+        result.put("missingChunks", confirmation.get("missingChunks"));
+        return result;
+    }
+
+    /**
+     * Confirma la sesión de upload
+     * Si faltan réplicas retorna committed=false y los chunks pendientes
+     */
+    public Map<String, Object> commitUploadSession(String uploadId) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("uploadId", uploadId);
+
+        try {
+            ResponseEntity<Map> response = restTemplate.postForEntity(
+                    masterUrl + "/api/master/upload/session/{uploadId}/commit",
+                    null,
+                    Map.class,
+                    uploadId
+            );
+
+            @SuppressWarnings("unchecked")
+            Map<String, Object> body = response.getBody();
+            String pdfId = (String) body.get("pdfId");
+
+            uploadSessions.invalidate(uploadId);
+            chunkCache.invalidatePdf(pdfId);
+            metadataCache.invalidate(pdfId);
+
+            result.putAll(body);
+            result.put("committed", true);
+
+        } catch (HttpClientErrorException.Conflict e) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> body = e.getResponseBodyAs(Map.class);
+            if (body != null) {
+                result.putAll(body);
+            }
+            result.put("committed", false);
+
+        } catch (HttpClientErrorException.NotFound e) {
+            throw new RuntimeException("Sesión de upload no encontrada: " + uploadId);
+        }
+        return result;
+    }
+
+    /**
+     * Cancela una sesión de upload
+     */
+    public void abortUploadSession(String uploadId) {
+        uploadSessions.invalidate(uploadId);
+        restTemplate.delete(masterUrl + "/api/master/upload/session/{uploadId}", uploadId);
+    }
+
+    /**
+     * Planifica un upload directo desde el navegador
+     * Abre la sesión en el Master y retorna, por cada chunk a enviar, la cadena de
+     * chunkservers y un token de escritura firmado; los bytes no pasan por este cliente
+     */
+    public Map<String, Object> planUpload(String pdfId, long size, List<String> chunkHashes) {
+        if (!writeTokens.isEnabled()) {
+            throw new IllegalStateException("Upload directo deshabilitado");
+        }
+        chunkCache.invalidatePdf(pdfId);
+        metadataCache.invalidate(pdfId);
+
+        // Sin quórum: el navegador escribe todas las réplicas por la cadena
+        Map<String, Object> session = openUploadSession(pdfId, size, chunkHashes, 0);
+
+        // Contenido completo ya almacenado: el Master confirmó la sesión al abrirla
+        if (Boolean.TRUE.equals(session.get("committed"))) {
+            System.out.println("   ♻️  Contenido ya almacenado: " + pdfId + " sin transferencias");
+            if (PAGE_INDEX_ENABLED && session.get("timestamp") instanceof Number timestamp) {
+                indexPagesInBackground(pdfId, timestamp.longValue());
+            }
+            Map<String, Object> plan = toDirectPlan(session, Collections.emptyMap());
+            plan.put("committed", true);
+            plan.put("timestamp", session.get("timestamp"));
+            return plan;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Integer> alreadyStored = (List<Integer>) session.getOrDefault("alreadyStored", Collections.emptyList());
+        Map<Integer, List<Map<String, Object>>> targets = groupPlanByIndex(session);
+        targets.keySet().removeAll(alreadyStored);
+        return toDirectPlan(session, targets);
+    }
+
+    /**
+     * Plan de upload directo de los chunks pendientes de una sesión
+     * Solo incluye las réplicas sin confirmar, según el plan vigente del Master
+     */
+    public Map<String, Object> getUploadPlan(String uploadId) {
+        Map<String, Object> session = getUploadSession(uploadId);
+        return toDirectPlan(session, groupMissingReplicas(session));
+    }
+
+    private Map<String, Object> toDirectPlan(Map<String, Object> session,
+                                             Map<Integer, List<Map<String, Object>>> targetsByChunk) {
+        String pdfId = (String) session.get("pdfId");
+        long size = ((Number) session.get("size")).longValue();
+        long expiresAt = writeTokens.nextExpiry();
+
+        List<Map<String, Object>> chunks = new ArrayList<>();
+        for (Map.Entry<Integer, List<Map<String, Object>>> entry : new TreeMap<>(targetsByChunk).entrySet()) {
+            int chunkIndex = entry.getKey();
+            List<Map<String, Object>> replicas = entry.getValue();
+            if (replicas.isEmpty()) {
+                continue;
+            }
+            int length = (int) Math.min(CHUNK_SIZE, size - (long) chunkIndex * CHUNK_SIZE);
+            String storageId = storageId(pdfId, replicas);
+            int storageIndex = storageIndex(chunkIndex, replicas);
+
+            // La cadena empieza por la primaria; los servidores con el circuito abierto van al final
+            List<String> targets = replicas.stream()
+                    .sorted(Comparator.<Map<String, Object>, Boolean>comparing(
+                                    replica -> circuitBreakers.isOpen((String) replica.get("chunkserverUrl")))
+                            .thenComparingInt(replica -> (Integer) replica.get("replicaIndex")))
+                    .map(replica -> (String) replica.get("chunkserverUrl"))
+                    .toList();
+
+            Map<String, Object> chunk = new HashMap<>();
+            chunk.put("chunkIndex", chunkIndex);
+            chunk.put("offset", (long) chunkIndex * CHUNK_SIZE);
+            chunk.put("length", length);
+            chunk.put("storageId", storageId);
+            chunk.put("storageIndex", storageIndex);
+            chunk.put("targets", targets);
+            chunk.put("token", writeTokens.issue(storageId, storageIndex, length, contentHash(replicas),
+                    targets, expiresAt));
+            chunks.add(chunk);
+        }
+
+        Map<String, Object> plan = new HashMap<>();
+        plan.put("uploadId", session.get("uploadId"));
+        plan.put("pdfId", pdfId);
+        plan.put("size", size);
+        plan.put("chunkSize", CHUNK_SIZE);
+        plan.put("totalChunks", session.get("totalChunks"));
+        plan.put("committed", false);
+        plan.put("alreadyStored", session.getOrDefault("alreadyStored", Collections.emptyList()));
+        plan.put("tokenExpiresAt", expiresAt);
+        plan.put("chunks", chunks);
+        return plan;
+    }
+
+    /**
+     * Confirma en el Master los chunks que el navegador escribió directamente
+     * Cada réplica informada debe estar en la cadena del token y venir respaldada por el
+     * recibo que firmó ese mismo chunkserver; las fallidas se informan para que el Master
+     * las re-planifique
+     */
+    public Map<String, Object> confirmDirectChunks(String uploadId, List<Map<String, Object>> reports) {
+        Map<String, Object> session = uploadSessions.getIfPresent(uploadId);
+        if (session == null) {
+            session = getUploadSession(uploadId);
+        }
+        String pdfId = (String) session.get("pdfId");
+        Map<Integer, List<Map<String, Object>>> plan = groupPlanByIndex(session);
+
+        List<Map<String, Object>> acks = new ArrayList<>();
+        for (Map<String, Object> report : reports) {
+            int chunkIndex = ((Number) report.get("chunkIndex")).intValue();
+            List<Map<String, Object>> replicas = plan.get(chunkIndex);
+            if (replicas == null) {
+                throw new IllegalArgumentException("Chunk fuera de rango: " + chunkIndex);
+            }
+
+            String token = (String) report.get("token");
+            WriteTokenService.Claims claims = writeTokens.parse(token);
+            if (!claims.storageId().equals(storageId(pdfId, replicas)) ||
+                    claims.storageIndex() != storageIndex(chunkIndex, replicas)) {
+                throw new IllegalArgumentException("El token no corresponde al chunk " + chunkIndex);
+            }
+
+            @SuppressWarnings("unchecked")
+            List<String> stored = (List<String>) report.getOrDefault("stored", Collections.emptyList());
+            @SuppressWarnings("unchecked")
+            Map<String, String> receipts = (Map<String, String>) report.getOrDefault("receipts", Collections.emptyMap());
+            for (String chunkserverUrl : stored) {
+                if (!claims.targets().contains(chunkserverUrl) ||
+                        !writeTokens.verifyReceipt(token, chunkserverUrl, receipts.get(chunkserverUrl))) {
+                    throw new IllegalArgumentException("Recibo inválido para el chunk " + chunkIndex +
+                                                       " en " + chunkserverUrl);
+                }
+            }
+
+            Map<String, Object> ack = new HashMap<>();
+            ack.put("chunkIndex", chunkIndex);
+            ack.put("replicas", stored);
+            ack.put("failed", report.getOrDefault("failed", Collections.emptyList()));
+            acks.add(ack);
+        }
+        return confirmUploadChunks(uploadId, acks);
+    }
+
+    /**
+     * Confirma un upload directo
+     * El índice de páginas se calcula en segundo plano leyendo el PDF publicado
+     */
+    public Map<String, Object> commitDirectUpload(String uploadId) {
+        Map<String, Object> result = commitUploadSession(uploadId);
+        if (PAGE_INDEX_ENABLED && Boolean.TRUE.equals(result.get("committed")) &&
+                result.get("timestamp") instanceof Number timestamp) {
+            indexPagesInBackground((String) result.get("pdfId"), timestamp.longValue());
+        }
+        return result;
+    }
+
+    public boolean isDedupEnabled() {
+        return DEDUP_ENABLED;
+    }
+
+    public boolean isDirectUploadEnabled() {
+        return writeTokens.isEnabled();
+    }
+
+    /**
+     * Indexa las páginas de un PDF ya publicado, leyéndolo desde los chunkservers
+     */
+    private void indexPagesInBackground(String pdfId, long timestamp) {
+        CompletableFuture.runAsync(() -> {
+            Path tempFile = null;
+            try {
+                tempFile = Files.createTempFile("gfs-index-", ".pdf");
+                Map<String, Object> metadata = getMetadata(pdfId);
+                try (OutputStream out = Files.newOutputStream(tempFile)) {
+                    downloadPdf(pdfId, metadata, out);
+                }
+                indexPages(pdfId, ((Number) metadata.get("size")).longValue(),
+                        new FileSystemResource(tempFile), timestamp);
+            } catch (Exception e) {
+                System.err.println("   ⚠️  No se pudo indexar " + pdfId + ": " + e.getMessage());
+            } finally {
+                if (tempFile != null) {
+                    try {
+                        Files.deleteIfExists(tempFile);
+                    } catch (IOException e) {
+                        // El sistema operativo limpia los temporales
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Calcula el SHA-256 de cada chunk de un stream
+     */
+    public List<String> hashChunks(InputStream in, long size) throws IOException {
+        int totalChunks = (int) Math.ceil((double) size / CHUNK_SIZE);
+        List<String> hashes = new ArrayList<>(totalChunks);
+
+        for (int chunkIndex = 0; chunkIndex < totalChunks; chunkIndex++) {
+            int expectedLength = (int) Math.min(CHUNK_SIZE, size - (long) chunkIndex * CHUNK_SIZE);
+            byte[] chunkData = in.readNBytes(expectedLength);
+            if (chunkData.length < expectedLength) {
+                throw new IOException("Fin de archivo inesperado en chunk " + chunkIndex);
+            }
+            hashes.add(sha256(chunkData));
+        }
+        return hashes;
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Hash de contenido de un chunk según su plan (null si no está deduplicado)
+     */
+    private static String contentHash(List<Map<String, Object>> replicas) {
+        return replicas == null || replicas.isEmpty() ? null : (String) replicas.get(0).get("contentHash");
+    }
+
+    /**
+     * Identificador físico de un chunk en los chunkservers
+     * Los chunks direccionados por contenido se comparten entre PDFs como cas_<hash>, índice 0
+     */
+    private static String storageId(String pdfId, List<Map<String, Object>> replicas) {
+        String contentHash = contentHash(replicas);
+        return contentHash != null ? CAS_PREFIX + contentHash : pdfId;
+    }
+
+    private static int storageIndex(int chunkIndex, List<Map<String, Object>> replicas) {
+        return contentHash(replicas) != null ? 0 : chunkIndex;
+    }
+
+    /**
+     * Confirma en el Master las réplicas escritas de uno o varios chunks
+     */
+    private Map<String, Object> confirmUploadChunks(String uploadId, List<Map<String, Object>> acks) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("chunks", acks);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        ResponseEntity<Map> response = restTemplate.postForEntity(
+                masterUrl + "/api/master/upload/session/{uploadId}/chunks",
+                new HttpEntity<>(request, headers),
+                Map.class,
+                uploadId
+        );
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> body = response.getBody();
+        return body;
+    }
+
+    /**
+     * Agrupa el plan de una sesión por índice de chunk
+     */
+    private Map<Integer, List<Map<String, Object>>> groupPlanByIndex(Map<String, Object> session) {
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> chunks = (List<Map<String, Object>>) session.get("chunks");
+
+        Map<Integer, List<Map<String, Object>>> chunksByIndex = new HashMap<>();
+        for (Map<String, Object> chunk : chunks) {
+            int chunkIndex = (Integer) chunk.get("chunkIndex");
+            chunksByIndex.computeIfAbsent(chunkIndex, k -> new ArrayList<>()).add(chunk);
+        }
+        return chunksByIndex;
+    }
+
+    /**
+     * Réplicas planificadas que todavía no fueron confirmadas, por chunk pendiente
+     */
+    private Map<Integer, List<Map<String, Object>>> groupMissingReplicas(Map<String, Object> session) {
+        @SuppressWarnings("unchecked")
+        List<Integer> missingChunks = (List<Integer>) session.get("missingChunks");
+        @SuppressWarnings("unchecked")
+        Map<String, List<String>> confirmed = (Map<String, List<String>>) session.get("confirmed");
+        Map<Integer, List<Map<String, Object>>> plan = groupPlanByIndex(session);
+
+        Map<Integer, List<Map<String, Object>>> missing = new TreeMap<>();
+        for (Integer chunkIndex : missingChunks) {
+            List<String> done = confirmed.getOrDefault(String.valueOf(chunkIndex), Collections.emptyList());
+            List<Map<String, Object>> replicas = new ArrayList<>();
+            for (Map<String, Object> replica : plan.getOrDefault(chunkIndex, Collections.emptyList())) {
+                if (!done.contains((String) replica.get("chunkserverUrl"))) {
+                    replicas.add(replica);
+                }
+            }
+            missing.put(chunkIndex, replicas);
+        }
+        return missing;
+    }
+
+    private int countSuccessful(List<Map<String, Object>> replicaResults) {
+        if (replicaResults == null) {
+            return 0;
+        }
+        return (int) replicaResults.stream()
+                .filter(replicaResult -> "success".equals(replicaResult.get("status")))
+                .count();
+    }
+
+    private Map<String, Object> toChunkResult(int chunkIndex, List<Map<String, Object>> replicaResults) {
+        int replicasOk = countSuccessful(replicaResults);
+
+        Map<String, Object> chunkResult = new HashMap<>();
+        chunkResult.put("chunkIndex", chunkIndex);
+        chunkResult.put("replicasOk", replicasOk);
+        chunkResult.put("replicasFailed", replicaResults.size() - replicasOk);
+        chunkResult.put("replicas", replicaResults);
+        return chunkResult;
+    }
+
+    private Map<String, Object> toChunkAck(int chunkIndex, List<Map<String, Object>> replicaResults) {
+        List<String> stored = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+        for (Map<String, Object> replicaResult : replicaResults) {
+            String chunkserverUrl = (String) replicaResult.get("chunkserverUrl");
+            if ("success".equals(replicaResult.get("status"))) {
+                stored.add(chunkserverUrl);
+            } else {
+                failed.add(chunkserverUrl);
+            }
+        }
+
+        // Las réplicas fallidas se informan para que el Master las re-planifique
+        Map<String, Object> ack = new HashMap<>();
+        ack.put("chunkIndex", chunkIndex);
+        ack.put("replicas", stored);
+        ack.put("failed", failed);
+        return ack;
+    }
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    /**
+     * Réplicas de un chunk que el upload espera: las writeQuorum primeras por replicaIndex,
+     * dejando para el segundo plano las de servidores con el circuito abierto
+     */
+    private List<Map<String, Object>> quorumReplicas(List<Map<String, Object>> replicas, int writeQuorum) {
+        if (writeQuorum <= 0 || writeQuorum >= replicas.size()) {
+            return replicas;
+        }
+        List<Map<String, Object>> ordered = new ArrayList<>(replicas);
+        ordered.sort(Comparator.<Map<String, Object>, Boolean>comparing(
+                        replica -> circuitBreakers.isOpen((String) replica.get("chunkserverUrl")))
+                .thenComparingInt(replica -> (Integer) replica.get("replicaIndex")));
+        return new ArrayList<>(ordered.subList(0, writeQuorum));
+    }
 
     /**
-     * Sube un PDF al sistema GFS
+     * Informa al Master las réplicas escritas en segundo plano
+     * Con la sesión confirmada se registran en los metadatos (o se descartan si fallaron,
+     * para que el IntegrityMonitor las reponga); si no, se confirman en la sesión abierta
      */
-    public String uploadPdf(MultipartFile file) throws Exception {
-        String pdfId = file.getOriginalFilename();
-        byte[] data = file.getBytes();
+    private void reportBackgroundReplicas(String pdfId, String uploadId, boolean committed,
+                                          Map<Integer, CompletableFuture<List<Map<String, Object>>>> background) {
+        background.forEach((chunkIndex, writes) -> writes.thenAccept(replicaResults -> {
+            try {
+                if (!committed) {
+                    confirmUploadChunks(uploadId, List.of(toChunkAck(chunkIndex, replicaResults)));
+                    return;
+                }
+                for (Map<String, Object> replicaResult : replicaResults) {
+                    String chunkserverUrl = (String) replicaResult.get("chunkserverUrl");
+                    if ("success".equals(replicaResult.get("status"))) {
+                        completePendingReplica(pdfId, chunkIndex, chunkserverUrl);
+                    } else {
+                        abandonPendingReplica(pdfId, chunkIndex, chunkserverUrl);
+                    }
+                }
+                metadataCache.invalidate(pdfId);
+            } catch (Exception e) {
+                System.err.println("      ⚠️  No se pudo informar réplicas del chunk " + chunkIndex +
+                                   ": " + e.getMessage());
+            }
+        }));
+    }
 
-        // 1. Solicitar plan de upload al Master
-        Map<String, Object> planRequest = new HashMap<>();
-        planRequest.put("pdfId", pdfId);
-        planRequest.put("size", data.length);
+    private void completePendingReplica(String pdfId, int chunkIndex, String chunkserverUrl) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("chunkIndex", chunkIndex);
+        request.put("chunkserverUrl", chunkserverUrl);
 
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
 
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(planRequest, headers);
+        try {
+            restTemplate.postForEntity(
+                    masterUrl + "/api/master/pdf/{pdfId}/replica",
+                    new HttpEntity<>(request, headers),
+                    Map.class,
+                    pdfId
+            );
+        } catch (HttpClientErrorException.Conflict e) {
+            // El PDF fue reemplazado o eliminado mientras se escribía la réplica
+            System.out.println("      ⚠️  Réplica de chunk " + chunkIndex + " ya no está pendiente");
+        }
+    }
 
-        ResponseEntity<Map> planResponse = restTemplate.postForEntity(
-                masterUrl + "/api/master/upload",
-                entity,
-                Map.class
+    private void abandonPendingReplica(String pdfId, int chunkIndex, String chunkserverUrl) {
+        restTemplate.delete(
+                masterUrl + "/api/master/pdf/{pdfId}/replica?chunkIndex={chunkIndex}&chunkserverUrl={chunkserverUrl}",
+                pdfId, chunkIndex, chunkserverUrl
         );
+    }
+
+    /**
+     * Escribe todas las réplicas de un chunk
+     * En modo cadena el cliente envía el chunk una sola vez a la primaria, que lo reenvía
+     * al resto; las réplicas que la cadena no confirma se escriben directamente.
+     * Los servidores con el circuito abierto quedan fuera de la cadena: su escritura
+     * falla al instante y el Master la re-planifica en el reintento
+     */
+    private CompletableFuture<List<Map<String, Object>>> writeChunkAsync(String pdfId, int chunkIndex,
+                                                                         byte[] chunkData,
+                                                                         List<Map<String, Object>> replicas) {
+        return writeChunkAsync(pdfId, chunkIndex, chunkData, replicas, Collections.emptyList(), null);
+    }
 
-        if (!planResponse.getStatusCode().is2xxSuccessful()) {
-            throw new RuntimeException("Error obteniendo plan de upload del Master");
+    /**
+     * Escribe las réplicas de un chunk con réplicas en segundo plano al final de la cadena
+     * La cadena responde en cuanto escriben las réplicas esperadas; el chunkserver que
+     * completa el quórum informa al Master las que siguen (sesión uploadId). Las réplicas
+     * en segundo plano que quedan fuera de la cadena las repone el Master al vencer su plazo
+     */
+    private CompletableFuture<List<Map<String, Object>>> writeChunkAsync(String pdfId, int chunkIndex,
+                                                                         byte[] chunkData,
+                                                                         List<Map<String, Object>> replicas,
+                                                                         List<Map<String, Object>> lagging,
+                                                                         String uploadId) {
+        if (!PIPELINED_WRITES || replicas.size() + lagging.size() < 2) {
+            return writeReplicasAsync(pdfId, chunkIndex, chunkData, replicas);
         }
 
-        @SuppressWarnings("unchecked")
-        List<Map<String, Object>> chunks =
-                (List<Map<String, Object>>) planResponse.getBody().get("chunks");
+        Comparator<Map<String, Object>> byReplicaIndex =
+                Comparator.comparingInt(replica -> (Integer) replica.get("replicaIndex"));
+        List<Map<String, Object>> ordered = new ArrayList<>(replicas);
+        ordered.sort(byReplicaIndex);
+        List<Map<String, Object>> orderedLagging = new ArrayList<>(lagging);
+        orderedLagging.sort(byReplicaIndex);
 
-        // 2. Fragmentar y enviar chunks
-        Map<Integer, List<Map<String, Object>>> chunksByIndex = new HashMap<>();
-        for (Map<String, Object> chunk : chunks) {
-            int chunkIndex = (Integer) chunk.get("chunkIndex");
-            chunksByIndex.computeIfAbsent(chunkIndex, k -> new ArrayList<>()).add(chunk);
+        List<String> chain = new ArrayList<>();
+        for (Map<String, Object> replica : ordered) {
+            String chunkserverUrl = (String) replica.get("chunkserverUrl");
+            if (!circuitBreakers.isOpen(chunkserverUrl)) {
+                chain.add(chunkserverUrl);
+            }
+        }
+        if (chain.isEmpty()) {
+            return writeReplicasAsync(pdfId, chunkIndex, chunkData, replicas);
+        }
+        int ack = chain.size();
+        if (uploadId != null) {
+            for (Map<String, Object> replica : orderedLagging) {
+                String chunkserverUrl = (String) replica.get("chunkserverUrl");
+                if (!circuitBreakers.isOpen(chunkserverUrl)) {
+                    chain.add(chunkserverUrl);
+                }
+            }
         }
 
-        System.out.println("   📦 Enviando " + chunksByIndex.size() + " chunks...");
+        String primaryUrl = chain.get(0);
+        List<String> downstream = chain.subList(1, chain.size());
+        String uploadRef = chain.size() > ack
+                ? uploadId + "/" + chunkIndex + "/" + URLEncoder.encode(pdfId, StandardCharsets.UTF_8)
+                : null;
 
-        int successCount = 0;
-        int failCount = 0;
+        return transferExecutor.submit(primaryUrl, TransferClass.WRITE, chunkData.length, () -> {
+                    long start = System.currentTimeMillis();
+                    try {
+                        List<String> stored = writeChunkChainToServer(storageId(pdfId, ordered),
+                                storageIndex(chunkIndex, ordered), chunkData, primaryUrl, downstream,
+                                ack, uploadRef);
+                        replicaSelector.recordSuccess(primaryUrl, System.currentTimeMillis() - start);
+                        return stored;
+                    } catch (Exception e) {
+                        replicaSelector.recordFailure(primaryUrl);
+                        throw e;
+                    }
+                })
+                .handle((stored, e) -> {
+                    if (e != null) {
+                        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                        System.err.println("      ⚠️  Cadena de chunk " + chunkIndex + " falló en " +
+                                           primaryUrl + ": " + cause.getMessage());
+                        return Collections.<String>emptyList();
+                    }
+                    return stored;
+                })
+                .thenCompose(stored -> {
+                    List<Map<String, Object>> confirmed = new ArrayList<>();
+                    List<Map<String, Object>> missing = new ArrayList<>();
 
-        for (Map.Entry<Integer, List<Map<String, Object>>> entry : chunksByIndex.entrySet()) {
-            int chunkIndex = entry.getKey();
-            List<Map<String, Object>> replicas = entry.getValue();
+                    for (Map<String, Object> replica : ordered) {
+                        String chunkserverUrl = (String) replica.get("chunkserverUrl");
+                        int replicaIndex = (Integer) replica.get("replicaIndex");
 
-            // Extraer datos del chunk
-            int offset = chunkIndex * CHUNK_SIZE;
-            int length = Math.min(CHUNK_SIZE, data.length - offset);
-            byte[] chunkData = Arrays.copyOfRange(data, offset, offset + length);
-            String base64Data = Base64.getEncoder().encodeToString(chunkData);
+                        if (stored.contains(chunkserverUrl)) {
+                            String replicaType = replicaIndex == 0 ? "PRIMARIA" : "RÉPLICA " + replicaIndex;
+                            System.out.println("      ✅ Chunk " + chunkIndex + " [" + replicaType + "] → " +
+                                               chunkserverUrl + " (cadena)");
 
-            // Enviar a cada réplica
-            for (Map<String, Object> replica : replicas) {
-                String chunkserverUrl = (String) replica.get("chunkserverUrl");
-                int replicaIndex = (Integer) replica.get("replicaIndex");
+                            Map<String, Object> replicaResult = new HashMap<>();
+                            replicaResult.put("chunkserverUrl", chunkserverUrl);
+                            replicaResult.put("replicaIndex", replicaIndex);
+                            replicaResult.put("status", "success");
+                            confirmed.add(replicaResult);
+                        } else {
+                            missing.add(replica);
+                        }
+                    }
 
-                try {
-                    writeChunkToServer(pdfId, chunkIndex, base64Data, chunkserverUrl);
+                    // Reintentar directamente las réplicas que la cadena no confirmó
+                    return writeReplicasAsync(pdfId, chunkIndex, chunkData, missing)
+                            .thenApply(retried -> {
+                                confirmed.addAll(retried);
+                                return confirmed;
+                            });
+                });
+    }
+
+    /**
+     * Escribe un chunk directamente en cada réplica, en paralelo
+     */
+    private CompletableFuture<List<Map<String, Object>>> writeReplicasAsync(String pdfId, int chunkIndex,
+                                                                            byte[] chunkData,
+                                                                            List<Map<String, Object>> replicas) {
+        List<CompletableFuture<Map<String, Object>>> writes = new ArrayList<>();
+        for (Map<String, Object> replica : replicas) {
+            writes.add(writeReplicaAsync(pdfId, chunkIndex, chunkData, replica));
+        }
 
-                    String replicaType = replicaIndex == 0 ? "PRIMARIA" : "RÉPLICA " + replicaIndex;
-                    System.out.println("      ✅ Chunk " + chunkIndex + " [" + replicaType + "] → " +
-                                       chunkserverUrl);
-                    successCount++;
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> {
+                    List<Map<String, Object>> results = new ArrayList<>();
+                    writes.forEach(write -> results.add(write.join()));
+                    return results;
+                });
+    }
 
-                } catch (Exception e) {
-                    System.err.println("      ❌ Error enviando chunk " + chunkIndex +
-                                       " a " + chunkserverUrl + ": " + e.getMessage());
-                    failCount++;
-                }
+    /**
+     * Escribe una réplica de un chunk de forma asíncrona
+     * El resultado nunca falla: los errores se reportan en el mapa devuelto
+     */
+    private CompletableFuture<Map<String, Object>> writeReplicaAsync(String pdfId, int chunkIndex,
+                                                                     byte[] chunkData,
+                                                                     Map<String, Object> replica) {
+        String chunkserverUrl = (String) replica.get("chunkserverUrl");
+        int replicaIndex = (Integer) replica.get("replicaIndex");
+        String replicaType = replicaIndex == 0 ? "PRIMARIA" : "RÉPLICA " + replicaIndex;
+
+        Map<String, Object> replicaResult = new HashMap<>();
+        replicaResult.put("chunkserverUrl", chunkserverUrl);
+        replicaResult.put("replicaIndex", replicaIndex);
+
+        return transferExecutor.submit(chunkserverUrl, TransferClass.WRITE, chunkData.length, () -> {
+                    long start = System.currentTimeMillis();
+                    try {
+                        writeChunkToServer(storageId(pdfId, List.of(replica)),
+                                storageIndex(chunkIndex, List.of(replica)), chunkData, chunkserverUrl);
+                        replicaSelector.recordSuccess(chunkserverUrl, System.currentTimeMillis() - start);
+                        return replicaResult;
+                    } catch (Exception e) {
+                        replicaSelector.recordFailure(chunkserverUrl);
+                        throw e;
+                    }
+                })
+                .handle((ok, e) -> {
+                    if (e == null) {
+                        System.out.println("      ✅ Chunk " + chunkIndex + " [" + replicaType + "] → " +
+                                           chunkserverUrl);
+                        replicaResult.put("status", "success");
+                    } else {
+                        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                        System.err.println("      ❌ Error enviando chunk " + chunkIndex +
+                                           " a " + chunkserverUrl + ": " + cause.getMessage());
+                        replicaResult.put("status", "error");
+                        replicaResult.put("message", cause.getMessage());
+                    }
+                    return replicaResult;
+                });
+    }
+
+    /**
+     * Descarga un PDF desde el sistema GFS
+     * Mantiene varias lecturas de chunks en vuelo contra distintas réplicas
+     */
+    public byte[] downloadPdf(String pdfId) throws Exception {
+        Map<String, Object> metadata = getMetadata(pdfId);
+
+        Number size = (Number) metadata.get("size");
+        ByteArrayOutputStream outputStream =
+                new ByteArrayOutputStream(size != null ? size.intValue() : CHUNK_SIZE);
+        downloadPdf(pdfId, metadata, outputStream);
+
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Descarga un PDF escribiendo cada chunk en el stream a medida que llega
+     * La memoria usada queda acotada a la ventana de descarga
+     */
+    public void downloadPdf(String pdfId, Map<String, Object> metadata, OutputStream out)
+            throws IOException {
+        Map<Integer, List<Map<String, Object>>> chunksByIndex = groupByIndex(metadata);
+
+        System.out.println("   📦 Descargando " + chunksByIndex.size() + " chunks (ventana: " +
+                           DOWNLOAD_WINDOW + ")...");
+
+        // Descargar chunks en paralelo y escribir en orden
+        downloadChunks(0, chunksByIndex.size() - 1,
+                chunkIndex -> readChunkAsync(pdfId, chunkIndex, chunksByIndex.get(chunkIndex)),
+                out);
+    }
+
+    /**
+     * Descarga solo el rango de bytes [start, end] de un PDF
+     * Se leen únicamente los chunks que cubren el rango; los extremos se piden parcialmente
+     */
+    public void downloadRange(String pdfId, Map<String, Object> metadata, long start, long end,
+                              OutputStream out) throws IOException {
+        Map<Integer, List<Map<String, Object>>> chunksByIndex = groupByIndex(metadata);
+
+        int firstChunk = (int) (start / CHUNK_SIZE);
+        int lastChunk = (int) (end / CHUNK_SIZE);
+
+        System.out.println("   📦 Rango " + start + "-" + end + " → chunks " + firstChunk +
+                           ".." + lastChunk);
+
+        downloadChunks(firstChunk, lastChunk, chunkIndex -> {
+            List<Map<String, Object>> replicas = chunksByIndex.get(chunkIndex);
+            long chunkStart = (long) chunkIndex * CHUNK_SIZE;
+            long offset = Math.max(start, chunkStart) - chunkStart;
+            long length = Math.min(end, chunkStart + CHUNK_SIZE - 1) - chunkStart - offset + 1;
+
+            if (offset == 0 && length == CHUNK_SIZE) {
+                return readChunkAsync(pdfId, chunkIndex, replicas);
+            }
+
+            String storageId = storageId(pdfId, replicas);
+            int storageIndex = storageIndex(chunkIndex, replicas);
+
+            byte[] cached = chunkCache.get(storageId, storageIndex);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(
+                        Arrays.copyOfRange(cached, (int) offset, (int) (offset + length)));
+            }
+            return chunkFlights.submit(storageId + ":" + storageIndex + ":" + offset + "+" + length, () ->
+                    readChunkAsync(chunkIndex, replicas, reportingFailures(pdfId, chunkIndex, chunkserverUrl ->
+                            readChunkRangeFromServer(storageId, storageIndex, offset, (int) length, chunkserverUrl))));
+        }, out);
+    }
+
+    /**
+     * Rangos de bytes de una página según el índice del Master
+     * Retorna null si el PDF no tiene índice; lanza IllegalArgumentException si la página no existe
+     */
+    public Map<String, Object> getPageInfo(String pdfId, int pageNumber) {
+        try {
+            ResponseEntity<Map> response = restTemplate.getForEntity(
+                    masterUrl + "/api/master/pdf/{pdfId}/pages/{pageNumber}",
+                    Map.class,
+                    pdfId, pageNumber
+            );
+
+            @SuppressWarnings("unchecked")
+            Map<String, Object> pageInfo = response.getBody();
+            return pageInfo;
+
+        } catch (HttpClientErrorException.NotFound e) {
+            return null;
+
+        } catch (HttpClientErrorException.BadRequest e) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> body = e.getResponseBodyAs(Map.class);
+            throw new IllegalArgumentException(body != null ? (String) body.get("message") : e.getMessage());
+        }
+    }
+
+    /**
+     * Descarga una sola página como un PDF independiente
+     * Los chunks que cubren los rangos de la página se piden en paralelo; el resto
+     * del archivo no se lee. Retorna null si el PDF no tiene un índice vigente
+     */
+    public byte[] downloadPage(String pdfId, int pageNumber) throws IOException {
+        Map<String, Object> pageInfo = getPageInfo(pdfId, pageNumber);
+        if (pageInfo == null) {
+            return null;
+        }
+
+        Map<String, Object> metadata = getMetadata(pdfId);
+        if (!Objects.equals(metadata.get("timestamp"), pageInfo.get("timestamp"))) {
+            // Metadatos cacheados de otra versión: se consulta al Master antes de descartar el índice
+            metadataCache.invalidate(pdfId);
+            metadata = getMetadata(pdfId);
+            if (!Objects.equals(metadata.get("timestamp"), pageInfo.get("timestamp"))) {
+                return null;
             }
         }
 
-        System.out.println("\n   📊 Resultado:");
-        System.out.println("      ✅ Exitosos: " + successCount);
-        if (failCount > 0) {
-            System.out.println("      ❌ Fallidos: " + failCount);
+        long size = ((Number) metadata.get("size")).longValue();
+        Map<Integer, List<Map<String, Object>>> chunksByIndex = groupByIndex(metadata);
+        Map<Integer, CompletableFuture<byte[]>> reads = new HashMap<>();
+
+        // Todos los chunks de la página en vuelo a la vez
+        @SuppressWarnings("unchecked")
+        List<List<Number>> ranges = (List<List<Number>>) pageInfo.get("ranges");
+        for (List<Number> range : ranges) {
+            long start = range.get(0).longValue();
+            long end = Math.min(range.get(1).longValue(), size);
+            for (long offset = start - start % CHUNK_SIZE; offset < end; offset += CHUNK_SIZE) {
+                int chunkIndex = (int) (offset / CHUNK_SIZE);
+                reads.computeIfAbsent(chunkIndex,
+                        index -> readChunkAsync(pdfId, index, chunksByIndex.get(index)));
+            }
         }
 
-        return pdfId;
+        // Los chunks fuera de la página no se leen
+        byte[] page = pageIndexer.extractPage(size, CHUNK_SIZE,
+                chunkIndex -> reads.containsKey(chunkIndex) ? awaitChunk(reads.get(chunkIndex)) : null,
+                ((Number) pageInfo.get("objectNumber")).longValue(),
+                ((Number) pageInfo.get("generation")).intValue());
+
+        System.out.println("   📄 Página " + pageNumber + "/" + pageInfo.get("pageCount") + ": " +
+                           reads.size() + " de " + chunksByIndex.size() + " chunks leídos");
+        return page;
     }
 
     /**
-     * Descarga un PDF desde el sistema GFS
+     * Obtiene los metadatos de un PDF
+     * Usa la caché local y revalida con el Master mediante ETag al vencer el TTL;
+     * las peticiones concurrentes del mismo PDF comparten una sola consulta
      */
-    public byte[] downloadPdf(String pdfId) throws Exception {
-        // 1. Obtener metadatos del Master
-        ResponseEntity<Map> metadataResponse = restTemplate.getForEntity(
-                masterUrl + "/api/master/metadata/" + pdfId,
-                Map.class
+    public Map<String, Object> getMetadata(String pdfId) {
+        MetadataCache.CachedMetadata cached = metadataCache.get(pdfId);
+
+        if (cached != null && metadataCache.isFresh(cached)) {
+            metadataCache.recordHit();
+            return cached.metadata();
+        }
+
+        return metadataFlights.execute(pdfId, () -> fetchMetadata(pdfId));
+    }
+
+    private Map<String, Object> fetchMetadata(String pdfId) {
+        MetadataCache.CachedMetadata cached = metadataCache.get(pdfId);
+
+        HttpHeaders headers = new HttpHeaders();
+        if (cached != null && cached.etag() != null) {
+            headers.setIfNoneMatch(cached.etag());
+        }
+
+        ResponseEntity<Map> metadataResponse = restTemplate.exchange(
+                masterUrl + "/api/master/metadata/{pdfId}",
+                HttpMethod.GET,
+                new HttpEntity<>(headers),
+                Map.class,
+                pdfId
         );
 
+        if (metadataResponse.getStatusCode() == HttpStatus.NOT_MODIFIED && cached != null) {
+            metadataCache.revalidated(pdfId, cached);
+            return cached.metadata();
+        }
+
         if (!metadataResponse.getStatusCode().is2xxSuccessful()) {
             throw new RuntimeException("PDF no encontrado: " + pdfId);
         }
@@ -123,78 +1518,277 @@ public class GfsClientService {
         @SuppressWarnings("unchecked")
         Map<String, Object> metadata = metadataResponse.getBody();
 
+        // Si el PDF fue subido de nuevo (por este u otro cliente) sus chunks cacheados ya no valen
+        if (cached != null && !Objects.equals(cached.metadata().get("timestamp"), metadata.get("timestamp"))) {
+            chunkCache.invalidatePdf(pdfId);
+        }
+
+        metadataCache.put(pdfId, metadata, metadataResponse.getHeaders().getETag());
+        return metadata;
+    }
+
+    /**
+     * Descarga los chunks manteniendo una ventana deslizante de lecturas en vuelo
+     * Los chunks se escriben en orden a medida que llegan
+     */
+    private void downloadChunks(int firstChunk, int lastChunk,
+                                IntFunction<CompletableFuture<byte[]>> reader,
+                                OutputStream out) throws IOException {
+        Deque<CompletableFuture<byte[]>> window = new ArrayDeque<>();
+        int nextToRequest = firstChunk;
+
+        try {
+            for (int i = firstChunk; i <= lastChunk; i++) {
+                // Mantener la ventana llena
+                while (nextToRequest <= lastChunk && nextToRequest < i + DOWNLOAD_WINDOW) {
+                    window.addLast(reader.apply(nextToRequest));
+                    nextToRequest++;
+                }
+
+                out.write(awaitChunk(window.pollFirst()));
+            }
+        } finally {
+            window.forEach(pending -> pending.cancel(false));
+        }
+    }
+
+    /**
+     * Agrupa las ubicaciones de los metadatos por índice de chunk
+     */
+    private Map<Integer, List<Map<String, Object>>> groupByIndex(Map<String, Object> metadata) {
         @SuppressWarnings("unchecked")
         List<Map<String, Object>> allChunks =
                 (List<Map<String, Object>>) metadata.get("chunks");
 
-        // 2. Agrupar chunks por índice
         Map<Integer, List<Map<String, Object>>> chunksByIndex = new HashMap<>();
         for (Map<String, Object> chunk : allChunks) {
             int chunkIndex = (Integer) chunk.get("chunkIndex");
             chunksByIndex.computeIfAbsent(chunkIndex, k -> new ArrayList<>()).add(chunk);
         }
+        return chunksByIndex;
+    }
+
+    /**
+     * Espera un chunk y desenvuelve el error original
+     */
+    private byte[] awaitChunk(CompletableFuture<byte[]> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
 
-        System.out.println("   📦 Descargando " + chunksByIndex.size() + " chunks...");
+    /**
+     * Lee un chunk completo de forma asíncrona con fallback entre réplicas
+     * Los chunks populares se sirven desde la caché sin tocar los chunkservers;
+     * los deduplicados se cachean una sola vez aunque los compartan varios PDFs
+     */
+    private CompletableFuture<byte[]> readChunkAsync(String pdfId, int chunkIndex,
+                                                     List<Map<String, Object>> replicas) {
+        String storageId = storageId(pdfId, replicas);
+        int storageIndex = storageIndex(chunkIndex, replicas);
 
-        // 3. Descargar chunks en orden
-        List<byte[]> chunkDataList = new ArrayList<>(chunksByIndex.size());
+        byte[] cached = chunkCache.get(storageId, storageIndex);
+        if (cached != null) {
+            System.out.println("      ⚡ Chunk " + chunkIndex + " [CACHÉ]");
+            return CompletableFuture.completedFuture(cached);
+        }
 
-        for (int i = 0; i < chunksByIndex.size(); i++) {
-            List<Map<String, Object>> replicas = chunksByIndex.get(i);
+        // Una avalancha de descargas del mismo chunk cuesta una sola lectura
+        return chunkFlights.submit(storageId + ":" + storageIndex, () ->
+                readChunkAsync(chunkIndex, replicas, reportingFailures(pdfId, chunkIndex,
+                        chunkserverUrl -> readChunkFromServer(storageId, storageIndex, chunkserverUrl)))
+                        .thenApply(chunkData -> {
+                            chunkCache.put(storageId, storageIndex, chunkData);
+                            return chunkData;
+                        }));
+    }
 
-            if (replicas == null || replicas.isEmpty()) {
-                throw new RuntimeException("Chunk " + i + " no disponible");
-            }
+    /**
+     * Ejecuta una lectura de chunk de forma asíncrona con fallback entre réplicas
+     * Las réplicas se prueban de mejor a peor puntaje de latencia; a igual puntaje
+     * la réplica inicial rota con el índice para repartir la carga
+     */
+    private CompletableFuture<byte[]> readChunkAsync(int chunkIndex, List<Map<String, Object>> replicas,
+                                                     ReplicaRead read) {
+        if (replicas == null || replicas.isEmpty()) {
+            return CompletableFuture.failedFuture(
+                    new RuntimeException("Chunk " + chunkIndex + " no disponible"));
+        }
 
-            byte[] chunkData = null;
-            int attemptCount = 0;
+        List<Map<String, Object>> rotated = new ArrayList<>(replicas);
+        Collections.rotate(rotated, -(chunkIndex % rotated.size()));
 
-            // Intentar leer desde cualquier réplica disponible
-            for (Map<String, Object> replica : replicas) {
-                attemptCount++;
-                String chunkserverUrl = (String) replica.get("chunkserverUrl");
-                int replicaIndex = (Integer) replica.get("replicaIndex");
+        // Réplicas con el circuito abierto al final: solo se intentan si fallan las demás
+        List<Map<String, Object>> ordered = new ArrayList<>(replicaSelector.order(rotated));
+        ordered.sort(Comparator.comparing(replica -> circuitBreakers.isOpen((String) replica.get("chunkserverUrl"))));
 
-                try {
-                    // Comunicacion con el chunkserver
-                    chunkData = readChunkFromServer(pdfId, i, chunkserverUrl);
+        return readFromReplica(chunkIndex, ordered, 0, read);
+    }
+
+    /**
+     * Intenta leer desde la réplica indicada y continúa con la siguiente si falla
+     * Si la réplica tarda más que el percentil reciente, lanza una lectura de respaldo
+     * contra la siguiente réplica y usa la que responda primero
+     */
+    private CompletableFuture<byte[]> readFromReplica(int chunkIndex, List<Map<String, Object>> replicas,
+                                                      int attempt, ReplicaRead read) {
+        if (attempt >= replicas.size()) {
+            return CompletableFuture.failedFuture(
+                    new RuntimeException("No se pudo leer chunk " + chunkIndex +
+                                         " desde ninguna réplica"));
+        }
 
-                    String replicaType = replicaIndex == 0 ? "PRIMARIA" : "RÉPLICA " + replicaIndex;
-                    System.out.println("      ✅ Chunk " + i + " [" + replicaType + "] ← " +
-                                       chunkserverUrl);
+        hedgedReadPolicy.recordRead();
+        CompletableFuture<byte[]> primary = attemptRead(chunkIndex, replicas, attempt, read, false);
 
-                    if (attemptCount > 1) {
-                        System.out.println("         🔄 FALLBACK usado (intento #" + attemptCount + ")");
-                    }
+        if (!hedgedReadPolicy.isEnabled() || attempt + 1 >= replicas.size()) {
+            return primary.exceptionallyCompose(e -> {
+                if (attempt + 1 < replicas.size()) {
+                    System.out.println("         🔄 Intentando siguiente réplica...");
+                }
+                return readFromReplica(chunkIndex, replicas, attempt + 1, read);
+            });
+        }
 
-                    break;
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        HedgeRace race = new HedgeRace();
 
-                } catch (Exception e) {
-                    String replicaType = replicaIndex == 0 ? "PRIMARIA" : "RÉPLICA " + replicaIndex;
-                    System.err.println("      ⚠️  Chunk " + i + " [" + replicaType + "] fallo en " +
-                                       chunkserverUrl);
+        race.timer = hedgedReadPolicy.schedule(() -> {
+            synchronized (race) {
+                if (result.isDone() || race.hedge != null || race.primaryFailed) {
+                    return;
+                }
+                hedgedReadPolicy.recordHedgeFired();
+                System.out.println("      ⏱️  Chunk " + chunkIndex + " lento, lanzando lectura de respaldo...");
+                race.hedge = attemptRead(chunkIndex, replicas, attempt + 1, read, true);
+            }
+
+            race.hedge.whenComplete((data, e) -> {
+                if (e == null) {
+                    if (result.complete(data)) {
+                        hedgedReadPolicy.recordHedgeWin();
+                        primary.cancel(false);
+                    }
+                    return;
+                }
+                if (result.isDone()) {
+                    return;
+                }
+                synchronized (race) {
+                    race.hedgeFailed = true;
+                    if (!race.primaryFailed) {
+                        return;
+                    }
+                }
+                continueWith(result, readFromReplica(chunkIndex, replicas, attempt + 2, read));
+            });
+        }, hedgedReadPolicy.getHedgeDelayMs());
 
-                    if (attemptCount < replicas.size()) {
-                        System.out.println("         🔄 Intentando siguiente réplica...");
+        primary.whenComplete((data, e) -> {
+            if (e == null) {
+                if (result.complete(data)) {
+                    race.timer.cancel(false);
+                    if (race.hedge != null) {
+                        race.hedge.cancel(false);
                     }
                 }
+                return;
+            }
+            if (result.isDone()) {
+                return;
             }
 
-            if (chunkData == null) {
-                throw new RuntimeException("No se pudo leer chunk " + i +
-                                           " desde ninguna réplica");
+            int nextAttempt;
+            synchronized (race) {
+                race.primaryFailed = true;
+                if (race.hedge != null) {
+                    // La lectura de respaldo sigue en curso: ella decide si continuar
+                    if (!race.hedgeFailed) {
+                        return;
+                    }
+                    nextAttempt = attempt + 2;
+                } else {
+                    race.timer.cancel(false);
+                    nextAttempt = attempt + 1;
+                }
             }
+            System.out.println("         🔄 Intentando siguiente réplica...");
+            continueWith(result, readFromReplica(chunkIndex, replicas, nextAttempt, read));
+        });
 
-            chunkDataList.add(chunkData);
-        }
+        return result;
+    }
 
-        // 4. Ensamblar PDF completo
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        for (byte[] chunk : chunkDataList) {
-            outputStream.write(chunk);
-        }
+    /**
+     * Ejecuta una lectura contra una réplica concreta y registra su latencia
+     * Cancelar el futuro (ganó la otra lectura de la carrera) aborta también la petición HTTP
+     */
+    private CompletableFuture<byte[]> attemptRead(int chunkIndex, List<Map<String, Object>> replicas,
+                                                  int attempt, ReplicaRead read, boolean hedge) {
+        Map<String, Object> replica = replicas.get(attempt);
+        String chunkserverUrl = (String) replica.get("chunkserverUrl");
+        int replicaIndex = (Integer) replica.get("replicaIndex");
+        String replicaType = replicaIndex == 0 ? "PRIMARIA" : "RÉPLICA " + replicaIndex;
+        RequestCancellation cancellation = new RequestCancellation();
 
-        return outputStream.toByteArray();
+        // El tamaño real de la lectura se descuenta al terminar; CHUNK_SIZE es la estimación
+        CompletableFuture<byte[]> transfer = transferExecutor.submit(chunkserverUrl, TransferClass.READ,
+                CHUNK_SIZE, () -> {
+            long start = System.currentTimeMillis();
+            try {
+                byte[] chunkData = cancellation.call(() -> read.read(chunkserverUrl));
+                long latency = System.currentTimeMillis() - start;
+                hedgedReadPolicy.recordLatency(latency);
+                replicaSelector.recordSuccess(chunkserverUrl, latency);
+                return chunkData;
+            } catch (Exception e) {
+                // Una lectura abortada porque ganó la otra no es culpa de la réplica
+                if (!cancellation.isCancelled()) {
+                    replicaSelector.recordFailure(chunkserverUrl);
+                }
+                throw e;
+            }
+        });
+
+        // Se devuelve el futuro de la transferencia para que cancelarlo la saque de la cola
+        // o aborte la petición si ya arrancó
+        transfer.whenComplete((chunkData, e) -> {
+            if (e instanceof CancellationException) {
+                cancellation.cancel();
+            }
+            if (e == null) {
+                System.out.println("      ✅ Chunk " + chunkIndex + " [" + replicaType + "] ← " +
+                                   chunkserverUrl);
+                if (hedge) {
+                    System.out.println("         🏁 Lectura de respaldo completada");
+                } else if (attempt > 0) {
+                    System.out.println("         🔄 FALLBACK usado (intento #" + (attempt + 1) + ")");
+                }
+            } else if (!(e instanceof CancellationException)) {
+                System.err.println("      ⚠️  Chunk " + chunkIndex + " [" + replicaType + "] fallo en " +
+                                   chunkserverUrl);
+            }
+        });
+
+        return transfer;
+    }
+
+    /**
+     * Propaga el resultado de una lectura al futuro final
+     */
+    private void continueWith(CompletableFuture<byte[]> result, CompletableFuture<byte[]> next) {
+        next.whenComplete((data, e) -> {
+            if (e == null) {
+                result.complete(data);
+            } else {
+                result.completeExceptionally(e instanceof CompletionException ? e.getCause() : e);
+            }
+        });
     }
 
     /**
@@ -234,41 +1828,177 @@ public class GfsClientService {
         }
     }
 
+    /**
+     * Elimina un PDF del sistema e invalida sus chunks cacheados
+     */
+    public void deletePdf(String pdfId) {
+        try {
+            restTemplate.delete(masterUrl + "/api/master/pdf/{pdfId}", pdfId);
+        } catch (Exception e) {
+            throw new RuntimeException("Error eliminando PDF: " + e.getMessage());
+        } finally {
+            chunkCache.invalidatePdf(pdfId);
+            metadataCache.invalidate(pdfId);
+        }
+    }
+
+    /**
+     * Tamaño de chunk con el que se particionan los uploads
+     */
+    public int getChunkSize() {
+        return CHUNK_SIZE;
+    }
+
+    /**
+     * Obtiene estadísticas del cliente (cachés y transferencias)
+     */
+    public Map<String, Object> getClientStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("chunkCache", chunkCache.getStats());
+        stats.put("metadataCache", metadataCache.getStats());
+        stats.put("transfers", transferExecutor.getStats());
+        stats.put("hedgedReads", hedgedReadPolicy.getStats());
+        stats.put("replicaScores", replicaSelector.getStats());
+        stats.put("circuitBreakers", circuitBreakers.getStats());
+        stats.put("readRepair", readRepair.getStats());
+        stats.put("fairShare", callerQuotas.getStats());
+        stats.put("httpPool", httpTransport.getPoolStats());
+
+        Map<String, Object> singleFlight = new HashMap<>();
+        singleFlight.put("metadata", metadataFlights.getStats());
+        singleFlight.put("chunks", chunkFlights.getStats());
+        stats.put("singleFlight", singleFlight);
+        return stats;
+    }
+
     /**
      * Escribe un chunk a un chunkserver
      */
-    private void writeChunkToServer(String pdfId, int chunkIndex, String base64Data,
+    private void writeChunkToServer(String pdfId, int chunkIndex, byte[] data,
                                     String chunkserverUrl) {
-        String url = chunkserverUrl + "/api/chunk/write";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        setWriteToken(headers, pdfId, chunkIndex, data, List.of(chunkserverUrl));
+
+        HttpEntity<byte[]> entity = new HttpEntity<>(data, headers);
+        restTemplate.postForEntity(chunkserverUrl + "/api/chunk/data/{pdfId}/{chunkIndex}",
+                entity, String.class, pdfId, chunkIndex);
+    }
 
+    /**
+     * Escribe un chunk en la primaria de una cadena de replicación
+     * Retorna las URLs de los chunkservers que confirmaron la escritura
+     */
+    private List<String> writeChunkChainToServer(String pdfId, int chunkIndex, byte[] data,
+                                                 String chunkserverUrl, List<String> downstream,
+                                                 int ack, String uploadRef) {
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.set(REPLICA_CHAIN_HEADER, String.join(",", downstream));
+        if (uploadRef != null) {
+            headers.set(CHAIN_ACK_HEADER, String.valueOf(ack));
+            headers.set(UPLOAD_REF_HEADER, uploadRef);
+        }
+        List<String> chain = new ArrayList<>();
+        chain.add(chunkserverUrl);
+        chain.addAll(downstream);
+        setWriteToken(headers, pdfId, chunkIndex, data, chain);
 
-        Map<String, Object> request = new HashMap<>();
-        request.put("pdfId", pdfId);
-        request.put("chunkIndex", chunkIndex);
-        request.put("data", base64Data);
+        HttpEntity<byte[]> entity = new HttpEntity<>(data, headers);
+        ResponseEntity<Map> response = restTemplate.postForEntity(
+                chunkserverUrl + "/api/chunk/data/{pdfId}/{chunkIndex}",
+                entity, Map.class, pdfId, chunkIndex);
+
+        @SuppressWarnings("unchecked")
+        List<String> stored = response.getBody() != null
+                ? (List<String>) response.getBody().get("stored")
+                : null;
+
+        return stored != null ? stored : Collections.emptyList();
+    }
 
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-        restTemplate.postForEntity(url, entity, String.class);
+    /**
+     * Con secreto configurado los chunkservers exigen token también en las escrituras del cliente
+     */
+    private void setWriteToken(HttpHeaders headers, String storageId, int storageIndex, byte[] data,
+                               List<String> targets) {
+        if (writeTokens.isEnabled()) {
+            headers.set(WRITE_TOKEN_HEADER, writeTokens.issue(storageId, storageIndex, data.length, null,
+                    targets, writeTokens.nextExpiry()));
+        }
     }
 
     /**
      * Lee un chunk desde un chunkserver
      */
     private byte[] readChunkFromServer(String pdfId, int chunkIndex, String chunkserverUrl) {
-        String url = chunkserverUrl + "/api/chunk/read?pdfId=" + pdfId +
-                     "&chunkIndex=" + chunkIndex;
+        byte[] data = restTemplate.getForObject(
+                chunkserverUrl + "/api/chunk/data/{pdfId}/{chunkIndex}",
+                byte[].class, pdfId, chunkIndex);
 
-        ResponseEntity<Map> response = restTemplate.getForEntity(url, Map.class);
-
-        if (!response.getStatusCode().is2xxSuccessful()) {
+        if (data == null) {
             throw new RuntimeException("Error leyendo chunk");
         }
 
-        Map<String, Object> body = response.getBody();
-        String base64Data = (String) body.get("data");
+        return data;
+    }
+
+    /**
+     * Lee un fragmento de un chunk desde un chunkserver
+     */
+    private byte[] readChunkRangeFromServer(String pdfId, int chunkIndex, long offset, int length,
+                                            String chunkserverUrl) {
+        byte[] data = restTemplate.getForObject(
+                chunkserverUrl + "/api/chunk/data/{pdfId}/{chunkIndex}/range?offset={offset}&length={length}",
+                byte[].class, pdfId, chunkIndex, offset, length);
 
-        return Base64.getDecoder().decode(base64Data);
+        if (data == null || data.length != length) {
+            throw new RuntimeException("Error leyendo rango de chunk");
+        }
+
+        return data;
+    }
+
+    /**
+     * Envuelve una lectura para reportar al Master las réplicas defectuosas
+     * Solo cuentan las respuestas que prueban un problema de la réplica (404, 500 o datos
+     * incompletos); un servidor caído o lento ya lo detectan heartbeats y circuit breaker,
+     * y un 504 es el plazo de la petición agotado
+     */
+    private ReplicaRead reportingFailures(String pdfId, int chunkIndex, ReplicaRead read) {
+        return chunkserverUrl -> {
+            try {
+                return read.read(chunkserverUrl);
+            } catch (HttpStatusCodeException e) {
+                int status = e.getStatusCode().value();
+                if (status == 404 || status == 500) {
+                    readRepair.report(pdfId, chunkIndex, chunkserverUrl, "HTTP " + status);
+                }
+                throw e;
+            } catch (RestClientException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                readRepair.report(pdfId, chunkIndex, chunkserverUrl, e.getMessage());
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * Lectura de un chunk contra una réplica concreta
+     */
+    @FunctionalInterface
+    private interface ReplicaRead {
+        byte[] read(String chunkserverUrl) throws Exception;
+    }
+
+    /**
+     * Estado de una carrera entre la lectura principal y la de respaldo
+     */
+    private static class HedgeRace {
+        ScheduledFuture<?> timer;
+        CompletableFuture<byte[]> hedge;
+        boolean primaryFailed = false;
+        boolean hedgeFailed = false;
     }
 }
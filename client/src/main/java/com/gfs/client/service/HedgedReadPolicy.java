@@ -0,0 +1,139 @@
+package com.gfs.client.service;
+
+import com.gfs.client.config.CallerContext;
+import com.gfs.client.config.RequestDeadline;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Política de lecturas "hedged" para recortar la latencia de cola
+ * - Registra la latencia de las lecturas de chunks recientes
+ * - Si la primera réplica no responde dentro del percentil configurado,
+ *   se lanza la misma lectura contra otra réplica y gana la primera en responder
+ */
+@Component
+public class HedgedReadPolicy {
+
+    private static final int WINDOW_SIZE = 512;
+
+    @Value("${gfs.read.hedge.enabled:true}")
+    private boolean ENABLED;
+
+    @Value("${gfs.read.hedge.percentile:95}")
+    private double PERCENTILE;
+
+    @Value("${gfs.read.hedge.min-delay-ms:5}")
+    private long MIN_DELAY_MS;
+
+    @Value("${gfs.read.hedge.initial-delay-ms:100}")
+    private long INITIAL_DELAY_MS;
+
+    @Value("${gfs.read.hedge.min-samples:20}")
+    private int MIN_SAMPLES;
+
+    private ScheduledExecutorService scheduler;
+
+    // Ventana circular de latencias recientes (ms)
+    private final long[] latencies = new long[WINDOW_SIZE];
+    private int samples = 0;
+    private int next = 0;
+
+    // Estadísticas
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong hedgesFired = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "gfs-hedge-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Registra la latencia de una lectura exitosa
+     */
+    public synchronized void recordLatency(long latencyMs) {
+        latencies[next] = latencyMs;
+        next = (next + 1) % WINDOW_SIZE;
+        if (samples < WINDOW_SIZE) {
+            samples++;
+        }
+    }
+
+    /**
+     * Tiempo a esperar antes de lanzar la lectura de respaldo
+     */
+    public synchronized long getHedgeDelayMs() {
+        if (samples < MIN_SAMPLES) {
+            return INITIAL_DELAY_MS;
+        }
+
+        long[] sorted = Arrays.copyOf(latencies, samples);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(PERCENTILE / 100.0 * samples) - 1;
+        return Math.max(MIN_DELAY_MS, sorted[Math.max(0, Math.min(index, samples - 1))]);
+    }
+
+    /**
+     * Programa el disparo de una lectura de respaldo
+     * Se ejecuta con el plazo y el caller de la petición que la origina
+     */
+    public ScheduledFuture<?> schedule(Runnable hedge, long delayMs) {
+        return scheduler.schedule(CallerContext.wrap(RequestDeadline.wrap(hedge)), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordRead() {
+        reads.incrementAndGet();
+    }
+
+    public void recordHedgeFired() {
+        hedgesFired.incrementAndGet();
+    }
+
+    public void recordHedgeWin() {
+        hedgeWins.incrementAndGet();
+    }
+
+    /**
+     * Obtiene estadísticas de hedging
+     */
+    public Map<String, Object> getStats() {
+        long totalReads = reads.get();
+        long fired = hedgesFired.get();
+        long wins = hedgeWins.get();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("percentile", PERCENTILE);
+        stats.put("currentDelayMs", getHedgeDelayMs());
+        stats.put("reads", totalReads);
+        stats.put("hedgesFired", fired);
+        stats.put("hedgeWins", wins);
+        stats.put("hedgeRate", totalReads > 0 ? (double) fired / totalReads : 0.0);
+        stats.put("winRate", fired > 0 ? (double) wins / fired : 0.0);
+        return stats;
+    }
+}
@@ -0,0 +1,103 @@
+package com.gfs.client.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caché de metadatos (ubicaciones de chunks) obtenidos del Master
+ * - Dentro del TTL se sirve sin contactar al Master
+ * - Vencido el TTL se revalida con If-None-Match (304 sin cuerpo)
+ */
+@Component
+public class MetadataCache {
+
+    @Value("${gfs.metadata-cache.ttl-ms:5000}")
+    private long TTL_MS;
+
+    @Value("${gfs.metadata-cache.max-entries:10000}")
+    private long MAX_ENTRIES;
+
+    private Cache<String, CachedMetadata> cache;
+
+    // Estadísticas
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(MAX_ENTRIES)
+                .build();
+    }
+
+    /**
+     * Obtiene la entrada cacheada de un PDF (vigente o vencida) o null
+     */
+    public CachedMetadata get(String pdfId) {
+        return cache.getIfPresent(pdfId);
+    }
+
+    /**
+     * Guarda metadatos recién obtenidos del Master
+     */
+    public void put(String pdfId, Map<String, Object> metadata, String etag) {
+        misses.incrementAndGet();
+        cache.put(pdfId, new CachedMetadata(metadata, etag, System.currentTimeMillis()));
+    }
+
+    /**
+     * Registra una lectura servida sin contactar al Master
+     */
+    public void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    /**
+     * Renueva el TTL tras una revalidación exitosa (304)
+     */
+    public void revalidated(String pdfId, CachedMetadata entry) {
+        revalidations.incrementAndGet();
+        cache.put(pdfId, new CachedMetadata(entry.metadata(), entry.etag(), System.currentTimeMillis()));
+    }
+
+    /**
+     * Elimina los metadatos cacheados de un PDF
+     */
+    public void invalidate(String pdfId) {
+        cache.invalidate(pdfId);
+    }
+
+    /**
+     * Indica si una entrada sigue dentro del TTL
+     */
+    public boolean isFresh(CachedMetadata entry) {
+        return System.currentTimeMillis() - entry.fetchedAt() < TTL_MS;
+    }
+
+    /**
+     * Obtiene estadísticas de la caché
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("ttlMs", TTL_MS);
+        stats.put("entries", cache.estimatedSize());
+        stats.put("hits", hits.get());
+        stats.put("revalidations", revalidations.get());
+        stats.put("misses", misses.get());
+        return stats;
+    }
+
+    /**
+     * Metadatos cacheados junto con su ETag y momento de obtención
+     */
+    public record CachedMetadata(Map<String, Object> metadata, String etag, long fetchedAt) {
+    }
+}
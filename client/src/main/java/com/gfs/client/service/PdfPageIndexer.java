@@ -0,0 +1,352 @@
+package com.gfs.client.service;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadView;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Índice de páginas de PDFs
+ * - Al subir: recorre la tabla de referencias cruzadas y calcula, para cada página,
+ *   los rangos de bytes de los objetos que la componen
+ * - Al pedir una página: arma un PDF de una sola página leyendo solo esos rangos
+ */
+@Component
+public class PdfPageIndexer {
+
+    // Cabecera (%PDF-x.y) que el parser lee siempre
+    private static final long HEADER_BYTES = 1024;
+
+    // Atributos que una página puede heredar de sus nodos padre
+    private static final List<COSName> INHERITABLE = List.of(
+            COSName.RESOURCES, COSName.MEDIA_BOX, COSName.CROP_BOX, COSName.ROTATE);
+
+    /**
+     * Calcula el índice de páginas: {baseRanges, pages: [{objectNumber, generation, ranges}]}
+     * Los rangos son [inicio, fin) en bytes. Retorna null si el PDF no puede indexarse
+     * El parser lee el archivo por páginas desde disco: el PDF no se carga entero en memoria
+     */
+    public Map<String, Object> buildIndex(File file, long size) {
+        try (PDDocument document = Loader.loadPDF(file)) {
+            if (document.isEncrypted()) {
+                return null;
+            }
+
+            COSDocument cosDocument = document.getDocument();
+            ObjectRanges objectRanges = new ObjectRanges(cosDocument.getXrefTable(),
+                    cosDocument.getStartXref(), size);
+
+            // Lo que el parser lee antes de llegar a cualquier página
+            Set<COSObjectKey> baseObjects = new HashSet<>();
+            addKey(cosDocument.getTrailer().getItem(COSName.ROOT), baseObjects);
+            List<long[]> baseRanges = objectRanges.toRanges(baseObjects);
+            baseRanges.add(new long[]{0, Math.min(HEADER_BYTES, size)});
+            baseRanges.add(new long[]{cosDocument.getStartXref(), size});
+
+            List<Map<String, Object>> pages = new ArrayList<>();
+            COSDictionary catalog = document.getDocumentCatalog().getCOSObject();
+            walkPageTree(catalog.getItem(COSName.PAGES), new ArrayDeque<>(), new HashSet<>(),
+                    objectRanges, pages);
+
+            if (pages.isEmpty() || pages.size() != document.getNumberOfPages()) {
+                return null;
+            }
+
+            Map<String, Object> index = new HashMap<>();
+            index.put("baseRanges", baseRanges);
+            index.put("pages", pages);
+            return index;
+
+        } catch (IOException | RuntimeException e) {
+            System.err.println("   ⚠️  No se pudo indexar páginas: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Arma un PDF de una sola página a partir de los chunks del original
+     * chunkLoader retorna null para los chunks que no cubren la página: se leen como
+     * espacios, el parser descarta la tabla de referencias cruzadas y ubica los objetos
+     * presentes recorriendo la vista en memoria sin pedir el resto del archivo
+     */
+    public byte[] extractPage(long size, int chunkSize, IntFunction<byte[]> chunkLoader,
+                              long objectNumber, int generation) throws IOException {
+        ChunkedSource source = new ChunkedSource(size, chunkSize, chunkLoader);
+
+        try (PDDocument document = new PDFParser(source).parse(); PDDocument single = new PDDocument()) {
+            COSBase pageObject = document.getDocument()
+                    .getObjectFromPool(new COSObjectKey(objectNumber, generation)).getObject();
+            if (!(pageObject instanceof COSDictionary pageDictionary)) {
+                throw new IOException("Objeto de página no encontrado: " + objectNumber);
+            }
+
+            PDPage page = new PDPage(pageDictionary);
+            PDPage imported = single.importPage(page);
+            imported.setResources(page.getResources());
+            // Las anotaciones pueden apuntar a otras páginas del documento
+            imported.getCOSObject().removeItem(COSName.ANNOTS);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            single.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Recorre el árbol de páginas en orden y calcula los objetos de cada página
+     */
+    private void walkPageTree(COSBase node, Deque<COSBase> ancestors, Set<COSObjectKey> visited,
+                              ObjectRanges objectRanges, List<Map<String, Object>> pages) {
+        COSBase resolved = node instanceof COSObject object ? object.getObject() : node;
+        if (!(resolved instanceof COSDictionary dictionary)) {
+            return;
+        }
+
+        if (isPageTreeNode(dictionary) && !COSName.PAGE.equals(dictionary.getCOSName(COSName.TYPE))) {
+            if (node.getKey() != null && !visited.add(node.getKey())) {
+                return;
+            }
+            COSArray kids = dictionary.getCOSArray(COSName.KIDS);
+            if (kids == null) {
+                return;
+            }
+            ancestors.push(node);
+            for (COSBase kid : kids) {
+                walkPageTree(kid, ancestors, visited, objectRanges, pages);
+            }
+            ancestors.pop();
+            return;
+        }
+
+        if (node.getKey() == null) {
+            return;
+        }
+
+        Set<COSObjectKey> objects = new HashSet<>();
+        collect(node, dictionary, objects);
+
+        // Nodos padre (atributos heredados) sin recorrer sus otras páginas
+        for (COSBase ancestor : ancestors) {
+            addKey(ancestor, objects);
+            COSBase resolvedAncestor = ancestor instanceof COSObject object ? object.getObject() : ancestor;
+            if (resolvedAncestor instanceof COSDictionary ancestorDictionary) {
+                for (COSName attribute : INHERITABLE) {
+                    collect(ancestorDictionary.getItem(attribute), dictionary, objects);
+                }
+            }
+        }
+
+        Map<String, Object> page = new HashMap<>();
+        page.put("objectNumber", node.getKey().getNumber());
+        page.put("generation", node.getKey().getGeneration());
+        page.put("ranges", objectRanges.toRanges(objects));
+        pages.add(page);
+    }
+
+    /**
+     * Agrega los objetos indirectos alcanzables desde un valor de la página
+     * No sigue /Parent, las anotaciones ni otras páginas
+     */
+    private void collect(COSBase value, COSDictionary page, Set<COSObjectKey> objects) {
+        if (value instanceof COSObject object) {
+            if (object.getKey() == null || !objects.add(object.getKey())) {
+                return;
+            }
+            value = object.getObject();
+        }
+
+        if (value instanceof COSDictionary dictionary) {
+            if (dictionary != page && isPageTreeNode(dictionary)) {
+                return;
+            }
+            for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet()) {
+                if (COSName.PARENT.equals(entry.getKey()) ||
+                        (dictionary == page && COSName.ANNOTS.equals(entry.getKey()))) {
+                    continue;
+                }
+                collect(entry.getValue(), page, objects);
+            }
+        } else if (value instanceof COSArray array) {
+            for (COSBase item : array) {
+                collect(item, page, objects);
+            }
+        }
+    }
+
+    private boolean isPageTreeNode(COSDictionary dictionary) {
+        COSName type = dictionary.getCOSName(COSName.TYPE);
+        return COSName.PAGE.equals(type) || COSName.PAGES.equals(type) || dictionary.containsKey(COSName.KIDS);
+    }
+
+    private void addKey(COSBase value, Set<COSObjectKey> objects) {
+        if (value instanceof COSObject object && object.getKey() != null) {
+            objects.add(object.getKey());
+        }
+    }
+
+    /**
+     * Rangos de bytes de los objetos según la tabla de referencias cruzadas
+     * Un objeto ocupa desde su offset hasta el offset siguiente; los objetos
+     * comprimidos ocupan el rango de su object stream
+     */
+    private static class ObjectRanges {
+        private final Map<COSObjectKey, Long> xrefTable;
+        private final long[] offsets;
+
+        ObjectRanges(Map<COSObjectKey, Long> xrefTable, long startXref, long size) {
+            this.xrefTable = xrefTable;
+            TreeSet<Long> sorted = new TreeSet<>();
+            xrefTable.values().stream().filter(offset -> offset > 0).forEach(sorted::add);
+            sorted.add(startXref);
+            sorted.add(size);
+            this.offsets = sorted.stream().mapToLong(Long::longValue).toArray();
+        }
+
+        long[] rangeOf(COSObjectKey key) {
+            Long offset = xrefTable.get(key);
+            if (offset == null || offset == 0) {
+                return null;
+            }
+            if (offset < 0) {
+                return rangeOf(new COSObjectKey(-offset, 0));
+            }
+            int position = Arrays.binarySearch(offsets, offset);
+            return position >= 0 && position + 1 < offsets.length
+                    ? new long[]{offset, offsets[position + 1]}
+                    : null;
+        }
+
+        /**
+         * Rangos ordenados y fusionados de un conjunto de objetos
+         */
+        List<long[]> toRanges(Collection<COSObjectKey> keys) {
+            List<long[]> ranges = new ArrayList<>();
+            for (COSObjectKey key : keys) {
+                long[] range = rangeOf(key);
+                if (range != null) {
+                    ranges.add(range);
+                }
+            }
+            ranges.sort(Comparator.comparingLong(range -> range[0]));
+
+            List<long[]> merged = new ArrayList<>();
+            for (long[] range : ranges) {
+                long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+                if (last != null && range[0] <= last[1]) {
+                    last[1] = Math.max(last[1], range[1]);
+                } else {
+                    merged.add(range.clone());
+                }
+            }
+            return merged;
+        }
+    }
+
+    /**
+     * Vista de solo lectura de un PDF almacenado en chunks
+     * Cada chunk se pide al primer acceso y se conserva mientras dura la lectura;
+     * los chunks no disponibles se leen como espacios
+     */
+    private static class ChunkedSource implements RandomAccessRead {
+        private final long size;
+        private final int chunkSize;
+        private final IntFunction<byte[]> chunkLoader;
+        private final Map<Integer, byte[]> chunks = new HashMap<>();
+        private long position = 0;
+        private boolean closed = false;
+
+        ChunkedSource(long size, int chunkSize, IntFunction<byte[]> chunkLoader) {
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.chunkLoader = chunkLoader;
+        }
+
+        private byte[] chunkAt(long offset) {
+            return chunks.computeIfAbsent((int) (offset / chunkSize), chunkIndex -> {
+                byte[] chunk = chunkLoader.apply(chunkIndex);
+                if (chunk == null) {
+                    chunk = new byte[chunkSize];
+                    Arrays.fill(chunk, (byte) ' ');
+                }
+                return chunk;
+            });
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position >= size) {
+                return -1;
+            }
+            byte[] chunk = chunkAt(position);
+            return chunk[(int) (position++ % chunkSize)] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (position >= size) {
+                return -1;
+            }
+            byte[] chunk = chunkAt(position);
+            int start = (int) (position % chunkSize);
+            int count = (int) Math.min(length, Math.min(chunk.length - start, size - position));
+            System.arraycopy(chunk, start, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public long getPosition() {
+            return position;
+        }
+
+        @Override
+        public void seek(long newPosition) throws IOException {
+            if (newPosition < 0) {
+                throw new IOException("Posición inválida: " + newPosition);
+            }
+            position = Math.min(newPosition, size);
+        }
+
+        @Override
+        public long length() {
+            return size;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public boolean isEOF() {
+            return position >= size;
+        }
+
+        @Override
+        public RandomAccessReadView createView(long startPosition, long streamLength) {
+            return new RandomAccessReadView(this, startPosition, streamLength);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            chunks.clear();
+        }
+    }
+}
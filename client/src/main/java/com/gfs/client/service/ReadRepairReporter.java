@@ -0,0 +1,168 @@
+package com.gfs.client.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reporta al Master las réplicas que fallaron al leerse (read repair)
+ * - Los reportes se encolan sin bloquear la descarga y se envían en lote
+ * - Los fallos repetidos de la misma réplica se fusionan en un solo reporte
+ * - El Master repara esa réplica en segundos, sin esperar a su verificación completa
+ */
+@Component
+public class ReadRepairReporter {
+
+    @Value("${gfs.master-url}")
+    private String masterUrl;
+
+    @Value("${gfs.read-repair.enabled:true}")
+    private boolean ENABLED;
+
+    @Value("${gfs.read-repair.flush-interval-ms:1000}")
+    private long FLUSH_INTERVAL_MS;
+
+    @Value("${gfs.read-repair.max-batch:200}")
+    private int MAX_BATCH;
+
+    // Reportes pendientes como máximo (p. ej. con el Master caído); el resto se descarta
+    @Value("${gfs.read-repair.max-pending:2000}")
+    private int MAX_PENDING;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    // Una entrada por réplica (pdf, chunk, servidor)
+    private final Map<String, Map<String, Object>> pending = new LinkedHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    // Estadísticas
+    private final AtomicLong reported = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "gfs-read-repair");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (ENABLED) {
+            scheduler.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Encola el fallo de lectura de una réplica
+     * Recibe el PDF lógico y el índice del chunk dentro del PDF
+     */
+    public void report(String pdfId, int chunkIndex, String chunkserverUrl, String reason) {
+        if (!ENABLED) {
+            return;
+        }
+        reported.incrementAndGet();
+
+        String key = pdfId + ":" + chunkIndex + "@" + chunkserverUrl;
+        synchronized (pending) {
+            if (pending.containsKey(key)) {
+                return;
+            }
+            if (pending.size() >= MAX_PENDING) {
+                dropped.incrementAndGet();
+                return;
+            }
+
+            Map<String, Object> report = new HashMap<>();
+            report.put("pdfId", pdfId);
+            report.put("chunkIndex", chunkIndex);
+            report.put("chunkserverUrl", chunkserverUrl);
+            report.put("reason", reason);
+            pending.put(key, report);
+        }
+    }
+
+    /**
+     * Envía los reportes pendientes al Master en lotes de MAX_BATCH
+     * Si el Master no responde, el lote vuelve a la cola para el próximo intento
+     */
+    private void flush() {
+        Map<String, Map<String, Object>> batch;
+        while (!(batch = takeBatch()).isEmpty()) {
+            try {
+                Map<String, Object> request = new HashMap<>();
+                request.put("reports", new ArrayList<>(batch.values()));
+                restTemplate.postForEntity(masterUrl + "/api/master/report-bad-replica", request, Map.class);
+
+                sent.addAndGet(batch.size());
+                System.out.println("🩹 Read repair: " + batch.size() + " réplicas defectuosas reportadas al Master");
+            } catch (Exception e) {
+                failedFlushes.incrementAndGet();
+                requeue(batch);
+                System.err.println("⚠️  Read repair: error reportando al Master: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private Map<String, Map<String, Object>> takeBatch() {
+        Map<String, Map<String, Object>> batch = new LinkedHashMap<>();
+        synchronized (pending) {
+            Iterator<Map.Entry<String, Map<String, Object>>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < MAX_BATCH) {
+                Map.Entry<String, Map<String, Object>> entry = iterator.next();
+                batch.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+        }
+        return batch;
+    }
+
+    private void requeue(Map<String, Map<String, Object>> batch) {
+        synchronized (pending) {
+            for (Map.Entry<String, Map<String, Object>> entry : batch.entrySet()) {
+                if (pending.size() >= MAX_PENDING) {
+                    dropped.incrementAndGet();
+                } else {
+                    pending.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtiene estadísticas del reporte de réplicas defectuosas
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("reported", reported.get());
+        stats.put("sent", sent.get());
+        stats.put("dropped", dropped.get());
+        stats.put("failedFlushes", failedFlushes.get());
+        synchronized (pending) {
+            stats.put("pending", pending.size());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,116 @@
+package com.gfs.client.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Selección de réplicas según la latencia observada de cada chunkserver
+ * - Mantiene un promedio móvil exponencial (EWMA) de latencia y de errores por servidor
+ * - Las lecturas van primero a la réplica con mejor puntaje
+ * - Una pequeña fracción explora otras réplicas para mantener los puntajes frescos
+ */
+@Component
+public class ReplicaSelector {
+
+    @Value("${gfs.replica-selection.latency-alpha:0.2}")
+    private double LATENCY_ALPHA;
+
+    @Value("${gfs.replica-selection.error-alpha:0.1}")
+    private double ERROR_ALPHA;
+
+    @Value("${gfs.replica-selection.error-penalty:10.0}")
+    private double ERROR_PENALTY;
+
+    @Value("${gfs.replica-selection.exploration:0.05}")
+    private double EXPLORATION;
+
+    private final Map<String, ServerScore> scores = new ConcurrentHashMap<>();
+
+    /**
+     * Registra una transferencia exitosa contra un chunkserver
+     */
+    public void recordSuccess(String chunkserverUrl, long latencyMs) {
+        scores.computeIfAbsent(chunkserverUrl, k -> new ServerScore()).update(latencyMs, false);
+    }
+
+    /**
+     * Registra una transferencia fallida contra un chunkserver
+     */
+    public void recordFailure(String chunkserverUrl) {
+        scores.computeIfAbsent(chunkserverUrl, k -> new ServerScore()).update(0, true);
+    }
+
+    /**
+     * Ordena las réplicas de un chunk de mejor a peor puntaje
+     * El orden de entrada desempata, por eso conviene rotarlo antes
+     */
+    public List<Map<String, Object>> order(List<Map<String, Object>> replicas) {
+        List<Map<String, Object>> ordered = new ArrayList<>(replicas);
+        ordered.sort(Comparator.comparingDouble(replica -> score((String) replica.get("chunkserverUrl"))));
+
+        // Exploración: ocasionalmente se adelanta una réplica al azar
+        if (ordered.size() > 1 && ThreadLocalRandom.current().nextDouble() < EXPLORATION) {
+            int pick = 1 + ThreadLocalRandom.current().nextInt(ordered.size() - 1);
+            Collections.swap(ordered, 0, pick);
+        }
+
+        return ordered;
+    }
+
+    /**
+     * Puntaje de un servidor (menor es mejor); los desconocidos se prueban primero
+     */
+    private double score(String chunkserverUrl) {
+        ServerScore score = scores.get(chunkserverUrl);
+        return score != null ? score.value() : 0.0;
+    }
+
+    /**
+     * Obtiene los puntajes actuales por chunkserver
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        scores.forEach((url, score) -> stats.put(url, score.snapshot()));
+        return stats;
+    }
+
+    /**
+     * Puntaje EWMA de un chunkserver
+     */
+    private class ServerScore {
+        private double latencyMs = 0;
+        private double errorRate = 0;
+        private long samples = 0;
+
+        synchronized void update(long sampleLatencyMs, boolean failed) {
+            if (!failed) {
+                latencyMs = samples == 0 ? sampleLatencyMs
+                        : LATENCY_ALPHA * sampleLatencyMs + (1 - LATENCY_ALPHA) * latencyMs;
+            }
+            errorRate = ERROR_ALPHA * (failed ? 1.0 : 0.0) + (1 - ERROR_ALPHA) * errorRate;
+            samples++;
+        }
+
+        synchronized double value() {
+            return Math.max(latencyMs, 1.0) * (1 + ERROR_PENALTY * errorRate);
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("latencyMs", latencyMs);
+            snapshot.put("errorRate", errorRate);
+            snapshot.put("score", value());
+            snapshot.put("samples", samples);
+            return snapshot;
+        }
+    }
+}
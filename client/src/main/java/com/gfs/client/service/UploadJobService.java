@@ -0,0 +1,271 @@
+package com.gfs.client.service;
+
+import com.gfs.client.config.CallerContext;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Uploads asíncronos
+ * - El archivo recibido se copia a disco y se encola en una cola acotada
+ * - Un pool dedicado ejecuta el upload; el hilo de la petición queda libre
+ * - El avance por chunk se consulta por jobId
+ */
+@Service
+public class UploadJobService {
+
+    @Value("${gfs.upload.jobs.workers:2}")
+    private int WORKERS;
+
+    @Value("${gfs.upload.jobs.queue-capacity:16}")
+    private int QUEUE_CAPACITY;
+
+    @Value("${gfs.upload.jobs.retention-minutes:60}")
+    private long RETENTION_MINUTES;
+
+    @Autowired
+    private GfsClientService gfsClientService;
+
+    private ThreadPoolExecutor pool;
+    private final Map<String, UploadJob> jobs = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        // Sin política de espera: con la cola llena el job se rechaza (503)
+        pool = new ThreadPoolExecutor(WORKERS, WORKERS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+            Thread thread = new Thread(runnable, "gfs-upload-job-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Acepta un upload y lo encola
+     * Lanza RejectedExecutionException si la cola está llena
+     */
+    public Map<String, Object> submit(MultipartFile file) throws IOException {
+        purgeFinishedJobs();
+
+        String jobId = UUID.randomUUID().toString();
+        Path tempFile = Files.createTempFile("gfs-upload-" + jobId, ".pdf");
+        try {
+            // El multipart se borra al terminar la petición: se conserva una copia propia
+            file.transferTo(tempFile);
+
+            UploadJob job = new UploadJob(jobId, file.getOriginalFilename(), file.getSize(), tempFile);
+            jobs.put(jobId, job);
+            try {
+                // Las transferencias del job se reparten a nombre del caller que lo subió
+                pool.execute(CallerContext.wrap(() -> run(job)));
+            } catch (RuntimeException e) {
+                jobs.remove(jobId);
+                throw e;
+            }
+
+            System.out.println("   📥 Job de upload encolado: " + jobId +
+                               " (" + pool.getQueue().size() + " en cola)");
+            return job.snapshot();
+
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Estado de un job; lanza RuntimeException si no existe
+     */
+    public Map<String, Object> getJob(String jobId) {
+        UploadJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new RuntimeException("Job de upload no encontrado: " + jobId);
+        }
+        return job.snapshot();
+    }
+
+    /**
+     * Obtiene estadísticas de la cola de uploads
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("workers", WORKERS);
+        stats.put("queueCapacity", QUEUE_CAPACITY);
+        stats.put("queued", pool.getQueue().size());
+        stats.put("running", pool.getActiveCount());
+        stats.put("completed", pool.getCompletedTaskCount());
+        stats.put("tracked", jobs.size());
+        return stats;
+    }
+
+    private void run(UploadJob job) {
+        job.start();
+        System.out.println("\n╔════════════════════════════════════════════════════════╗");
+        System.out.println("║  📤 CLIENTE: JOB DE UPLOAD                            ║");
+        System.out.println("╚════════════════════════════════════════════════════════╝");
+        System.out.println("   Job: " + job.jobId);
+        System.out.println("   Archivo: " + job.pdfId + " (" + job.size + " bytes)");
+
+        try {
+            Map<String, Object> result = gfsClientService.uploadPdf(
+                    job.pdfId, job.size, new FileSystemResource(job.tempFile), job);
+            job.finish(result);
+            System.out.println("   " + (Boolean.TRUE.equals(result.get("committed"))
+                    ? "✅ Job completado: " : "⚠️  Job incompleto: ") + job.jobId);
+
+        } catch (Exception e) {
+            job.fail(e);
+            System.err.println("   ❌ Job fallido " + job.jobId + ": " + e.getMessage());
+
+        } finally {
+            try {
+                Files.deleteIfExists(job.tempFile);
+            } catch (IOException e) {
+                System.err.println("   ⚠️  No se pudo borrar " + job.tempFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Descarta los jobs terminados hace más de RETENTION_MINUTES
+     */
+    private void purgeFinishedJobs() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(RETENTION_MINUTES);
+        jobs.values().removeIf(job -> job.isFinishedBefore(cutoff));
+    }
+
+    /**
+     * Job de upload con su avance por chunk
+     */
+    private static class UploadJob implements UploadProgressListener {
+        private static final String PENDING = "pending";
+        private static final String STORED = "stored";
+        private static final String WRITTEN = "written";
+        private static final String PARTIAL = "partial";
+        private static final String FAILED = "failed";
+
+        private final String jobId;
+        private final String pdfId;
+        private final long size;
+        private final Path tempFile;
+        private final long queuedAt = System.currentTimeMillis();
+
+        private String state = "queued";
+        private String uploadId;
+        private String[] chunks = new String[0];
+        private long startedAt;
+        private long finishedAt;
+        private Map<String, Object> result;
+        private String error;
+
+        UploadJob(String jobId, String pdfId, long size, Path tempFile) {
+            this.jobId = jobId;
+            this.pdfId = pdfId;
+            this.size = size;
+            this.tempFile = tempFile;
+        }
+
+        synchronized void start() {
+            state = "running";
+            startedAt = System.currentTimeMillis();
+        }
+
+        @Override
+        public synchronized void onHashing() {
+            state = "hashing";
+        }
+
+        @Override
+        public synchronized void onSessionOpened(String uploadId, int totalChunks,
+                                                 Collection<Integer> alreadyStored) {
+            this.state = "uploading";
+            this.uploadId = uploadId;
+            this.chunks = new String[totalChunks];
+            Arrays.fill(chunks, PENDING);
+            alreadyStored.forEach(chunkIndex -> chunks[chunkIndex] = STORED);
+        }
+
+        @Override
+        public synchronized void onChunkWritten(int chunkIndex, int replicasOk, int replicas) {
+            chunks[chunkIndex] = replicasOk == replicas ? WRITTEN : replicasOk > 0 ? PARTIAL : FAILED;
+        }
+
+        @Override
+        public synchronized void onCommitting() {
+            state = "committing";
+        }
+
+        synchronized void finish(Map<String, Object> uploadResult) {
+            result = new HashMap<>(uploadResult);
+            // El detalle por réplica ya está resumido en chunks
+            result.remove("chunks");
+            state = Boolean.TRUE.equals(uploadResult.get("committed")) ? "completed" : "incomplete";
+            finishedAt = System.currentTimeMillis();
+        }
+
+        synchronized void fail(Exception e) {
+            error = e.getMessage();
+            state = "failed";
+            finishedAt = System.currentTimeMillis();
+        }
+
+        synchronized boolean isFinishedBefore(long cutoff) {
+            return finishedAt > 0 && finishedAt < cutoff;
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            int done = 0;
+            for (String chunk : chunks) {
+                if (!PENDING.equals(chunk)) {
+                    done++;
+                }
+            }
+
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("jobId", jobId);
+            snapshot.put("pdfId", pdfId);
+            snapshot.put("size", size);
+            snapshot.put("state", state);
+            snapshot.put("uploadId", uploadId);
+            snapshot.put("totalChunks", chunks.length);
+            snapshot.put("completedChunks", done);
+            snapshot.put("progress", chunks.length > 0 ? done * 100 / chunks.length : 0);
+            snapshot.put("chunks", List.of(chunks));
+            snapshot.put("queuedAt", queuedAt);
+            snapshot.put("startedAt", startedAt);
+            snapshot.put("finishedAt", finishedAt);
+            if (result != null) {
+                snapshot.put("result", result);
+            }
+            if (error != null) {
+                snapshot.put("error", error);
+            }
+            return snapshot;
+        }
+    }
+}
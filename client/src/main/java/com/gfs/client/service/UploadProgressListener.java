@@ -0,0 +1,37 @@
+package com.gfs.client.service;
+
+import java.util.Collection;
+
+/**
+ * Avance de un upload, notificado desde el pipeline de escritura de chunks
+ * Los métodos se invocan desde hilos de transferencia
+ */
+public interface UploadProgressListener {
+
+    UploadProgressListener NONE = new UploadProgressListener() {
+    };
+
+    /**
+     * Cálculo de hashes de contenido en curso
+     */
+    default void onHashing() {
+    }
+
+    /**
+     * Sesión abierta en el Master; alreadyStored son chunks que no se envían
+     */
+    default void onSessionOpened(String uploadId, int totalChunks, Collection<Integer> alreadyStored) {
+    }
+
+    /**
+     * Escritura de un chunk terminada (primer intento o reintento)
+     */
+    default void onChunkWritten(int chunkIndex, int replicasOk, int replicas) {
+    }
+
+    /**
+     * Confirmación de la sesión en curso
+     */
+    default void onCommitting() {
+    }
+}
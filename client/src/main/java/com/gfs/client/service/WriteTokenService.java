@@ -0,0 +1,102 @@
+package com.gfs.client.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Tokens de escritura para uploads directos desde el navegador
+ * - Firmados con HMAC-SHA256 y el secreto compartido con los chunkservers
+ * - Autorizan un chunk concreto (id físico, índice, tamaño y hash) en una cadena de
+ *   chunkservers concreta hasta que vencen; los chunkservers solo reenvían a esa cadena
+ * - Cada chunkserver que guarda el chunk firma su propio recibo: prueba qué réplicas
+ *   se escribieron
+ * Sin secreto configurado el upload directo queda deshabilitado
+ */
+@Component
+public class WriteTokenService {
+
+    @Value("${gfs.write-token.secret:}")
+    private String SECRET;
+
+    @Value("${gfs.write-token.ttl-seconds:900}")
+    private long TTL_SECONDS;
+
+    /**
+     * Contenido de un token de escritura
+     */
+    public record Claims(String storageId, int storageIndex, int length, String contentHash,
+                         List<String> targets, long expiresAt) {
+    }
+
+    public boolean isEnabled() {
+        return !SECRET.isEmpty();
+    }
+
+    /**
+     * Instante de vencimiento (epoch ms) de un token emitido ahora
+     */
+    public long nextExpiry() {
+        return System.currentTimeMillis() + TTL_SECONDS * 1000;
+    }
+
+    /**
+     * Emite un token para escribir un chunk en la cadena targets (primaria primero)
+     * contentHash es null si el chunk no está deduplicado
+     */
+    public String issue(String storageId, int storageIndex, int length, String contentHash,
+                        List<String> targets, long expiresAt) {
+        String claims = String.join("\n", storageId, String.valueOf(storageIndex), String.valueOf(length),
+                contentHash != null ? contentHash : "", String.join(",", targets), String.valueOf(expiresAt));
+        String payload = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(claims.getBytes(StandardCharsets.UTF_8));
+        return payload + "." + sign("write\n" + payload);
+    }
+
+    /**
+     * Lee un token emitido por este cliente (sin comprobar el vencimiento)
+     * Lanza IllegalArgumentException si la firma no es válida
+     */
+    public Claims parse(String token) {
+        String[] parts = token != null ? token.split("\\.") : new String[0];
+        if (parts.length != 2 || !constantTimeEquals(sign("write\n" + parts[0]), parts[1])) {
+            throw new IllegalArgumentException("Token de escritura inválido");
+        }
+
+        String[] claims = new String(Base64.getUrlDecoder().decode(parts[0]), StandardCharsets.UTF_8)
+                .split("\n", -1);
+        return new Claims(claims[0], Integer.parseInt(claims[1]), Integer.parseInt(claims[2]),
+                claims[3].isEmpty() ? null : claims[3],
+                claims[4].isEmpty() ? List.of() : List.of(claims[4].split(",")), Long.parseLong(claims[5]));
+    }
+
+    /**
+     * Comprueba el recibo que chunkserverUrl firmó tras guardar el chunk del token
+     */
+    public boolean verifyReceipt(String token, String chunkserverUrl, String receipt) {
+        return receipt != null && constantTimeEquals(sign("receipt\n" + token + "\n" + chunkserverUrl), receipt);
+    }
+
+    private String sign(String value) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(mac.doFinal(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean constantTimeEquals(String expected, String actual) {
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8),
+                actual.getBytes(StandardCharsets.UTF_8));
+    }
+}
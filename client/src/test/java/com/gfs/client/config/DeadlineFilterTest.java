@@ -0,0 +1,72 @@
+package com.gfs.client.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadlineFilterTest {
+
+    private DeadlineFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new DeadlineFilter();
+        ReflectionTestUtils.setField(filter, "DEFAULT_BUDGET_MS", 60_000L);
+    }
+
+    @Test
+    void requestsWithoutHeaderGetDefaultBudget() throws Exception {
+        Long remaining = remainingBudget(new MockHttpServletRequest("GET", "/api/pdf/list"));
+
+        assertNotNull(remaining);
+        assertTrue(remaining > 50_000 && remaining <= 60_000, "remaining=" + remaining);
+        assertNotNull(remainingBudget(new MockHttpServletRequest("GET", "/api/pdf/download/doc.pdf/page/3")));
+        assertNotNull(remainingBudget(new MockHttpServletRequest("DELETE", "/api/pdf/delete/doc.pdf")));
+        assertNull(RequestDeadline.current());
+    }
+
+    @Test
+    void streamingHandlersWithoutHeaderHaveNoBudget() throws Exception {
+        assertNull(remainingBudget(new MockHttpServletRequest("GET", "/api/pdf/download/doc.pdf")));
+        assertNull(remainingBudget(new MockHttpServletRequest("POST", "/api/pdf/upload")));
+        assertNull(remainingBudget(new MockHttpServletRequest("POST", "/api/pdf/upload/jobs")));
+    }
+
+    @Test
+    void headerBudgetAppliesToStreamingHandlersToo() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/pdf/download/doc.pdf");
+        request.addHeader(RequestDeadline.HEADER, "5000");
+
+        Long remaining = remainingBudget(request);
+
+        assertNotNull(remaining);
+        assertTrue(remaining <= 5000, "remaining=" + remaining);
+    }
+
+    @Test
+    void expiredBudgetIsRejected() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/pdf/list");
+        request.addHeader(RequestDeadline.HEADER, "0");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (req, res) -> fail("no debe ejecutarse"));
+
+        assertEquals(504, response.getStatus());
+    }
+
+    /**
+     * Presupuesto restante que ve el handler (null si corre sin plazo)
+     */
+    private Long remainingBudget(MockHttpServletRequest request) throws Exception {
+        AtomicReference<Long> remaining = new AtomicReference<>();
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) ->
+                remaining.set(RequestDeadline.current() != null ? RequestDeadline.remainingMs() : null));
+        return remaining.get();
+    }
+}
@@ -0,0 +1,108 @@
+package com.gfs.client.service;
+
+import com.gfs.client.config.CallerContext;
+import com.gfs.client.service.ChunkTransferExecutor.TransferClass;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallerQuotaRegistryTest {
+
+    private CallerQuotaRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new CallerQuotaRegistry();
+        ReflectionTestUtils.setField(registry, "ENABLED", true);
+        ReflectionTestUtils.setField(registry, "READ_WEIGHT", 4.0);
+        ReflectionTestUtils.setField(registry, "WRITE_WEIGHT", 1.0);
+        ReflectionTestUtils.setField(registry, "DEFAULT_WEIGHT", 1.0);
+        ReflectionTestUtils.setField(registry, "DEFAULT_OPS_PER_SECOND", 0.0);
+        ReflectionTestUtils.setField(registry, "DEFAULT_BYTES_PER_SECOND", 0.0);
+        ReflectionTestUtils.setField(registry, "BURST_SECONDS", 1.0);
+        ReflectionTestUtils.setField(registry, "CALLERS", "bulk:2,limited:1:2:100");
+        ReflectionTestUtils.setField(registry, "API_KEYS", "secret-key:partner");
+        ReflectionTestUtils.setField(registry, "MAX_CALLERS", 1000);
+        registry.init();
+    }
+
+    @Test
+    void resolvesApiKeyOrAnonymous() {
+        assertEquals("partner", registry.resolve("secret-key"));
+        assertEquals("partner", registry.resolve(" secret-key "));
+        assertEquals(CallerContext.ANONYMOUS, registry.resolve("unknown-key"));
+        assertEquals(CallerContext.ANONYMOUS, registry.resolve(null));
+    }
+
+    @Test
+    void callersWithoutApiKeyShareAnonymousQuota() {
+        CallerQuotaRegistry.Quota first = registry.quota(registry.resolve("unknown-key"));
+        CallerQuotaRegistry.Quota second = registry.quota(registry.resolve(null));
+
+        assertSame(first, second);
+        assertEquals(CallerContext.ANONYMOUS, first.name);
+    }
+
+    @Test
+    void weightScalesByTransferClass() {
+        assertEquals(8.0, registry.quota("bulk").weight(TransferClass.READ));
+        assertEquals(2.0, registry.quota("bulk").weight(TransferClass.WRITE));
+        assertEquals(4.0, registry.quota("someone").weight(TransferClass.READ));
+    }
+
+    @Test
+    void unlimitedQuotaNeverDelays() {
+        CallerQuotaRegistry.Quota quota = registry.quota("someone");
+        for (int i = 0; i < 1000; i++) {
+            quota.charge(1 << 20);
+        }
+        assertEquals(0, quota.delayMs(System.currentTimeMillis()));
+    }
+
+    @Test
+    void opsBucketAdmitsBurstThenDelaysUntilRefill() {
+        CallerQuotaRegistry.Quota quota = registry.quota("limited");
+        long now = System.currentTimeMillis();
+
+        // Ráfaga de 2 operaciones (2 ops/s durante 1 s)
+        assertEquals(0, quota.delayMs(now));
+        quota.charge(0);
+        quota.charge(0);
+        assertEquals(0, quota.delayMs(now));
+
+        // En deuda de una operación: medio segundo a 2 ops/s
+        quota.charge(0);
+        long delay = quota.delayMs(now);
+        assertTrue(delay > 450 && delay <= 502, "delay=" + delay);
+        assertEquals(0, quota.delayMs(now + delay));
+    }
+
+    @Test
+    void bytesBucketChargesTransferredBytes() {
+        CallerQuotaRegistry.Quota quota = registry.quota("limited");
+        long now = System.currentTimeMillis();
+
+        quota.charge(100);
+        assertEquals(0, quota.delayMs(now));
+
+        // 50 bytes más de lo estimado: medio segundo a 100 bytes/s
+        quota.adjust(50);
+        long delay = quota.delayMs(now);
+        assertTrue(delay > 450 && delay <= 502, "delay=" + delay);
+
+        // La recarga no supera la ráfaga configurada
+        assertEquals(0, quota.delayMs(now + 60_000));
+        quota.charge(150);
+        assertTrue(quota.delayMs(now + 60_000) > 0);
+    }
+
+    @Test
+    void callersBeyondLimitShareAnonymousQuota() {
+        ReflectionTestUtils.setField(registry, "MAX_CALLERS", 3);
+        assertEquals("first", registry.quota("first").name);
+        assertEquals(CallerContext.ANONYMOUS, registry.quota("second").name);
+        assertEquals("bulk", registry.quota("bulk").name);
+    }
+}
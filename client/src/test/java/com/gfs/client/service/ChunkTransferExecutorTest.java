@@ -0,0 +1,127 @@
+package com.gfs.client.service;
+
+import com.gfs.client.service.ChunkTransferExecutor.TransferClass;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkTransferExecutorTest {
+
+    private static final String SERVER = "http://localhost:9001";
+
+    private ChunkTransferExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        CircuitBreakerRegistry circuitBreakers = new CircuitBreakerRegistry();
+        ReflectionTestUtils.setField(circuitBreakers, "ENABLED", false);
+
+        CallerQuotaRegistry callerQuotas = new CallerQuotaRegistry();
+        ReflectionTestUtils.setField(callerQuotas, "ENABLED", false);
+
+        executor = new ChunkTransferExecutor();
+        ReflectionTestUtils.setField(executor, "circuitBreakers", circuitBreakers);
+        ReflectionTestUtils.setField(executor, "callerQuotas", callerQuotas);
+        ReflectionTestUtils.setField(executor, "THREADS", 8);
+        ReflectionTestUtils.setField(executor, "MAX_IN_FLIGHT_PER_SERVER", 4);
+        ReflectionTestUtils.setField(executor, "ADAPTIVE", true);
+        ReflectionTestUtils.setField(executor, "MIN_LIMIT", 2);
+        ReflectionTestUtils.setField(executor, "MAX_LIMIT", 6);
+        ReflectionTestUtils.setField(executor, "LATENCY_TOLERANCE", 2.0);
+        ReflectionTestUtils.setField(executor, "BACKOFF", 0.5);
+        executor.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void fixedLimitCapsInFlightTransfersPerServer() {
+        ReflectionTestUtils.setField(executor, "ADAPTIVE", false);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        List<CompletableFuture<Integer>> transfers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            int index = i;
+            transfers.add(executor.submit(SERVER, TransferClass.WRITE, 1, () -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                TimeUnit.MILLISECONDS.sleep(10);
+                inFlight.decrementAndGet();
+                return index;
+            }));
+        }
+
+        for (int i = 0; i < transfers.size(); i++) {
+            assertEquals(i, transfers.get(i).join());
+        }
+        assertTrue(maxInFlight.get() <= 4, "maxInFlight=" + maxInFlight.get());
+        assertEquals(4, serverStats().get("limit"));
+    }
+
+    @Test
+    void limitGrowsUnderDemandWhileLatencyIsStable() {
+        List<CompletableFuture<Integer>> transfers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            transfers.add(executor.submit(SERVER, TransferClass.READ, 1, () -> 1));
+        }
+        transfers.forEach(CompletableFuture::join);
+
+        int limit = (Integer) serverStats().get("limit");
+        assertTrue(limit > 4, "limit=" + limit);
+        assertTrue(limit <= 6, "limit=" + limit);
+    }
+
+    @Test
+    void limitBacksOffOnFailuresDownToMinimum() {
+        List<CompletableFuture<Integer>> transfers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            transfers.add(executor.submit(SERVER, TransferClass.WRITE, 1, () -> {
+                throw new IllegalStateException("caído");
+            }));
+        }
+        transfers.forEach(transfer -> assertThrows(CompletionException.class, transfer::join));
+
+        Map<String, Object> stats = serverStats();
+        assertEquals(2, stats.get("limit"));
+        assertTrue((Long) stats.get("decreases") >= 1);
+    }
+
+    @Test
+    void limitBacksOffWhenLatencyRises() {
+        for (int i = 0; i < 20; i++) {
+            executor.submit(SERVER, TransferClass.READ, 1, () -> 1).join();
+        }
+        List<CompletableFuture<Integer>> slow = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            slow.add(executor.submit(SERVER, TransferClass.READ, 1, () -> {
+                TimeUnit.MILLISECONDS.sleep(40);
+                return 1;
+            }));
+        }
+        slow.forEach(CompletableFuture::join);
+
+        Map<String, Object> stats = serverStats();
+        assertTrue((Long) stats.get("decreases") >= 1);
+        assertTrue((Integer) stats.get("limit") < 4);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> serverStats() {
+        Map<String, Object> servers = (Map<String, Object>) executor.getStats().get("servers");
+        return (Map<String, Object>) servers.get(SERVER);
+    }
+}
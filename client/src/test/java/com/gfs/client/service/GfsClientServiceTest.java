@@ -0,0 +1,218 @@
+package com.gfs.client.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Descarga por ventana deslizante: reensamblado en orden y lecturas en vuelo acotadas
+ * Upload en cadena: el contenido repetido dentro del archivo se envía una sola vez
+ */
+class GfsClientServiceTest {
+
+    private static final int WINDOW = 3;
+    private static final int CHUNKS = 10;
+    private static final int UPLOAD_CHUNK_SIZE = 8;
+
+    private GfsClientService clientService;
+    private ScheduledExecutorService readers;
+
+    @BeforeEach
+    void setUp() {
+        clientService = new GfsClientService();
+        ReflectionTestUtils.setField(clientService, "DOWNLOAD_WINDOW", WINDOW);
+        readers = Executors.newScheduledThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        readers.shutdownNow();
+    }
+
+    @Test
+    void writesChunksInOrderWhenReadsCompleteOutOfOrder() {
+        CountingOutput out = new CountingOutput();
+        AtomicInteger requested = new AtomicInteger();
+        AtomicInteger maxAhead = new AtomicInteger();
+
+        // Los chunks posteriores de cada ventana terminan antes que los anteriores
+        IntFunction<CompletableFuture<byte[]>> reader = chunkIndex -> {
+            maxAhead.accumulateAndGet(requested.incrementAndGet() - out.chunks.get(), Math::max);
+            CompletableFuture<byte[]> read = new CompletableFuture<>();
+            readers.schedule(() -> read.complete(new byte[]{(byte) chunkIndex}),
+                    (CHUNKS - chunkIndex) * 5L, TimeUnit.MILLISECONDS);
+            return read;
+        };
+
+        downloadChunks(0, CHUNKS - 1, reader, out);
+
+        byte[] expected = new byte[CHUNKS];
+        for (int i = 0; i < CHUNKS; i++) {
+            expected[i] = (byte) i;
+        }
+        assertArrayEquals(expected, out.toByteArray());
+        assertEquals(CHUNKS, requested.get());
+        assertEquals(WINDOW, maxAhead.get());
+    }
+
+    @Test
+    void downloadsOnlyRequestedRange() {
+        CountingOutput out = new CountingOutput();
+        List<Integer> requested = new ArrayList<>();
+
+        downloadChunks(4, 6, chunkIndex -> {
+            requested.add(chunkIndex);
+            return CompletableFuture.completedFuture(new byte[]{(byte) chunkIndex});
+        }, out);
+
+        assertEquals(List.of(4, 5, 6), requested);
+        assertArrayEquals(new byte[]{4, 5, 6}, out.toByteArray());
+    }
+
+    @Test
+    void failedChunkStopsDownloadAndCancelsPendingReads() {
+        CountingOutput out = new CountingOutput();
+        List<CompletableFuture<byte[]>> reads = new ArrayList<>();
+
+        IntFunction<CompletableFuture<byte[]>> reader = chunkIndex -> {
+            CompletableFuture<byte[]> read = chunkIndex == 1
+                    ? CompletableFuture.failedFuture(new IllegalStateException("réplicas agotadas"))
+                    : chunkIndex == 0 ? CompletableFuture.completedFuture(new byte[]{0}) : new CompletableFuture<>();
+            reads.add(read);
+            return read;
+        };
+
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> downloadChunks(0, CHUNKS - 1, reader, out));
+
+        assertEquals("réplicas agotadas", error.getMessage());
+        assertArrayEquals(new byte[]{0}, out.toByteArray());
+        assertEquals(WINDOW + 1, reads.size());
+        assertTrue(reads.subList(2, reads.size()).stream().allMatch(CompletableFuture::isCancelled));
+    }
+
+    @Test
+    void repeatedChunkInPipelinedUploadIsSentOnce() throws Exception {
+        List<String> servers = List.of("http://localhost:9001", "http://localhost:9002", "http://localhost:9003");
+        String repeated = "a".repeat(64);
+        List<String> hashes = List.of(repeated, "b".repeat(64), repeated);
+
+        List<Map<String, Object>> plan = new ArrayList<>();
+        for (int chunkIndex = 0; chunkIndex < hashes.size(); chunkIndex++) {
+            for (int replicaIndex = 0; replicaIndex < servers.size(); replicaIndex++) {
+                Map<String, Object> replica = new HashMap<>();
+                replica.put("chunkIndex", chunkIndex);
+                replica.put("replicaIndex", replicaIndex);
+                replica.put("chunkserverUrl", servers.get(replicaIndex));
+                replica.put("contentHash", hashes.get(chunkIndex));
+                plan.add(replica);
+            }
+        }
+        Map<String, Object> session = new HashMap<>();
+        session.put("pdfId", "dup.pdf");
+        session.put("uploadId", "upload-1");
+        session.put("size", 3L * UPLOAD_CHUNK_SIZE);
+        session.put("totalChunks", hashes.size());
+        session.put("writeQuorum", 2);
+        session.put("chunks", plan);
+
+        // Cadenas escritas por los chunkservers y acks enviados al Master
+        List<String> chainWrites = new CopyOnWriteArrayList<>();
+        List<Object> confirmations = new CopyOnWriteArrayList<>();
+        RestTemplate restTemplate = mock(RestTemplate.class, invocation -> {
+            String url = invocation.getArgument(0);
+            if (url.contains("/api/chunk/data/")) {
+                chainWrites.add(url);
+                return ResponseEntity.ok(Map.of("stored", servers));
+            }
+            confirmations.add(invocation.getArgument(1, HttpEntity.class).getBody());
+            return ResponseEntity.ok(Map.of("missingChunks", List.of()));
+        });
+
+        ChunkTransferExecutor transferExecutor = newTransferExecutor();
+        try {
+            ReflectionTestUtils.setField(clientService, "masterUrl", "http://localhost:9000");
+            ReflectionTestUtils.setField(clientService, "CHUNK_SIZE", UPLOAD_CHUNK_SIZE);
+            ReflectionTestUtils.setField(clientService, "UPLOAD_WINDOW", 4);
+            ReflectionTestUtils.setField(clientService, "PIPELINED_WRITES", true);
+            ReflectionTestUtils.setField(clientService, "UPLOAD_MAX_ATTEMPTS", 3);
+            ReflectionTestUtils.setField(clientService, "restTemplate", restTemplate);
+            ReflectionTestUtils.setField(clientService, "transferExecutor", transferExecutor);
+            ReflectionTestUtils.setField(clientService, "circuitBreakers",
+                    ReflectionTestUtils.getField(transferExecutor, "circuitBreakers"));
+            ReflectionTestUtils.setField(clientService, "replicaSelector", mock(ReplicaSelector.class));
+            ReflectionTestUtils.setField(clientService, "writeTokens", mock(WriteTokenService.class));
+            ReflectionTestUtils.setField(clientService, "chunkCache", mock(ChunkCache.class));
+            ReflectionTestUtils.setField(clientService, "metadataCache", mock(MetadataCache.class));
+
+            byte[] content = new byte[3 * UPLOAD_CHUNK_SIZE];
+            Map<String, Object> result = clientService.uploadToSession(session, new ByteArrayInputStream(content),
+                    UploadProgressListener.NONE, false, System.currentTimeMillis());
+
+            // Una sola cadena por contenido distinto; el repetido comparte la del chunk 0
+            assertEquals(2, chainWrites.size());
+            assertEquals(1, result.get("deduplicatedChunks"));
+            assertEquals(List.of(), result.get("missingChunks"));
+            assertEquals(1, confirmations.size());
+            assertEquals(3, ((List<?>) ((Map<?, ?>) confirmations.get(0)).get("chunks")).size());
+        } finally {
+            transferExecutor.shutdown();
+        }
+    }
+
+    private static ChunkTransferExecutor newTransferExecutor() {
+        CircuitBreakerRegistry circuitBreakers = new CircuitBreakerRegistry();
+        ReflectionTestUtils.setField(circuitBreakers, "ENABLED", false);
+        CallerQuotaRegistry callerQuotas = new CallerQuotaRegistry();
+        ReflectionTestUtils.setField(callerQuotas, "ENABLED", false);
+
+        ChunkTransferExecutor executor = new ChunkTransferExecutor();
+        ReflectionTestUtils.setField(executor, "circuitBreakers", circuitBreakers);
+        ReflectionTestUtils.setField(executor, "callerQuotas", callerQuotas);
+        ReflectionTestUtils.setField(executor, "THREADS", 4);
+        ReflectionTestUtils.setField(executor, "MAX_IN_FLIGHT_PER_SERVER", 4);
+        ReflectionTestUtils.setField(executor, "ADAPTIVE", false);
+        executor.init();
+        return executor;
+    }
+
+    private void downloadChunks(int firstChunk, int lastChunk, IntFunction<CompletableFuture<byte[]>> reader,
+                                OutputStream out) {
+        ReflectionTestUtils.invokeMethod(clientService, "downloadChunks", firstChunk, lastChunk, reader, out);
+    }
+
+    /**
+     * Salida que cuenta los chunks escritos
+     */
+    private static class CountingOutput extends ByteArrayOutputStream {
+        final AtomicInteger chunks = new AtomicInteger();
+
+        @Override
+        public void write(byte[] b) {
+            super.write(b, 0, b.length);
+            chunks.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.gfs.client.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteTokenServiceTest {
+
+    private static final List<String> CHAIN = List.of("http://localhost:9001", "http://localhost:9002");
+
+    private WriteTokenService writeTokens;
+
+    @BeforeEach
+    void setUp() {
+        writeTokens = newService("test-secret");
+    }
+
+    @Test
+    void disabledWithoutSecret() {
+        assertFalse(newService("").isEnabled());
+        assertTrue(writeTokens.isEnabled());
+    }
+
+    @Test
+    void parsesIssuedClaims() {
+        String hash = "c".repeat(64);
+        String token = writeTokens.issue("cas_" + hash, 0, 1024, hash, CHAIN, 1234L);
+
+        WriteTokenService.Claims claims = writeTokens.parse(token);
+
+        assertEquals("cas_" + hash, claims.storageId());
+        assertEquals(0, claims.storageIndex());
+        assertEquals(1024, claims.length());
+        assertEquals(hash, claims.contentHash());
+        assertEquals(CHAIN, claims.targets());
+        assertEquals(1234L, claims.expiresAt());
+    }
+
+    @Test
+    void parsesTokenWithoutContentHash() {
+        String token = writeTokens.issue("doc.pdf", 3, 10, null, CHAIN, 1L);
+
+        assertNull(writeTokens.parse(token).contentHash());
+    }
+
+    @Test
+    void rejectsTamperedOrForeignTokens() {
+        String token = writeTokens.issue("doc.pdf", 0, 10, null, CHAIN, 1L);
+        String forged = newService("other-secret").issue("doc.pdf", 0, 10, null, CHAIN, 1L);
+        String[] parts = token.split("\\.");
+        String otherPayload = writeTokens.issue("doc.pdf", 1, 10, null, CHAIN, 1L).split("\\.")[0];
+
+        assertThrows(IllegalArgumentException.class, () -> writeTokens.parse(forged));
+        assertThrows(IllegalArgumentException.class, () -> writeTokens.parse(otherPayload + "." + parts[1]));
+        assertThrows(IllegalArgumentException.class, () -> writeTokens.parse(parts[0]));
+        assertThrows(IllegalArgumentException.class, () -> writeTokens.parse(null));
+    }
+
+    @Test
+    void receiptIsBoundToTokenAndServer() {
+        String token = writeTokens.issue("doc.pdf", 0, 10, null, CHAIN, 1L);
+        String otherToken = writeTokens.issue("doc.pdf", 1, 10, null, CHAIN, 1L);
+        String receipt = receipt(token, CHAIN.get(0));
+
+        assertTrue(writeTokens.verifyReceipt(token, CHAIN.get(0), receipt));
+        assertFalse(writeTokens.verifyReceipt(token, CHAIN.get(1), receipt));
+        assertFalse(writeTokens.verifyReceipt(otherToken, CHAIN.get(0), receipt));
+        assertFalse(writeTokens.verifyReceipt(token, CHAIN.get(0), null));
+    }
+
+    /**
+     * Recibo como lo firma un chunkserver con el mismo secreto
+     */
+    private String receipt(String token, String chunkserverUrl) {
+        return ReflectionTestUtils.invokeMethod(writeTokens, "sign", "receipt\n" + token + "\n" + chunkserverUrl);
+    }
+
+    private static WriteTokenService newService(String secret) {
+        WriteTokenService service = new WriteTokenService();
+        ReflectionTestUtils.setField(service, "SECRET", secret);
+        ReflectionTestUtils.setField(service, "TTL_SECONDS", 900L);
+        return service;
+    }
+}
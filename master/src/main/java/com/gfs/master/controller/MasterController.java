@@ -1,15 +1,25 @@
 package com.gfs.master.controller;
 
+import com.gfs.master.config.HttpTransportConfig;
+import com.gfs.master.model.PageIndex;
 import com.gfs.master.model.PdfMetadata;
+import com.gfs.master.model.UploadSession;
+import com.gfs.master.service.IntegrityMonitor;
 import com.gfs.master.service.MasterService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/master")
@@ -19,9 +29,16 @@ public class MasterController {
     @Autowired
     private MasterService masterService;
 
+    @Autowired
+    private IntegrityMonitor integrityMonitor;
+
+    @Autowired
+    private HttpTransportConfig httpTransport;
+
     /**
      * Planifica el upload de un PDF
      * Retorna las ubicaciones donde guardar cada chunk
+     * Con chunkHashes, los chunks cuyo contenido ya existe se informan en alreadyStored
      */
     @PostMapping("/upload")
     public ResponseEntity<Map<String, Object>> planUpload(@RequestBody Map<String, Object> request) {
@@ -35,12 +52,17 @@ public class MasterController {
             System.out.println("   PDF ID: " + pdfId);
             System.out.println("   Tamano: " + size + " bytes");
 
-            PdfMetadata metadata = masterService.planUpload(pdfId, size);
+            @SuppressWarnings("unchecked")
+            List<String> chunkHashes = (List<String>) request.get("chunkHashes");
+            Set<Integer> alreadyStored = new TreeSet<>();
+
+            PdfMetadata metadata = masterService.planUpload(pdfId, size, chunkHashes, alreadyStored);
 
             Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
             response.put("pdfId", metadata.getPdfId());
             response.put("chunks", metadata.getChunks());
+            response.put("alreadyStored", alreadyStored);
             response.put("replicationFactor", 3);
 
             System.out.println("   Chunks: " + metadata.getChunks().size() / 3);
@@ -49,6 +71,12 @@ public class MasterController {
 
             return ResponseEntity.ok(response);
 
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+
         } catch (Exception e) {
             System.err.println("[ERROR] ERROR en planUpload: " + e.getMessage());
             e.printStackTrace();
@@ -59,21 +87,290 @@ public class MasterController {
         }
     }
 
+    /**
+     * Abre una sesión de upload reanudable
+     * Retorna el uploadId y las ubicaciones planificadas de cada chunk.
+     * Con chunkHashes, el contenido conocido no se vuelve a enviar; si el archivo
+     * completo ya existe la sesión se confirma en esta misma llamada (committed=true).
+     * Con writeQuorum el commit solo exige ese número de réplicas confirmadas por chunk
+     */
+    @PostMapping("/upload/session")
+    public ResponseEntity<Map<String, Object>> createUploadSession(@RequestBody Map<String, Object> request) {
+        try {
+            String pdfId = (String) request.get("pdfId");
+            long size = ((Number) request.get("size")).longValue();
+            @SuppressWarnings("unchecked")
+            List<String> chunkHashes = (List<String>) request.get("chunkHashes");
+            Number writeQuorum = (Number) request.get("writeQuorum");
+
+            UploadSession session = masterService.createUploadSession(pdfId, size, chunkHashes,
+                    writeQuorum != null ? writeQuorum.intValue() : 0);
+            return ResponseEntity.ok(toSessionResponse(session));
+
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+
+        } catch (Exception e) {
+            System.err.println("[ERROR] ERROR creando sesión de upload: " + e.getMessage());
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
+    /**
+     * Abre las sesiones de upload de muchos archivos en una sola llamada
+     * Body: {files: [{pdfId, size, chunkHashes}], writeQuorum}
+     * Los metadatos se escriben a disco una vez por lote; los archivos que no se
+     * pueden planificar se informan en errors sin afectar al resto
+     */
+    @PostMapping("/upload/batch")
+    public ResponseEntity<Map<String, Object>> createUploadSessions(@RequestBody Map<String, Object> request) {
+        try {
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> files = (List<Map<String, Object>>) request.get("files");
+            if (files == null) {
+                throw new IllegalArgumentException("Se requiere la lista files");
+            }
+            Number writeQuorum = (Number) request.get("writeQuorum");
+
+            Map<String, String> errors = new LinkedHashMap<>();
+            List<UploadSession> sessions = masterService.createUploadSessions(files,
+                    writeQuorum != null ? writeQuorum.intValue() : 0, errors);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "success");
+            response.put("sessions", sessions.stream().map(this::toSessionResponse).collect(Collectors.toList()));
+            response.put("errors", toErrorList("pdfId", errors));
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * Confirma muchas sesiones de upload en una sola llamada
+     * Body: {uploadIds: [...]}. Las incompletas se informan en errors y siguen abiertas
+     */
+    @PostMapping("/upload/batch/commit")
+    public ResponseEntity<Map<String, Object>> commitUploadSessions(@RequestBody Map<String, Object> request) {
+        try {
+            @SuppressWarnings("unchecked")
+            List<String> uploadIds = (List<String>) request.get("uploadIds");
+            if (uploadIds == null) {
+                throw new IllegalArgumentException("Se requiere la lista uploadIds");
+            }
+
+            Map<String, String> errors = new LinkedHashMap<>();
+            Map<String, PdfMetadata> committed = masterService.commitUploadSessions(uploadIds, errors);
+
+            List<Map<String, Object>> published = new ArrayList<>();
+            committed.forEach((uploadId, metadata) -> {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("uploadId", uploadId);
+                entry.put("pdfId", metadata.getPdfId());
+                entry.put("size", metadata.getSize());
+                entry.put("version", metadata.getVersion());
+                entry.put("timestamp", metadata.getTimestamp());
+                published.add(entry);
+            });
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "success");
+            response.put("committed", published);
+            response.put("errors", toErrorList("uploadId", errors));
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    private List<Map<String, Object>> toErrorList(String keyName, Map<String, String> errors) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        errors.forEach((key, message) -> {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put(keyName, key);
+            entry.put("message", message);
+            list.add(entry);
+        });
+        return list;
+    }
+
+    /**
+     * Estado de una sesión de upload: réplicas confirmadas y chunks pendientes
+     */
+    @GetMapping("/upload/session/{uploadId}")
+    public ResponseEntity<Map<String, Object>> getUploadSession(@PathVariable String uploadId) {
+        try {
+            UploadSession session = masterService.getUploadSession(uploadId);
+            return ResponseEntity.ok(toSessionResponse(session));
+
+        } catch (RuntimeException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+    }
+
+    /**
+     * Confirma réplicas escritas de uno o varios chunks de la sesión
+     */
+    @PostMapping("/upload/session/{uploadId}/chunks")
+    public ResponseEntity<Map<String, Object>> confirmUploadChunks(@PathVariable String uploadId,
+                                                                   @RequestBody Map<String, Object> request) {
+        try {
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> acks = (List<Map<String, Object>>) request.get("chunks");
+
+            UploadSession session = masterService.confirmUploadChunks(uploadId, acks);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "success");
+            response.put("uploadId", uploadId);
+            response.put("missingChunks", session.getMissingChunks());
+            return ResponseEntity.ok(response);
+
+        } catch (RuntimeException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+    }
+
+    /**
+     * Informa las réplicas que la cadena de replicación escribió después del quórum
+     * Body: {pdfId, chunkIndex, stored: [chunkserverUrl, ...], failed: [chunkserverUrl, ...]}
+     */
+    @PostMapping("/upload/session/{uploadId}/deferred-replicas")
+    public ResponseEntity<Map<String, String>> reportDeferredReplicas(@PathVariable String uploadId,
+                                                                      @RequestBody Map<String, Object> request) {
+        Map<String, String> response = new HashMap<>();
+        try {
+            String pdfId = (String) request.get("pdfId");
+            int chunkIndex = ((Number) request.get("chunkIndex")).intValue();
+            @SuppressWarnings("unchecked")
+            List<String> stored = (List<String>) request.getOrDefault("stored", List.of());
+            @SuppressWarnings("unchecked")
+            List<String> failed = (List<String>) request.getOrDefault("failed", List.of());
+
+            masterService.reportDeferredReplicas(uploadId, pdfId, chunkIndex, stored, failed);
+
+            response.put("status", "success");
+            response.put("message", "Réplicas diferidas registradas");
+            return ResponseEntity.ok(response);
+
+        } catch (RuntimeException e) {
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+    }
+
+    /**
+     * Confirma la sesión: verifica que cada chunk tenga sus réplicas y publica el PDF
+     * Responde 409 con los chunks pendientes si la sesión está incompleta
+     */
+    @PostMapping("/upload/session/{uploadId}/commit")
+    public ResponseEntity<Map<String, Object>> commitUploadSession(@PathVariable String uploadId) {
+        try {
+            PdfMetadata metadata = masterService.commitUploadSession(uploadId);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "success");
+            response.put("uploadId", uploadId);
+            response.put("pdfId", metadata.getPdfId());
+            response.put("size", metadata.getSize());
+            response.put("version", metadata.getVersion());
+            response.put("timestamp", metadata.getTimestamp());
+            return ResponseEntity.ok(response);
+
+        } catch (MasterService.IncompleteSessionException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            error.put("uploadId", uploadId);
+            error.put("missingChunks", e.getMissingChunks());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+
+        } catch (RuntimeException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+    }
+
+    /**
+     * Cancela una sesión de upload
+     */
+    @DeleteMapping("/upload/session/{uploadId}")
+    public ResponseEntity<Map<String, String>> abortUploadSession(@PathVariable String uploadId) {
+        masterService.abortUploadSession(uploadId);
+
+        Map<String, String> response = new HashMap<>();
+        response.put("status", "success");
+        response.put("message", "Sesión de upload cancelada");
+        return ResponseEntity.ok(response);
+    }
+
+    private Map<String, Object> toSessionResponse(UploadSession session) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "success");
+        response.put("uploadId", session.getUploadId());
+        response.put("pdfId", session.getPdfId());
+        response.put("size", session.getSize());
+        response.put("totalChunks", session.getTotalChunks());
+        response.put("chunks", session.getPlan());
+        response.put("confirmed", session.getConfirmed());
+        response.put("missingChunks", session.getMissingChunks());
+        response.put("alreadyStored", session.getAlreadyStored());
+        response.put("writeQuorum", session.getWriteQuorum());
+        response.put("committed", session.isCommitted());
+        if (session.isCommitted()) {
+            response.put("timestamp", masterService.getMetadata(session.getPdfId()).getTimestamp());
+        }
+        return response;
+    }
+
     /**
      * Obtiene metadatos de un PDF (ubicaciones de chunks)
+     * Responde 304 si el ETag del cliente sigue vigente
      */
     @GetMapping("/metadata/{pdfId}")
-    public ResponseEntity<Map<String, Object>> getMetadata(@PathVariable String pdfId) {
+    public ResponseEntity<Map<String, Object>> getMetadata(
+            @PathVariable String pdfId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
             PdfMetadata metadata = masterService.getMetadata(pdfId);
+            String etag = buildEtag(metadata);
+
+            if (etag.equals(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
 
             Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
             response.put("pdfId", metadata.getPdfId());
             response.put("size", metadata.getSize());
             response.put("chunks", metadata.getChunks());
+            response.put("version", metadata.getVersion());
+            response.put("timestamp", metadata.getTimestamp());
 
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok().eTag(etag).body(response);
 
         } catch (RuntimeException e) {
             Map<String, Object> error = new HashMap<>();
@@ -83,6 +380,19 @@ public class MasterController {
         }
     }
 
+    /**
+     * Construye el ETag de los metadatos
+     * Combina la versión con las réplicas visibles, que dependen de la salud de los servidores
+     */
+    private String buildEtag(PdfMetadata metadata) {
+        int locationsHash = metadata.getChunks().stream()
+                .map(chunk -> chunk.getChunkIndex() + "@" + chunk.getChunkserverUrl())
+                .collect(Collectors.toList())
+                .hashCode();
+
+        return "\"" + metadata.getVersion() + "-" + Integer.toHexString(locationsHash) + "\"";
+    }
+
     /**
      * Recibe heartbeats de chunkservers
      */
@@ -141,9 +451,41 @@ public class MasterController {
     @GetMapping("/status")
     public ResponseEntity<Map<String, Object>> getStatus() {
         Map<String, Object> status = masterService.getSystemStatus();
+        status.put("httpPool", httpTransport.getPoolStats());
+        status.put("integrity", integrityMonitor.getStats());
         return ResponseEntity.ok(status);
     }
 
+    /**
+     * Recibe en lote las réplicas que los clientes no pudieron leer
+     * Cada una se verifica y repara de forma dirigida en segundos, sin esperar
+     * a la próxima verificación completa de integridad
+     */
+    @PostMapping("/report-bad-replica")
+    public ResponseEntity<Map<String, Object>> reportBadReplicas(@RequestBody Map<String, Object> request) {
+        try {
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> reports = (List<Map<String, Object>>) request.get("reports");
+            if (reports == null) {
+                throw new IllegalArgumentException("Se requiere la lista reports");
+            }
+
+            int accepted = integrityMonitor.reportBadReplicas(reports);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "success");
+            response.put("received", reports.size());
+            response.put("accepted", accepted);
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+        }
+    }
+
     /**
      * Lista todos los PDFs almacenados
      */
@@ -173,4 +515,108 @@ public class MasterController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
         }
     }
+
+    /**
+     * Registra una réplica que el cliente terminó de escribir después del commit por quórum
+     * Body: {chunkIndex, chunkserverUrl}; responde 409 si la réplica ya no estaba pendiente
+     */
+    @PostMapping("/pdf/{pdfId}/replica")
+    public ResponseEntity<Map<String, String>> completePendingReplica(@PathVariable String pdfId,
+                                                                      @RequestBody Map<String, Object> request) {
+        int chunkIndex = ((Number) request.get("chunkIndex")).intValue();
+        String chunkserverUrl = (String) request.get("chunkserverUrl");
+
+        Map<String, String> response = new HashMap<>();
+        if (!masterService.completePendingReplica(pdfId, chunkIndex, chunkserverUrl)) {
+            response.put("status", "error");
+            response.put("message", "La réplica no está pendiente");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+
+        response.put("status", "success");
+        response.put("message", "Réplica registrada");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Descarta una réplica pendiente cuya escritura falló; el IntegrityMonitor la repone
+     */
+    @DeleteMapping("/pdf/{pdfId}/replica")
+    public ResponseEntity<Map<String, String>> abandonPendingReplica(@PathVariable String pdfId,
+                                                                     @RequestParam int chunkIndex,
+                                                                     @RequestParam String chunkserverUrl) {
+        masterService.abandonPendingReplica(pdfId, chunkIndex, chunkserverUrl);
+
+        Map<String, String> response = new HashMap<>();
+        response.put("status", "success");
+        response.put("message", "Réplica pendiente descartada");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Guarda el índice de páginas calculado por el cliente al subir el PDF
+     * Responde 409 si el índice corresponde a otra versión del PDF
+     */
+    @PutMapping("/pdf/{pdfId}/pages")
+    public ResponseEntity<Map<String, String>> savePageIndex(@PathVariable String pdfId,
+                                                             @RequestBody PageIndex pageIndex) {
+        Map<String, String> response = new HashMap<>();
+        try {
+            masterService.savePageIndex(pdfId, pageIndex);
+            response.put("status", "success");
+            response.put("message", "Índice de páginas guardado");
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalStateException e) {
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+
+        } catch (IllegalArgumentException e) {
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+
+        } catch (RuntimeException e) {
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+    }
+
+    /**
+     * Rangos de bytes de una página (1..pageCount)
+     * Responde 404 si el PDF no tiene índice de páginas
+     */
+    @GetMapping("/pdf/{pdfId}/pages/{pageNumber}")
+    public ResponseEntity<Map<String, Object>> getPageRanges(@PathVariable String pdfId,
+                                                             @PathVariable int pageNumber) {
+        PageIndex pageIndex = masterService.getPageIndex(pdfId);
+        if (pageIndex == null) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", "Índice de páginas no disponible: " + pdfId);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+        if (pageNumber < 1 || pageNumber > pageIndex.getPageCount()) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", "Página fuera de rango (1-" + pageIndex.getPageCount() + ")");
+            error.put("pageCount", pageIndex.getPageCount());
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        PageIndex.PageEntry page = pageIndex.getPages().get(pageNumber - 1);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "success");
+        response.put("pdfId", pdfId);
+        response.put("timestamp", pageIndex.getTimestamp());
+        response.put("pageNumber", pageNumber);
+        response.put("pageCount", pageIndex.getPageCount());
+        response.put("objectNumber", page.getObjectNumber());
+        response.put("generation", page.getGeneration());
+        response.put("ranges", pageIndex.rangesForPage(pageNumber));
+        return ResponseEntity.ok(response);
+    }
 }
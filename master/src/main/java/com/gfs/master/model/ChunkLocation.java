@@ -1,9 +1,12 @@
 package com.gfs.master.model;
 
 public class ChunkLocation {
+    public static final String CAS_PREFIX = "cas_";
+
     private int chunkIndex;
     private String chunkserverUrl;
     private int replicaIndex;
+    private String contentHash;
 
     public ChunkLocation() {
     }
@@ -14,6 +17,26 @@ public class ChunkLocation {
         this.replicaIndex = replicaIndex;
     }
 
+    public ChunkLocation(int chunkIndex, String chunkserverUrl, int replicaIndex, String contentHash) {
+        this(chunkIndex, chunkserverUrl, replicaIndex);
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Identificador con el que el chunk se guarda en el chunkserver
+     * Los chunks direccionados por contenido se comparten entre PDFs como cas_<hash>
+     */
+    public String storageId(String pdfId) {
+        return contentHash != null ? CAS_PREFIX + contentHash : pdfId;
+    }
+
+    /**
+     * Índice con el que el chunk se guarda en el chunkserver
+     */
+    public int storageIndex() {
+        return contentHash != null ? 0 : chunkIndex;
+    }
+
     // Getters y Setters
     public int getChunkIndex() {
         return chunkIndex;
@@ -39,12 +62,21 @@ public class ChunkLocation {
         this.replicaIndex = replicaIndex;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
     @Override
     public String toString() {
         return "ChunkLocation{" +
                "chunkIndex=" + chunkIndex +
                ", chunkserverUrl='" + chunkserverUrl + '\'' +
                ", replicaIndex=" + replicaIndex +
+               ", contentHash='" + contentHash + '\'' +
                '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,117 @@
+package com.gfs.master.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Índice de páginas de un PDF
+ * Para cada página guarda el objeto de la página y los rangos de bytes
+ * [inicio, fin) de los objetos que la componen; baseRanges son los rangos
+ * que toda página necesita (cabecera, tabla de referencias cruzadas, catálogo).
+ * Vale para la versión de los metadatos con el mismo timestamp
+ */
+public class PageIndex {
+    private String pdfId;
+    private long timestamp;
+    private List<long[]> baseRanges;
+    private List<PageEntry> pages;
+
+    public PageIndex() {
+        this.baseRanges = new ArrayList<>();
+        this.pages = new ArrayList<>();
+    }
+
+    /**
+     * Rangos de bytes necesarios para leer una página (1..pageCount), ordenados y fusionados
+     */
+    public List<long[]> rangesForPage(int pageNumber) {
+        List<long[]> ranges = new ArrayList<>(baseRanges);
+        ranges.addAll(pages.get(pageNumber - 1).getRanges());
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+
+        List<long[]> merged = new ArrayList<>();
+        for (long[] range : ranges) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range[0] <= last[1]) {
+                last[1] = Math.max(last[1], range[1]);
+            } else {
+                merged.add(new long[]{range[0], range[1]});
+            }
+        }
+        return merged;
+    }
+
+    @JsonIgnore
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    // Getters y Setters
+    public String getPdfId() {
+        return pdfId;
+    }
+
+    public void setPdfId(String pdfId) {
+        this.pdfId = pdfId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public List<long[]> getBaseRanges() {
+        return baseRanges;
+    }
+
+    public void setBaseRanges(List<long[]> baseRanges) {
+        this.baseRanges = baseRanges;
+    }
+
+    public List<PageEntry> getPages() {
+        return pages;
+    }
+
+    public void setPages(List<PageEntry> pages) {
+        this.pages = pages;
+    }
+
+    /**
+     * Entrada de una página: número de objeto y rangos de sus objetos
+     */
+    public static class PageEntry {
+        private long objectNumber;
+        private int generation;
+        private List<long[]> ranges = new ArrayList<>();
+
+        public long getObjectNumber() {
+            return objectNumber;
+        }
+
+        public void setObjectNumber(long objectNumber) {
+            this.objectNumber = objectNumber;
+        }
+
+        public int getGeneration() {
+            return generation;
+        }
+
+        public void setGeneration(int generation) {
+            this.generation = generation;
+        }
+
+        public List<long[]> getRanges() {
+            return ranges;
+        }
+
+        public void setRanges(List<long[]> ranges) {
+            this.ranges = ranges;
+        }
+    }
+}
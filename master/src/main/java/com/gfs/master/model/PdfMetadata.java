@@ -8,6 +8,7 @@ public class PdfMetadata {
     private long size;
     private List<ChunkLocation> chunks;
     private long timestamp;
+    private long version;
 
     public PdfMetadata() {
         this.chunks = new ArrayList<>();
@@ -52,4 +53,12 @@ public class PdfMetadata {
     public void setTimestamp(long timestamp) {
         this.timestamp = timestamp;
     }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
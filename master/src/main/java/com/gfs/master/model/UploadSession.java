@@ -0,0 +1,202 @@
+package com.gfs.master.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sesión de upload reanudable
+ * Guarda el plan de réplicas y las réplicas ya confirmadas por el cliente;
+ * los metadatos del PDF solo se publican al confirmar (commit) la sesión
+ */
+public class UploadSession {
+    private String uploadId;
+    private String pdfId;
+    private long size;
+    private int totalChunks;
+    private List<ChunkLocation> plan;
+    private Map<Integer, Set<String>> confirmed;
+    private List<Integer> alreadyStored;
+    private int writeQuorum;
+    private boolean committed;
+    private long createdAt;
+    private long lastActivity;
+
+    public UploadSession() {
+        this.plan = new ArrayList<>();
+        this.confirmed = new ConcurrentHashMap<>();
+        this.alreadyStored = new ArrayList<>();
+        this.createdAt = System.currentTimeMillis();
+        this.lastActivity = this.createdAt;
+    }
+
+    public UploadSession(String uploadId, String pdfId, long size, int totalChunks) {
+        this();
+        this.uploadId = uploadId;
+        this.pdfId = pdfId;
+        this.size = size;
+        this.totalChunks = totalChunks;
+    }
+
+    /**
+     * Réplicas planificadas para un chunk
+     */
+    public List<ChunkLocation> plannedReplicas(int chunkIndex) {
+        List<ChunkLocation> replicas = new ArrayList<>();
+        for (ChunkLocation location : plan) {
+            if (location.getChunkIndex() == chunkIndex) {
+                replicas.add(location);
+            }
+        }
+        return replicas;
+    }
+
+    /**
+     * Registra las réplicas escritas de un chunk; ignora servidores fuera del plan
+     */
+    public void confirm(int chunkIndex, List<String> chunkserverUrls) {
+        Set<String> planned = new LinkedHashSet<>();
+        plannedReplicas(chunkIndex).forEach(location -> planned.add(location.getChunkserverUrl()));
+
+        for (String url : chunkserverUrls) {
+            if (planned.contains(url)) {
+                confirmed.computeIfAbsent(chunkIndex, k -> ConcurrentHashMap.newKeySet()).add(url);
+            }
+        }
+        lastActivity = System.currentTimeMillis();
+    }
+
+    public boolean isConfirmed(int chunkIndex, String chunkserverUrl) {
+        Set<String> urls = confirmed.get(chunkIndex);
+        return urls != null && urls.contains(chunkserverUrl);
+    }
+
+    /**
+     * Réplicas confirmadas que necesita un chunk para el commit
+     * Con writeQuorum (0 = todas) el resto puede completarse después del commit
+     */
+    public int requiredReplicas(int chunkIndex) {
+        int planned = plannedReplicas(chunkIndex).size();
+        return writeQuorum > 0 ? Math.min(writeQuorum, planned) : planned;
+    }
+
+    /**
+     * Chunks a los que todavía les faltan réplicas para alcanzar el quórum de escritura
+     */
+    @JsonIgnore
+    public List<Integer> getMissingChunks() {
+        List<Integer> missing = new ArrayList<>();
+        for (int chunkIndex = 0; chunkIndex < totalChunks; chunkIndex++) {
+            int index = chunkIndex;
+            List<ChunkLocation> replicas = plannedReplicas(index);
+            long confirmedReplicas = replicas.stream()
+                    .filter(location -> isConfirmed(index, location.getChunkserverUrl()))
+                    .count();
+            boolean complete = !replicas.isEmpty() && confirmedReplicas >= requiredReplicas(index);
+            if (!complete) {
+                missing.add(index);
+            }
+        }
+        return missing;
+    }
+
+    // Getters y Setters
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public String getPdfId() {
+        return pdfId;
+    }
+
+    public void setPdfId(String pdfId) {
+        this.pdfId = pdfId;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public int getTotalChunks() {
+        return totalChunks;
+    }
+
+    public void setTotalChunks(int totalChunks) {
+        this.totalChunks = totalChunks;
+    }
+
+    public List<ChunkLocation> getPlan() {
+        return plan;
+    }
+
+    public void setPlan(List<ChunkLocation> plan) {
+        this.plan = plan;
+    }
+
+    public Map<Integer, Set<String>> getConfirmed() {
+        return confirmed;
+    }
+
+    public void setConfirmed(Map<Integer, Set<String>> confirmed) {
+        // Se serializa mientras otros hilos confirman chunks
+        this.confirmed = new ConcurrentHashMap<>();
+        confirmed.forEach((chunkIndex, urls) -> {
+            Set<String> copy = ConcurrentHashMap.newKeySet();
+            copy.addAll(urls);
+            this.confirmed.put(chunkIndex, copy);
+        });
+    }
+
+    public List<Integer> getAlreadyStored() {
+        return alreadyStored;
+    }
+
+    public void setAlreadyStored(List<Integer> alreadyStored) {
+        this.alreadyStored = alreadyStored;
+    }
+
+    public int getWriteQuorum() {
+        return writeQuorum;
+    }
+
+    public void setWriteQuorum(int writeQuorum) {
+        this.writeQuorum = writeQuorum;
+    }
+
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    public void setCommitted(boolean committed) {
+        this.committed = committed;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    public void setLastActivity(long lastActivity) {
+        this.lastActivity = lastActivity;
+    }
+}
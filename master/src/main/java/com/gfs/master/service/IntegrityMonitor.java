@@ -1,18 +1,27 @@
 package com.gfs.master.service;
 
+import com.gfs.master.config.RequestDeadline;
 import com.gfs.master.model.ChunkLocation;
 import com.gfs.master.model.PdfMetadata;
+import com.gfs.master.model.UploadSession;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -21,6 +30,7 @@ import java.util.stream.Collectors;
  * - Re-replicación automática proactiva
  * - Garbage collection de chunks huérfanos
  * - Eliminación de sobre-replicación
+ * - Reparación dirigida de las réplicas que los clientes no pudieron leer
  */
 @Service
 public class IntegrityMonitor {
@@ -31,7 +41,25 @@ public class IntegrityMonitor {
     @Value("${gfs.replication-factor:3}")
     private int REPLICATION_FACTOR;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Value("${gfs.integrity.pass-budget-ms:25000}")
+    private long PASS_BUDGET_MS;
+
+    // Reportes de réplicas defectuosas pendientes como máximo; el resto lo cubre la verificación periódica
+    @Value("${gfs.repair.max-queue:10000}")
+    private int MAX_REPAIR_QUEUE;
+
+    @Value("${gfs.repair.interval-ms:1000}")
+    private long REPAIR_INTERVAL_MS;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private WriteTokenService writeTokens;
+
+    // Cola de reparación dirigida: una entrada por réplica (pdf, chunk, servidor)
+    private final Map<String, BadReplica> repairQueue = new LinkedHashMap<>();
+    private ScheduledExecutorService repairWorker;
 
     // Estadísticas
     private long totalRepairs = 0;
@@ -39,6 +67,168 @@ public class IntegrityMonitor {
     private long totalGarbageCollected = 0;
     private long totalReReplications = 0;
     private long totalOverReplicasRemoved = 0;
+    private final AtomicLong badReplicaReports = new AtomicLong();
+    private final AtomicLong reportsDropped = new AtomicLong();
+    private final AtomicLong targetedRepairs = new AtomicLong();
+    private final AtomicLong reportsHealthy = new AtomicLong();
+
+    /**
+     * La reparación dirigida corre en su propio hilo: los @Scheduled comparten uno solo
+     * y una verificación completa la retrasaría hasta 30 segundos
+     */
+    @PostConstruct
+    public void init() {
+        repairWorker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "gfs-read-repair");
+            thread.setDaemon(true);
+            return thread;
+        });
+        repairWorker.scheduleWithFixedDelay(this::processRepairQueue,
+                REPAIR_INTERVAL_MS, REPAIR_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        repairWorker.shutdownNow();
+    }
+
+    /**
+     * Encola réplicas que un cliente no pudo leer (404, 5xx o datos incompletos)
+     * Los reportes repetidos de la misma réplica se fusionan
+     * Retorna cuántos reportes se aceptaron
+     */
+    public int reportBadReplicas(List<Map<String, Object>> reports) {
+        int accepted = 0;
+        synchronized (repairQueue) {
+            for (Map<String, Object> report : reports) {
+                String pdfId = (String) report.get("pdfId");
+                String chunkserverUrl = (String) report.get("chunkserverUrl");
+                Object chunkIndex = report.get("chunkIndex");
+                if (pdfId == null || chunkserverUrl == null || !(chunkIndex instanceof Number)) {
+                    throw new IllegalArgumentException("Reporte incompleto: se requieren pdfId, chunkIndex y chunkserverUrl");
+                }
+
+                BadReplica badReplica = new BadReplica(pdfId, ((Number) chunkIndex).intValue(),
+                        chunkserverUrl, String.valueOf(report.getOrDefault("reason", "desconocido")));
+                badReplicaReports.incrementAndGet();
+
+                if (repairQueue.containsKey(badReplica.key())) {
+                    accepted++;
+                } else if (repairQueue.size() < MAX_REPAIR_QUEUE) {
+                    repairQueue.put(badReplica.key(), badReplica);
+                    accepted++;
+                } else {
+                    reportsDropped.incrementAndGet();
+                }
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Atiende la cola de reparación dirigida: solo se revisa la réplica reportada,
+     * sin recorrer el resto del sistema
+     */
+    private void processRepairQueue() {
+        synchronized (repairQueue) {
+            if (repairQueue.isEmpty()) {
+                return;
+            }
+        }
+
+        runWithBudget("Reparación dirigida", () -> {
+            BadReplica next;
+            while ((next = pollRepairQueue()) != null) {
+                try {
+                    repairReported(next);
+                } catch (RequestDeadline.ExceededException e) {
+                    // Queda para la próxima pasada
+                    synchronized (repairQueue) {
+                        repairQueue.putIfAbsent(next.key(), next);
+                    }
+                    throw e;
+                } catch (Exception e) {
+                    System.err.println("   ⚠️  Error en reparación dirigida de " + next.key() + ": " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    private BadReplica pollRepairQueue() {
+        synchronized (repairQueue) {
+            Iterator<BadReplica> iterator = repairQueue.values().iterator();
+            if (!iterator.hasNext()) {
+                return null;
+            }
+            BadReplica next = iterator.next();
+            iterator.remove();
+            return next;
+        }
+    }
+
+    /**
+     * Verifica la réplica reportada leyéndola del chunkserver y, si falta o no coincide
+     * con su hash de contenido, la repara desde otra réplica
+     */
+    private void repairReported(BadReplica report) {
+        PdfMetadata pdf = masterService.getMetadata(report.pdfId());
+        List<ChunkLocation> replicas = pdf.getChunks().stream()
+                .filter(c -> c.getChunkIndex() == report.chunkIndex())
+                .collect(Collectors.toList());
+        ChunkLocation target = replicas.stream()
+                .filter(c -> c.getChunkserverUrl().equals(report.chunkserverUrl()))
+                .findFirst()
+                .orElse(null);
+
+        // Sin réplica registrada en ese servidor (o servidor caído) no hay nada que reparar aquí:
+        // la re-replicación periódica repone el factor
+        if (target == null) {
+            return;
+        }
+
+        String storageId = target.storageId(report.pdfId());
+        int storageIndex = target.storageIndex();
+
+        if (replicaIntact(storageId, storageIndex, target.getContentHash(), report.chunkserverUrl())) {
+            reportsHealthy.incrementAndGet();
+            System.out.println("   🩺 Réplica reportada sana (fallo transitorio): " + report.key() +
+                               " [" + report.reason() + "]");
+            return;
+        }
+
+        System.out.println("\n   🚑 Reparación dirigida:");
+        System.out.println("      PDF: " + report.pdfId());
+        System.out.println("      Chunk: " + report.chunkIndex());
+        System.out.println("      Servidor: " + report.chunkserverUrl());
+        System.out.println("      Motivo: " + report.reason());
+
+        if (repairChunk(storageId, storageIndex, report.chunkserverUrl(), replicas)) {
+            targetedRepairs.incrementAndGet();
+        }
+    }
+
+    /**
+     * Una réplica está sana si se puede leer y, para chunks direccionados por contenido,
+     * si sus bytes coinciden con el hash
+     */
+    private boolean replicaIntact(String storageId, int storageIndex, String contentHash, String chunkserverUrl) {
+        byte[] data;
+        try {
+            data = readChunk(storageId, storageIndex, chunkserverUrl);
+        } catch (Exception e) {
+            RequestDeadline.check("lectura de chunk " + storageIndex + " en " + chunkserverUrl);
+            return false;
+        }
+        return contentHash == null || contentHash.equals(sha256(data));
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (Exception e) {
+            throw new RuntimeException("SHA-256 no disponible", e);
+        }
+    }
 
     /**
      * Verifica integridad cada 30 segundos
@@ -46,6 +236,10 @@ public class IntegrityMonitor {
      */
     @Scheduled(fixedDelay = 30000, initialDelay = 10000)
     public void checkIntegrity() {
+        runWithBudget("Verificación de integridad", this::verifyIntegrity);
+    }
+
+    private void verifyIntegrity() {
         totalChecks++;
 
         System.out.println("\n╔════════════════════════════════════════════════════════╗");
@@ -81,7 +275,8 @@ public class IntegrityMonitor {
                         continue; // Servidor caído, skip
                     }
 
-                    if (!chunkExists(pdf.getPdfId(), chunkIndex, replica.getChunkserverUrl())) {
+                    if (!chunkExists(replica.storageId(pdf.getPdfId()), replica.storageIndex(),
+                            replica.getChunkserverUrl())) {
                         System.out.println("   ❌ Chunk faltante detectado:");
                         System.out.println("      PDF: " + pdf.getPdfId());
                         System.out.println("      Chunk: " + chunkIndex);
@@ -90,7 +285,8 @@ public class IntegrityMonitor {
                         issuesFound++;
 
                         // Intentar reparar
-                        if (repairChunk(pdf.getPdfId(), chunkIndex, replica.getChunkserverUrl(), replicas)) {
+                        if (repairChunk(replica.storageId(pdf.getPdfId()), replica.storageIndex(),
+                                replica.getChunkserverUrl(), replicas)) {
                             issuesRepaired++;
                             totalRepairs++;
                         }
@@ -117,6 +313,10 @@ public class IntegrityMonitor {
      */
     @Scheduled(fixedDelay = 60000, initialDelay = 20000)
     public void checkReplicationFactor() {
+        runWithBudget("Verificación de replicación", this::verifyReplicationFactor);
+    }
+
+    private void verifyReplicationFactor() {
         System.out.println("\n╔════════════════════════════════════════════════════════╗");
         System.out.println("║  📦 VERIFICACIÓN DE FACTOR DE REPLICACIÓN             ║");
         System.out.println("╚════════════════════════════════════════════════════════╝");
@@ -136,6 +336,7 @@ public class IntegrityMonitor {
         List<PdfMetadata> allPdfs = masterService.listAllPdfs();
         int chunksUnderReplicated = 0;
         int chunksOverReplicated = 0;
+        int chunksLagging = 0;
         int replicasCreated = 0;
         int replicasRemoved = 0;
 
@@ -149,14 +350,24 @@ public class IntegrityMonitor {
                 // Contar réplicas activas (en servidores saludables Y que existen físicamente)
                 List<ChunkLocation> activeReplicas = replicas.stream()
                         .filter(r -> healthyServers.contains(r.getChunkserverUrl()))
-                        .filter(r -> chunkExists(pdf.getPdfId(), chunkIndex, r.getChunkserverUrl()))
+                        .filter(r -> chunkExists(r.storageId(pdf.getPdfId()), r.storageIndex(),
+                                r.getChunkserverUrl()))
                         .collect(Collectors.toList());
 
                 int targetReplicas = Math.min(REPLICATION_FACTOR, healthyServers.size());
 
+                // Réplicas que el cliente sigue escribiendo tras un commit por quórum
+                Set<String> pendingServers = masterService.getPendingReplicaServers(pdf.getPdfId(), chunkIndex);
+                pendingServers.retainAll(healthyServers);
+
+                // Las réplicas pendientes completarán el factor: no hay nada que reponer
+                if (activeReplicas.size() < targetReplicas &&
+                        activeReplicas.size() + pendingServers.size() >= targetReplicas) {
+                    chunksLagging++;
+                }
                 // CASO 1: Sub-replicación (faltan réplicas)
-                if (activeReplicas.size() < targetReplicas) {
-                    int neededReplicas = targetReplicas - activeReplicas.size();
+                else if (activeReplicas.size() < targetReplicas) {
+                    int neededReplicas = targetReplicas - activeReplicas.size() - pendingServers.size();
 
                     System.out.println("   ⚠️  Chunk sub-replicado:");
                     System.out.println("      PDF: " + pdf.getPdfId());
@@ -166,8 +377,12 @@ public class IntegrityMonitor {
 
                     chunksUnderReplicated++;
 
-                    int created = replicateChunk(pdf.getPdfId(), chunkIndex,
-                            activeReplicas, neededReplicas, healthyServers);
+                    // Los servidores con réplica pendiente no se eligen como destino
+                    List<String> targetServers = new ArrayList<>(healthyServers);
+                    targetServers.removeAll(pendingServers);
+
+                    int created = replicateChunk(pdf.getPdfId(), chunkIndex, replicas.get(0).getContentHash(),
+                            activeReplicas, neededReplicas, targetServers);
                     replicasCreated += created;
                     totalReReplications += created;
                 }
@@ -209,6 +424,9 @@ public class IntegrityMonitor {
         } else {
             System.out.println("   ✅ Factor de replicación óptimo en todos los chunks");
         }
+        if (chunksLagging > 0) {
+            System.out.println("   ⏳ Chunks con réplicas en escritura (quórum): " + chunksLagging);
+        }
         System.out.println();
     }
 
@@ -234,8 +452,13 @@ public class IntegrityMonitor {
             String serverUrl = replicaToRemove.getChunkserverUrl();
 
             try {
+                // Una copia compartida con otros PDFs (contenido deduplicado) no se borra físicamente
+                String contentHash = replicaToRemove.getContentHash();
+                boolean shared = contentHash != null && masterService.isSharedReplica(contentHash, serverUrl);
+
                 // Eliminar físicamente del chunkserver
-                if (deleteChunkFromServer(pdfId, chunkIndex, serverUrl)) {
+                if (shared || deleteChunkFromServer(replicaToRemove.storageId(pdfId),
+                        replicaToRemove.storageIndex(), serverUrl)) {
                     // Eliminar de metadatos
                     masterService.removeChunkReplica(pdfId, chunkIndex, serverUrl);
 
@@ -259,6 +482,10 @@ public class IntegrityMonitor {
      */
     @Scheduled(fixedDelay = 120000, initialDelay = 45000)
     public void cleanupStaleMetadata() {
+        runWithBudget("Limpieza de metadatos", this::cleanStaleMetadata);
+    }
+
+    private void cleanStaleMetadata() {
         System.out.println("\n╔════════════════════════════════════════════════════════╗");
         System.out.println("║  🧹 LIMPIEZA DE METADATOS OBSOLETOS                   ║");
         System.out.println("╚════════════════════════════════════════════════════════╝");
@@ -286,7 +513,7 @@ public class IntegrityMonitor {
             for (ChunkLocation chunk : pdf.getChunks()) {
                 // Si el chunk apunta a un servidor no saludable Y no existe físicamente
                 if (unhealthyServers.contains(chunk.getChunkserverUrl())) {
-                    if (!chunkExists(pdf.getPdfId(), chunk.getChunkIndex(),
+                    if (!chunkExists(chunk.storageId(pdf.getPdfId()), chunk.storageIndex(),
                             chunk.getChunkserverUrl())) {
                         chunksToRemove.add(chunk);
                     }
@@ -323,6 +550,10 @@ public class IntegrityMonitor {
      */
     @Scheduled(fixedDelay = 300000, initialDelay = 60000)
     public void garbageCollection() {
+        runWithBudget("Garbage collection", this::collectGarbage);
+    }
+
+    private void collectGarbage() {
         System.out.println("\n╔════════════════════════════════════════════════════════╗");
         System.out.println("║  🗑️  GARBAGE COLLECTION                               ║");
         System.out.println("╚════════════════════════════════════════════════════════╝");
@@ -340,11 +571,20 @@ public class IntegrityMonitor {
 
         for (PdfMetadata pdf : allPdfs) {
             for (ChunkLocation chunk : pdf.getChunks()) {
-                String chunkId = pdf.getPdfId() + ":" + chunk.getChunkIndex();
+                // Los chunks deduplicados siguen siendo válidos mientras algún PDF los referencie
+                String chunkId = chunk.storageId(pdf.getPdfId()) + ":" + chunk.storageIndex();
                 validChunks.add(chunkId);
             }
         }
 
+        // Los chunks de uploads en curso todavía no figuran en los metadatos
+        masterService.expireUploadSessions();
+        for (UploadSession session : masterService.listUploadSessions()) {
+            for (ChunkLocation chunk : session.getPlan()) {
+                validChunks.add(chunk.storageId(session.getPdfId()) + ":" + chunk.storageIndex());
+            }
+        }
+
         System.out.println("   📝 Chunks válidos esperados: " + validChunks.size());
 
         int orphansFound = 0;
@@ -398,10 +638,28 @@ public class IntegrityMonitor {
         System.out.println();
     }
 
+    /**
+     * Ejecuta una pasada con presupuesto de tiempo
+     * Las llamadas a chunkservers llevan el plazo restante; agotado el presupuesto
+     * la pasada se corta y lo pendiente queda para la siguiente
+     */
+    private void runWithBudget(String pass, Runnable task) {
+        RequestDeadline.start(PASS_BUDGET_MS);
+        try {
+            task.run();
+        } catch (RequestDeadline.ExceededException e) {
+            System.out.println("   ⏱️  " + pass + " interrumpida tras " + PASS_BUDGET_MS +
+                               " ms; continúa en la próxima pasada");
+            System.out.println();
+        } finally {
+            RequestDeadline.clear();
+        }
+    }
+
     /**
      * Re-replica un chunk en nuevos servidores
      */
-    private int replicateChunk(String pdfId, int chunkIndex,
+    private int replicateChunk(String pdfId, int chunkIndex, String contentHash,
                                List<ChunkLocation> existingReplicas,
                                int neededReplicas,
                                List<String> healthyServers) {
@@ -433,15 +691,17 @@ public class IntegrityMonitor {
         }
 
         int created = 0;
+        String storageId = source.storageId(pdfId);
+        int storageIndex = source.storageIndex();
 
         try {
             // Leer chunk desde la fuente
-            byte[] chunkData = readChunk(pdfId, chunkIndex, source.getChunkserverUrl());
+            byte[] chunkData = readChunk(storageId, storageIndex, source.getChunkserverUrl());
 
             // Copiar a cada servidor destino
             for (String targetServer : targetServers) {
                 try {
-                    writeChunk(pdfId, chunkIndex, chunkData, targetServer);
+                    writeChunk(storageId, storageIndex, chunkData, targetServer);
 
                     // Calcular siguiente índice de réplica
                     int nextReplicaIndex = existingReplicas.stream()
@@ -450,7 +710,8 @@ public class IntegrityMonitor {
                                                    .orElse(-1) + 1;
 
                     // Actualizar metadatos en el Master
-                    ChunkLocation newReplica = new ChunkLocation(chunkIndex, targetServer, nextReplicaIndex);
+                    ChunkLocation newReplica = new ChunkLocation(chunkIndex, targetServer, nextReplicaIndex,
+                            contentHash);
                     masterService.addChunkReplica(pdfId, newReplica);
 
                     System.out.println("      ✅ Nueva réplica creada en: " + targetServer);
@@ -481,12 +742,15 @@ public class IntegrityMonitor {
 
             return response != null && Boolean.TRUE.equals(response.get("exists"));
         } catch (Exception e) {
+            // Sin presupuesto la falta de respuesta no prueba que el chunk falte
+            RequestDeadline.check("consulta de chunk " + chunkIndex + " en " + chunkserverUrl);
             return false;
         }
     }
 
     /**
      * Repara un chunk faltante copiándolo desde otra réplica
+     * Recibe el identificador físico del chunk (ver ChunkLocation.storageId)
      */
     private boolean repairChunk(String pdfId, int chunkIndex, String targetServer,
                                 List<ChunkLocation> replicas) {
@@ -523,37 +787,31 @@ public class IntegrityMonitor {
      * Lee un chunk desde un chunkserver
      */
     private byte[] readChunk(String pdfId, int chunkIndex, String chunkserverUrl) {
-        String url = chunkserverUrl + "/api/chunk/read?pdfId=" + pdfId +
-                     "&chunkIndex=" + chunkIndex;
+        byte[] data = restTemplate.getForObject(
+                chunkserverUrl + "/api/chunk/data/{pdfId}/{chunkIndex}",
+                byte[].class, pdfId, chunkIndex);
 
-        ResponseEntity<Map> response = restTemplate.getForEntity(url, Map.class);
-
-        if (!response.getStatusCode().is2xxSuccessful()) {
+        if (data == null) {
             throw new RuntimeException("Error leyendo chunk");
         }
 
-        Map<String, Object> body = response.getBody();
-        String base64Data = (String) body.get("data");
-
-        return Base64.getDecoder().decode(base64Data);
+        return data;
     }
 
     /**
      * Escribe un chunk a un chunkserver
      */
     private void writeChunk(String pdfId, int chunkIndex, byte[] data, String chunkserverUrl) {
-        String url = chunkserverUrl + "/api/chunk/write";
-
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-
-        Map<String, Object> request = new HashMap<>();
-        request.put("pdfId", pdfId);
-        request.put("chunkIndex", chunkIndex);
-        request.put("data", Base64.getEncoder().encodeToString(data));
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        if (writeTokens.isEnabled()) {
+            headers.set(WriteTokenService.TOKEN_HEADER,
+                    writeTokens.issue(pdfId, chunkIndex, data.length, chunkserverUrl));
+        }
 
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-        restTemplate.postForEntity(url, entity, String.class);
+        HttpEntity<byte[]> entity = new HttpEntity<>(data, headers);
+        restTemplate.postForEntity(chunkserverUrl + "/api/chunk/data/{pdfId}/{chunkIndex}",
+                entity, String.class, pdfId, chunkIndex);
     }
 
     /**
@@ -577,10 +835,14 @@ public class IntegrityMonitor {
      */
     private boolean deleteChunkFromServer(String pdfId, int chunkIndex, String chunkserverUrl) {
         try {
-            String url = chunkserverUrl + "/api/chunk/delete?pdfId=" + pdfId +
-                         "&chunkIndex=" + chunkIndex;
+            HttpHeaders headers = new HttpHeaders();
+            if (writeTokens.isEnabled()) {
+                headers.set(WriteTokenService.DELETE_TOKEN_HEADER,
+                        writeTokens.issueDelete(pdfId, chunkIndex, chunkserverUrl));
+            }
 
-            restTemplate.delete(url);
+            restTemplate.exchange(chunkserverUrl + "/api/chunk/delete?pdfId={pdfId}&chunkIndex={chunkIndex}",
+                    HttpMethod.DELETE, new HttpEntity<>(headers), String.class, pdfId, chunkIndex);
             return true;
         } catch (Exception e) {
             return false;
@@ -609,6 +871,22 @@ public class IntegrityMonitor {
         stats.put("totalReReplications", totalReReplications);
         stats.put("totalGarbageCollected", totalGarbageCollected);
         stats.put("totalOverReplicasRemoved", totalOverReplicasRemoved);
+        stats.put("badReplicaReports", badReplicaReports.get());
+        stats.put("badReplicaReportsDropped", reportsDropped.get());
+        stats.put("badReplicaReportsHealthy", reportsHealthy.get());
+        stats.put("targetedRepairs", targetedRepairs.get());
+        synchronized (repairQueue) {
+            stats.put("repairQueue", repairQueue.size());
+        }
         return stats;
     }
+
+    /**
+     * Réplica que un cliente no pudo leer
+     */
+    private record BadReplica(String pdfId, int chunkIndex, String chunkserverUrl, String reason) {
+        String key() {
+            return pdfId + ":" + chunkIndex + "@" + chunkserverUrl;
+        }
+    }
 }
\ No newline at end of file
@@ -2,7 +2,9 @@ package com.gfs.master.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.gfs.master.model.ChunkLocation;
+import com.gfs.master.model.PageIndex;
 import com.gfs.master.model.PdfMetadata;
+import com.gfs.master.model.UploadSession;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -14,6 +16,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,11 +31,30 @@ public class MasterService {
     @Value("${gfs.metadata-path:./metadata}")
     private String metadataPath;
 
+    @Value("${gfs.upload.session-ttl-ms:86400000}")
+    private long UPLOAD_SESSION_TTL_MS;
+
+    @Value("${gfs.upload.pending-replica-grace-ms:120000}")
+    private long PENDING_REPLICA_GRACE_MS;
+
     // Almacenamiento en memoria
     private final Map<String, PdfMetadata> pdfMetadataStore = new ConcurrentHashMap<>();
     private final Map<String, ChunkserverInfo> chunkservers = new ConcurrentHashMap<>();
+    private final Map<String, UploadSession> uploadSessions = new ConcurrentHashMap<>();
+
+    // Índices de páginas (rangos de bytes por página) de cada PDF
+    private final Map<String, PageIndex> pageIndexes = new ConcurrentHashMap<>();
+
+    // Réplicas que el cliente sigue escribiendo tras un commit por quórum: "pdfId:chunk" -> servidor -> réplica
+    private final Map<String, Map<String, PendingReplica>> pendingReplicas = new ConcurrentHashMap<>();
+
+    // Índice de contenido: hash de chunk -> réplicas y referencias (deduplicación)
+    private final Map<String, ContentEntry> contentIndex = new HashMap<>();
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    // Versión monótona de metadatos: cambia con cada mutación de réplicas
+    private final AtomicLong versionCounter = new AtomicLong(System.currentTimeMillis());
+
     @PostConstruct
     public void init() {
         System.out.println("\n========================================================");
@@ -52,6 +74,8 @@ public class MasterService {
                 System.out.println("[OK] Directorio de metadatos creado");
             }
             loadMetadata();
+            loadUploadSessions();
+            loadPageIndexes();
         } catch (IOException e) {
             System.err.println("[WARN] Error creando directorio de metadatos: " + e.getMessage());
         }
@@ -59,8 +83,25 @@ public class MasterService {
 
     /**
      * Planifica la subida de un PDF con balanceo de carga mejorado
+     * Los chunks cuyo hash ya está almacenado se agregan a alreadyStored
      */
-    public PdfMetadata planUpload(String pdfId, long size) {
+    public PdfMetadata planUpload(String pdfId, long size, List<String> chunkHashes,
+                                  Set<Integer> alreadyStored) {
+        PdfMetadata metadata = buildPlan(pdfId, size, chunkHashes, alreadyStored);
+
+        bumpVersion(metadata);
+        publishMetadata(metadata);
+
+        return metadata;
+    }
+
+    /**
+     * Calcula las ubicaciones de cada chunk sin publicar los metadatos
+     * Con hashes de contenido, los chunks conocidos reutilizan sus réplicas
+     * existentes (alreadyStored) y los repetidos dentro del archivo comparten plan
+     */
+    private PdfMetadata buildPlan(String pdfId, long size, List<String> chunkHashes,
+                                  Set<Integer> alreadyStored) {
         List<String> healthyServers = getHealthyChunkservers();
 
         if (healthyServers.isEmpty()) {
@@ -75,21 +116,49 @@ public class MasterService {
         int numChunks = (int) Math.ceil((double) size / CHUNK_SIZE);
         PdfMetadata metadata = new PdfMetadata(pdfId, size);
 
+        if (chunkHashes != null && chunkHashes.size() != numChunks) {
+            throw new IllegalArgumentException("Se esperaban " + numChunks + " hashes de chunk, llegaron " +
+                                               chunkHashes.size());
+        }
+        Map<String, List<String>> plannedByHash = new HashMap<>();
+
         System.out.println("   Distribuyendo chunks con balanceo de carga:");
 
         for (int i = 0; i < numChunks; i++) {
+            String contentHash = chunkHashes != null ? validateContentHash(chunkHashes.get(i)) : null;
+
+            if (contentHash != null) {
+                // Contenido ya almacenado: se reutilizan sus réplicas y no se envían bytes
+                List<String> stored = findStoredContent(contentHash, healthyServers);
+                if (!stored.isEmpty()) {
+                    addLocations(metadata, i, stored, contentHash);
+                    alreadyStored.add(i);
+                    System.out.println("      Chunk " + i + " -> ya almacenado en " + stored.size() + " réplicas");
+                    continue;
+                }
+
+                // Repetido dentro del mismo archivo: mismas réplicas que la primera aparición
+                List<String> planned = plannedByHash.get(contentHash);
+                if (planned != null) {
+                    addLocations(metadata, i, planned, contentHash);
+                    System.out.println("      Chunk " + i + " -> duplicado dentro del archivo");
+                    continue;
+                }
+            }
+
             // Usar balanceo de carga mejorado
             List<String> selectedServers = selectServersForChunkWithLoadBalancing(
                     healthyServers, i
             );
 
+            addLocations(metadata, i, selectedServers, contentHash);
+            if (contentHash != null) {
+                plannedByHash.put(contentHash, selectedServers);
+            }
+
             StringBuilder serversStr = new StringBuilder("[");
             for (int r = 0; r < selectedServers.size(); r++) {
-                String server = selectedServers.get(r);
-                ChunkLocation location = new ChunkLocation(i, server, r);
-                metadata.getChunks().add(location);
-
-                serversStr.append(extractServerId(server));
+                serversStr.append(extractServerId(selectedServers.get(r)));
                 if (r < selectedServers.size() - 1) serversStr.append(", ");
             }
             serversStr.append("]");
@@ -100,23 +169,342 @@ public class MasterService {
         // Mostrar distribución final
         showLoadDistribution(metadata);
 
-        pdfMetadataStore.put(pdfId, metadata);
-        saveMetadata();
-
         return metadata;
     }
 
+    private void addLocations(PdfMetadata metadata, int chunkIndex, List<String> servers, String contentHash) {
+        for (int r = 0; r < servers.size(); r++) {
+            metadata.getChunks().add(new ChunkLocation(chunkIndex, servers.get(r), r, contentHash));
+        }
+    }
+
+    /**
+     * Los hashes forman parte del nombre de archivo en los chunkservers: solo SHA-256 en hex
+     */
+    private String validateContentHash(String contentHash) {
+        if (contentHash == null || !contentHash.matches("[0-9a-f]{64}")) {
+            throw new IllegalArgumentException("Hash de chunk inválido: " + contentHash);
+        }
+        return contentHash;
+    }
+
+    /**
+     * Abre una sesión de upload reanudable
+     * El plan queda reservado en la sesión; el PDF no es visible hasta el commit
+     */
+    public UploadSession createUploadSession(String pdfId, long size, List<String> chunkHashes,
+                                             int writeQuorum) {
+        return openUploadSession(pdfId, size, chunkHashes, writeQuorum, true);
+    }
+
+    /**
+     * Abre las sesiones de upload de muchos archivos con una sola escritura a disco
+     * Cada archivo: {pdfId, size, chunkHashes}. Los que no se pueden planificar
+     * quedan en errors (pdfId -> motivo) sin afectar al resto del lote
+     */
+    public List<UploadSession> createUploadSessions(List<Map<String, Object>> files, int writeQuorum,
+                                                    Map<String, String> errors) {
+        List<UploadSession> sessions = new ArrayList<>();
+        boolean published = false;
+
+        for (Map<String, Object> file : files) {
+            String pdfId = (String) file.get("pdfId");
+            try {
+                if (pdfId == null || !(file.get("size") instanceof Number size)) {
+                    throw new IllegalArgumentException("Se requieren pdfId y size");
+                }
+                @SuppressWarnings("unchecked")
+                List<String> chunkHashes = (List<String>) file.get("chunkHashes");
+
+                UploadSession session = openUploadSession(pdfId, size.longValue(), chunkHashes, writeQuorum, false);
+                published |= session.isCommitted();
+                sessions.add(session);
+            } catch (RuntimeException e) {
+                errors.put(String.valueOf(pdfId), e.getMessage());
+            }
+        }
+
+        if (published) {
+            saveMetadata();
+        }
+        saveUploadSessions();
+
+        System.out.println("   [SESSION] Lote de uploads: " + sessions.size() + " sesiones abiertas, " +
+                           errors.size() + " con error");
+        return sessions;
+    }
+
+    private UploadSession openUploadSession(String pdfId, long size, List<String> chunkHashes,
+                                            int writeQuorum, boolean persist) {
+        Set<Integer> alreadyStored = new TreeSet<>();
+        PdfMetadata plan = buildPlan(pdfId, size, chunkHashes, alreadyStored);
+        int totalChunks = (int) Math.ceil((double) size / CHUNK_SIZE);
+
+        UploadSession session = new UploadSession(UUID.randomUUID().toString(), pdfId, size, totalChunks);
+        session.setPlan(plan.getChunks());
+        session.setAlreadyStored(new ArrayList<>(alreadyStored));
+        session.setWriteQuorum(Math.max(0, Math.min(writeQuorum, REPLICATION_FACTOR)));
+
+        // Los chunks ya almacenados quedan confirmados desde el inicio
+        for (int chunkIndex : alreadyStored) {
+            session.confirm(chunkIndex, session.plannedReplicas(chunkIndex).stream()
+                    .map(ChunkLocation::getChunkserverUrl)
+                    .collect(Collectors.toList()));
+        }
+
+        uploadSessions.put(session.getUploadId(), session);
+
+        System.out.println("   [SESSION] Upload abierto: " + session.getUploadId() +
+                           " (" + pdfId + ", " + totalChunks + " chunks, " +
+                           alreadyStored.size() + " ya almacenados)");
+
+        // Un archivo cuyo contenido ya existe completo se publica en la misma llamada
+        if (totalChunks > 0 && session.getMissingChunks().isEmpty()) {
+            commitUploadSession(session.getUploadId(), persist);
+        } else if (persist) {
+            saveUploadSessions();
+        }
+        return session;
+    }
+
+    /**
+     * Obtiene una sesión de upload para reanudarla
+     * Las réplicas pendientes asignadas a servidores caídos se re-planifican
+     */
+    public UploadSession getUploadSession(String uploadId) {
+        UploadSession session = findUploadSession(uploadId);
+
+        synchronized (session) {
+            if (replanReplicas(session, Collections.emptyMap())) {
+                saveUploadSessions();
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Registra las réplicas que el cliente ya escribió
+     * Cada entrada: {chunkIndex, replicas: [chunkserverUrl, ...], failed: [chunkserverUrl, ...]}
+     * Las réplicas fallidas se re-planifican para el siguiente reintento
+     */
+    public UploadSession confirmUploadChunks(String uploadId, List<Map<String, Object>> acks) {
+        UploadSession session = findUploadSession(uploadId);
+
+        synchronized (session) {
+            Map<Integer, Set<String>> failedWrites = new HashMap<>();
+            for (Map<String, Object> ack : acks) {
+                int chunkIndex = ((Number) ack.get("chunkIndex")).intValue();
+                @SuppressWarnings("unchecked")
+                List<String> replicas = (List<String>) ack.get("replicas");
+                if (replicas != null) {
+                    session.confirm(chunkIndex, replicas);
+                }
+                @SuppressWarnings("unchecked")
+                List<String> failed = (List<String>) ack.get("failed");
+                if (failed != null && !failed.isEmpty()) {
+                    failedWrites.put(chunkIndex, new HashSet<>(failed));
+                }
+            }
+            if (!failedWrites.isEmpty()) {
+                replanReplicas(session, failedWrites);
+            }
+        }
+        saveUploadSessions();
+        return session;
+    }
+
+    /**
+     * Confirma la sesión y publica los metadatos del PDF
+     * Falla si algún chunk no alcanza el quórum de escritura; solo se publican
+     * las réplicas confirmadas y el resto queda pendiente hasta que el cliente lo informe
+     */
+    public PdfMetadata commitUploadSession(String uploadId) {
+        return commitUploadSession(uploadId, true);
+    }
+
+    /**
+     * Confirma muchas sesiones con una sola escritura de los metadatos
+     * Retorna los PDFs publicados por uploadId; las sesiones incompletas o desconocidas
+     * quedan en errors (uploadId -> motivo) y siguen abiertas para reintentarse
+     */
+    public Map<String, PdfMetadata> commitUploadSessions(List<String> uploadIds, Map<String, String> errors) {
+        Map<String, PdfMetadata> committed = new LinkedHashMap<>();
+        for (String uploadId : uploadIds) {
+            try {
+                committed.put(uploadId, commitUploadSession(uploadId, false));
+            } catch (RuntimeException e) {
+                errors.put(uploadId, e.getMessage());
+            }
+        }
+
+        if (!committed.isEmpty()) {
+            saveMetadata();
+            saveUploadSessions();
+        }
+
+        System.out.println("   [SESSION] Lote confirmado: " + committed.size() + " PDFs publicados, " +
+                           errors.size() + " pendientes");
+        return committed;
+    }
+
+    private PdfMetadata commitUploadSession(String uploadId, boolean persist) {
+        UploadSession session = findUploadSession(uploadId);
+
+        synchronized (session) {
+            // Otra confirmación concurrente ya la publicó y la quitó de las sesiones abiertas
+            if (session.isCommitted()) {
+                throw new RuntimeException("Sesión de upload no encontrada: " + uploadId);
+            }
+            List<Integer> missing = session.getMissingChunks();
+            if (!missing.isEmpty()) {
+                throw new IncompleteSessionException(missing);
+            }
+
+            PdfMetadata metadata = new PdfMetadata(session.getPdfId(), session.getSize());
+            List<ChunkLocation> pending = new ArrayList<>();
+            for (ChunkLocation location : session.getPlan()) {
+                if (session.isConfirmed(location.getChunkIndex(), location.getChunkserverUrl())) {
+                    metadata.getChunks().add(location);
+                } else {
+                    pending.add(location);
+                }
+            }
+
+            bumpVersion(metadata);
+            publishMetadata(metadata, persist);
+            registerPendingReplicas(metadata.getPdfId(), pending);
+
+            session.setCommitted(true);
+            uploadSessions.remove(uploadId);
+            if (persist) {
+                saveUploadSessions();
+            }
+
+            System.out.println("   [SESSION] Upload confirmado: " + uploadId + " -> " + session.getPdfId());
+            return metadata;
+        }
+    }
+
+    /**
+     * Cancela una sesión; sus chunks quedan huérfanos para el garbage collector
+     */
+    public void abortUploadSession(String uploadId) {
+        if (uploadSessions.remove(uploadId) != null) {
+            saveUploadSessions();
+            System.out.println("   [SESSION] Upload cancelado: " + uploadId);
+        }
+    }
+
+    /**
+     * Lista las sesiones de upload abiertas
+     */
+    public List<UploadSession> listUploadSessions() {
+        return new ArrayList<>(uploadSessions.values());
+    }
+
+    /**
+     * Descarta sesiones sin actividad durante más de UPLOAD_SESSION_TTL_MS
+     */
+    public int expireUploadSessions() {
+        long cutoff = System.currentTimeMillis() - UPLOAD_SESSION_TTL_MS;
+        List<String> expired = uploadSessions.values().stream()
+                .filter(session -> session.getLastActivity() < cutoff)
+                .map(UploadSession::getUploadId)
+                .collect(Collectors.toList());
+
+        expired.forEach(uploadSessions::remove);
+        if (!expired.isEmpty()) {
+            saveUploadSessions();
+            System.out.println("   [SESSION] Sesiones de upload expiradas: " + expired.size());
+        }
+        return expired.size();
+    }
+
+    private UploadSession findUploadSession(String uploadId) {
+        UploadSession session = uploadSessions.get(uploadId);
+        if (session == null) {
+            throw new RuntimeException("Sesión de upload no encontrada: " + uploadId);
+        }
+        return session;
+    }
+
+    /**
+     * Reasigna réplicas no confirmadas cuyo servidor dejó de estar saludable
+     * o en el que el cliente reportó un fallo de escritura.
+     * Si no hay servidor de reemplazo y el original está caído, la réplica se
+     * descarta del plan (mientras quede otra) y el IntegrityMonitor la repone luego
+     */
+    private boolean replanReplicas(UploadSession session, Map<Integer, Set<String>> failedWrites) {
+        List<String> healthyServers = getHealthyChunkservers();
+        List<String> candidates = sortServersByLoad(healthyServers);
+        Set<String> suspects = new HashSet<>();
+        failedWrites.values().forEach(suspects::addAll);
+        boolean changed = false;
+
+        Iterator<ChunkLocation> iterator = session.getPlan().iterator();
+        while (iterator.hasNext()) {
+            ChunkLocation location = iterator.next();
+            int chunkIndex = location.getChunkIndex();
+            String current = location.getChunkserverUrl();
+
+            boolean healthy = healthyServers.contains(current);
+            boolean failed = failedWrites.getOrDefault(chunkIndex, Collections.emptySet()).contains(current);
+            if ((healthy && !failed) || session.isConfirmed(chunkIndex, current)) {
+                continue;
+            }
+
+            List<ChunkLocation> planned = session.plannedReplicas(chunkIndex);
+            Set<String> used = planned.stream()
+                    .map(ChunkLocation::getChunkserverUrl)
+                    .collect(Collectors.toSet());
+            Optional<String> replacement = candidates.stream()
+                    .filter(server -> !used.contains(server) && !suspects.contains(server))
+                    .findFirst();
+
+            if (replacement.isPresent()) {
+                location.setChunkserverUrl(replacement.get());
+                changed = true;
+                System.out.println("   [SESSION] Chunk " + chunkIndex + " re-planificado: " +
+                                   extractServerId(current) + " -> " + extractServerId(replacement.get()));
+            } else if (!healthy && planned.size() > 1) {
+                iterator.remove();
+                changed = true;
+                System.out.println("   [SESSION] Chunk " + chunkIndex + ": réplica en " +
+                                   extractServerId(current) + " descartada (sin servidor de reemplazo)");
+            }
+        }
+
+        if (changed) {
+            session.setLastActivity(System.currentTimeMillis());
+        }
+        return changed;
+    }
+
     /**
      * Selección de servidores con balanceo de carga mejorado
      */
     private List<String> selectServersForChunkWithLoadBalancing(
             List<String> availableServers, int chunkIndex) {
 
+        // Ordenar servidores por carga (menor primero)
+        List<String> sortedServers = sortServersByLoad(availableServers);
+
+        // Aplicar rotación ligera para evitar siempre elegir los mismos
+        Collections.rotate(sortedServers, -(chunkIndex % sortedServers.size()));
+
+        // Seleccionar los N menos cargados
+        int numReplicas = Math.min(REPLICATION_FACTOR, sortedServers.size());
+        return new ArrayList<>(sortedServers.subList(0, numReplicas));
+    }
+
+    /**
+     * Ordena servidores por carga actual (menor primero)
+     */
+    private List<String> sortServersByLoad(List<String> availableServers) {
         // Calcular carga actual de cada servidor
         Map<String, ServerLoad> serverLoads = calculateServerLoads(availableServers);
 
-        // Ordenar servidores por carga (menor primero)
-        List<String> sortedServers = availableServers.stream()
+        return availableServers.stream()
                 .sorted((s1, s2) -> {
                     ServerLoad load1 = serverLoads.get(s1);
                     ServerLoad load2 = serverLoads.get(s2);
@@ -129,13 +517,6 @@ public class MasterService {
                     return Long.compare(load1.storageUsed, load2.storageUsed);
                 })
                 .collect(Collectors.toList());
-
-        // Aplicar rotación ligera para evitar siempre elegir los mismos
-        Collections.rotate(sortedServers, -(chunkIndex % sortedServers.size()));
-
-        // Seleccionar los N menos cargados
-        int numReplicas = Math.min(REPLICATION_FACTOR, sortedServers.size());
-        return new ArrayList<>(sortedServers.subList(0, numReplicas));
     }
 
     /**
@@ -201,6 +582,8 @@ public class MasterService {
 
         if (!exists) {
             metadata.getChunks().add(newReplica);
+            indexReplica(newReplica, 1);
+            bumpVersion(metadata);
             saveMetadata();
         }
     }
@@ -215,18 +598,217 @@ public class MasterService {
         }
 
         // Remover la réplica específica
-        boolean removed = metadata.getChunks().removeIf(c ->
-                c.getChunkIndex() == chunkIndex &&
-                c.getChunkserverUrl().equals(chunkserverUrl)
-        );
+        List<ChunkLocation> toRemove = metadata.getChunks().stream()
+                .filter(c -> c.getChunkIndex() == chunkIndex && c.getChunkserverUrl().equals(chunkserverUrl))
+                .collect(Collectors.toList());
+        boolean removed = metadata.getChunks().removeAll(toRemove);
+        toRemove.forEach(location -> indexReplica(location, -1));
 
         if (removed) {
+            bumpVersion(metadata);
             saveMetadata();
             System.out.println("   [METADATA] Réplica removida: PDF=" + pdfId +
                                ", Chunk=" + chunkIndex + ", Server=" + chunkserverUrl);
         }
     }
 
+    /**
+     * Registra las réplicas que quedan escribiéndose en segundo plano
+     * Vencido PENDING_REPLICA_GRACE_MS, el IntegrityMonitor las repone por su cuenta
+     */
+    private void registerPendingReplicas(String pdfId, List<ChunkLocation> pending) {
+        long deadline = System.currentTimeMillis() + PENDING_REPLICA_GRACE_MS;
+        for (ChunkLocation location : pending) {
+            pendingReplicas.computeIfAbsent(pdfId + ":" + location.getChunkIndex(), k -> new ConcurrentHashMap<>())
+                    .put(location.getChunkserverUrl(), new PendingReplica(location, deadline));
+        }
+        if (!pending.isEmpty()) {
+            System.out.println("   [SESSION] " + pending.size() + " réplicas pendientes (quórum de escritura): " + pdfId);
+        }
+    }
+
+    /**
+     * Registra una réplica pendiente que el cliente terminó de escribir
+     * Retorna false si la réplica ya no estaba pendiente (PDF reemplazado o eliminado)
+     */
+    public boolean completePendingReplica(String pdfId, int chunkIndex, String chunkserverUrl) {
+        PendingReplica pending = removePendingReplica(pdfId, chunkIndex, chunkserverUrl);
+        if (pending == null || !pdfMetadataStore.containsKey(pdfId)) {
+            return false;
+        }
+        addChunkReplica(pdfId, pending.location);
+        System.out.println("   [METADATA] Réplica pendiente completada: PDF=" + pdfId +
+                           ", Chunk=" + chunkIndex + ", Server=" + chunkserverUrl);
+        return true;
+    }
+
+    /**
+     * Descarta una réplica pendiente cuya escritura falló
+     * El IntegrityMonitor la repone en la siguiente verificación
+     */
+    public void abandonPendingReplica(String pdfId, int chunkIndex, String chunkserverUrl) {
+        if (removePendingReplica(pdfId, chunkIndex, chunkserverUrl) != null) {
+            System.out.println("   [METADATA] Réplica pendiente descartada: PDF=" + pdfId +
+                               ", Chunk=" + chunkIndex + ", Server=" + chunkserverUrl);
+        }
+    }
+
+    /**
+     * Registra las réplicas que la cadena de replicación terminó después de responder
+     * al cliente con el quórum: con la sesión abierta se confirman en ella; ya confirmada,
+     * se completan o descartan como réplicas pendientes
+     */
+    public void reportDeferredReplicas(String uploadId, String pdfId, int chunkIndex,
+                                       List<String> stored, List<String> failed) {
+        UploadSession session = uploadSessions.get(uploadId);
+        boolean open = false;
+        if (session != null) {
+            synchronized (session) {
+                open = !session.isCommitted();
+                if (open) {
+                    session.confirm(chunkIndex, stored);
+                }
+            }
+        }
+        if (open) {
+            saveUploadSessions();
+            return;
+        }
+        stored.forEach(url -> completePendingReplica(pdfId, chunkIndex, url));
+        failed.forEach(url -> abandonPendingReplica(pdfId, chunkIndex, url));
+    }
+
+    /**
+     * Servidores con una réplica pendiente y vigente de un chunk; descarta las vencidas
+     */
+    public Set<String> getPendingReplicaServers(String pdfId, int chunkIndex) {
+        Map<String, PendingReplica> replicas = pendingReplicas.get(pdfId + ":" + chunkIndex);
+        if (replicas == null) {
+            return Collections.emptySet();
+        }
+        long now = System.currentTimeMillis();
+        replicas.values().removeIf(pending -> pending.deadline < now);
+        if (replicas.isEmpty()) {
+            pendingReplicas.remove(pdfId + ":" + chunkIndex, replicas);
+        }
+        return new HashSet<>(replicas.keySet());
+    }
+
+    private PendingReplica removePendingReplica(String pdfId, int chunkIndex, String chunkserverUrl) {
+        Map<String, PendingReplica> replicas = pendingReplicas.get(pdfId + ":" + chunkIndex);
+        if (replicas == null) {
+            return null;
+        }
+        PendingReplica pending = replicas.remove(chunkserverUrl);
+        if (replicas.isEmpty()) {
+            pendingReplicas.remove(pdfId + ":" + chunkIndex, replicas);
+        }
+        return pending;
+    }
+
+    private void clearPendingReplicas(String pdfId) {
+        pendingReplicas.keySet().removeIf(key -> key.substring(0, key.lastIndexOf(':')).equals(pdfId));
+    }
+
+    /**
+     * Publica los metadatos de un PDF reemplazando la versión anterior
+     * y actualiza el índice de contenido
+     */
+    private void publishMetadata(PdfMetadata metadata) {
+        publishMetadata(metadata, true);
+    }
+
+    /**
+     * Sin persist la escritura a disco queda a cargo del llamador (operaciones en lote)
+     */
+    private void publishMetadata(PdfMetadata metadata, boolean persist) {
+        // Las escrituras en curso y el índice de páginas de la versión anterior ya no valen
+        clearPendingReplicas(metadata.getPdfId());
+        if (pageIndexes.remove(metadata.getPdfId()) != null) {
+            savePageIndexes();
+        }
+        PdfMetadata previous = pdfMetadataStore.put(metadata.getPdfId(), metadata);
+        if (previous != null) {
+            indexContent(previous, -1);
+        }
+        indexContent(metadata, 1);
+        if (persist) {
+            saveMetadata();
+        }
+    }
+
+    /**
+     * Servidores saludables que ya guardan un contenido
+     */
+    private List<String> findStoredContent(String contentHash, List<String> healthyServers) {
+        synchronized (contentIndex) {
+            ContentEntry entry = contentIndex.get(contentHash);
+            if (entry == null) {
+                return Collections.emptyList();
+            }
+            return entry.replicas.keySet().stream()
+                    .filter(healthyServers::contains)
+                    .limit(REPLICATION_FACTOR)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Indica si la copia de un contenido en un servidor la referencian otros chunks,
+     * en cuyo caso no debe borrarse físicamente
+     */
+    public boolean isSharedReplica(String contentHash, String chunkserverUrl) {
+        synchronized (contentIndex) {
+            ContentEntry entry = contentIndex.get(contentHash);
+            return entry != null && entry.replicas.getOrDefault(chunkserverUrl, 0) > 1;
+        }
+    }
+
+    /**
+     * Suma (delta=1) o resta (delta=-1) las referencias de un PDF al índice de contenido
+     */
+    private void indexContent(PdfMetadata metadata, int delta) {
+        synchronized (contentIndex) {
+            Set<Integer> counted = new HashSet<>();
+            for (ChunkLocation location : metadata.getChunks()) {
+                if (location.getContentHash() == null) {
+                    continue;
+                }
+                ContentEntry entry = contentIndex.computeIfAbsent(location.getContentHash(),
+                        k -> new ContentEntry());
+                if (counted.add(location.getChunkIndex())) {
+                    entry.references += delta;
+                }
+                entry.replicas.merge(location.getChunkserverUrl(), delta, Integer::sum);
+                entry.replicas.values().removeIf(count -> count <= 0);
+                if (entry.references <= 0) {
+                    contentIndex.remove(location.getContentHash());
+                }
+            }
+        }
+    }
+
+    private void indexReplica(ChunkLocation location, int delta) {
+        if (location.getContentHash() == null) {
+            return;
+        }
+        synchronized (contentIndex) {
+            ContentEntry entry = contentIndex.get(location.getContentHash());
+            if (entry != null) {
+                entry.replicas.merge(location.getChunkserverUrl(), delta, Integer::sum);
+                entry.replicas.values().removeIf(count -> count <= 0);
+            }
+        }
+    }
+
+    /**
+     * Asigna una nueva versión a los metadatos de un PDF
+     * Los clientes la usan (vía ETag) para revalidar su caché de ubicaciones
+     */
+    private void bumpVersion(PdfMetadata metadata) {
+        metadata.setVersion(versionCounter.incrementAndGet());
+    }
+
     /**
      * Obtiene metadatos de un PDF
      */
@@ -239,6 +821,8 @@ public class MasterService {
         // Filtrar solo réplicas en servidores activos
         List<String> healthyServers = getHealthyChunkservers();
         PdfMetadata filtered = new PdfMetadata(metadata.getPdfId(), metadata.getSize());
+        filtered.setTimestamp(metadata.getTimestamp());
+        filtered.setVersion(metadata.getVersion());
 
         for (ChunkLocation chunk : metadata.getChunks()) {
             if (healthyServers.contains(chunk.getChunkserverUrl())) {
@@ -342,6 +926,7 @@ public class MasterService {
 
         status.put("totalChunks", totalChunks);
         status.put("totalReplicas", totalReplicas);
+        status.put("pendingReplicas", pendingReplicas.values().stream().mapToInt(Map::size).sum());
 
         // Estadísticas de balanceo de carga
         Map<String, Integer> loadPerServer = new HashMap<>();
@@ -353,6 +938,16 @@ public class MasterService {
         }
         status.put("loadDistribution", loadPerServer);
 
+        // Estadísticas de deduplicación
+        synchronized (contentIndex) {
+            int references = contentIndex.values().stream().mapToInt(entry -> entry.references).sum();
+            Map<String, Object> dedup = new HashMap<>();
+            dedup.put("uniqueContentChunks", contentIndex.size());
+            dedup.put("contentReferences", references);
+            dedup.put("chunksSaved", references - contentIndex.size());
+            status.put("dedup", dedup);
+        }
+
         return status;
     }
 
@@ -367,7 +962,15 @@ public class MasterService {
      * Elimina un PDF
      */
     public void deletePdf(String pdfId) {
-        pdfMetadataStore.remove(pdfId);
+        PdfMetadata removed = pdfMetadataStore.remove(pdfId);
+        clearPendingReplicas(pdfId);
+        if (pageIndexes.remove(pdfId) != null) {
+            savePageIndexes();
+        }
+        if (removed != null) {
+            // Los chunks compartidos sin referencias quedan para el garbage collector
+            indexContent(removed, -1);
+        }
         saveMetadata();
         System.out.println("[DELETE] PDF eliminado de metadatos: " + pdfId);
     }
@@ -396,6 +999,13 @@ public class MasterService {
                         objectMapper.getTypeFactory().constructMapType(
                                 HashMap.class, String.class, PdfMetadata.class));
                 pdfMetadataStore.putAll(loaded);
+                loaded.values().forEach(metadata -> indexContent(metadata, 1));
+
+                // Las versiones nuevas deben superar a las persistidas
+                loaded.values().stream()
+                        .mapToLong(PdfMetadata::getVersion)
+                        .max()
+                        .ifPresent(max -> versionCounter.accumulateAndGet(max, Math::max));
                 System.out.println("[OK] Metadatos cargados: " + pdfMetadataStore.size() + " PDFs");
             }
         } catch (IOException e) {
@@ -403,6 +1013,110 @@ public class MasterService {
         }
     }
 
+    /**
+     * Guarda las sesiones de upload abiertas en disco
+     */
+    private synchronized void saveUploadSessions() {
+        try {
+            File file = new File(metadataPath + "/upload-sessions.json");
+            objectMapper.writerWithDefaultPrettyPrinter()
+                    .writeValue(file, uploadSessions);
+        } catch (IOException e) {
+            System.err.println("[WARN] Error guardando sesiones de upload: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Carga las sesiones de upload abiertas desde disco
+     */
+    private void loadUploadSessions() {
+        try {
+            File file = new File(metadataPath + "/upload-sessions.json");
+            if (file.exists()) {
+                Map<String, UploadSession> loaded = objectMapper.readValue(file,
+                        objectMapper.getTypeFactory().constructMapType(
+                                HashMap.class, String.class, UploadSession.class));
+                uploadSessions.putAll(loaded);
+                System.out.println("[OK] Sesiones de upload cargadas: " + uploadSessions.size());
+            }
+        } catch (IOException e) {
+            System.err.println("[WARN] Error cargando sesiones de upload: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Guarda el índice de páginas de un PDF
+     * Solo se acepta para la versión publicada (mismo timestamp de metadatos)
+     */
+    public void savePageIndex(String pdfId, PageIndex pageIndex) {
+        PdfMetadata metadata = pdfMetadataStore.get(pdfId);
+        if (metadata == null) {
+            throw new RuntimeException("PDF no encontrado: " + pdfId);
+        }
+        if (metadata.getTimestamp() != pageIndex.getTimestamp()) {
+            throw new IllegalStateException("El índice no corresponde a la versión publicada de " + pdfId);
+        }
+        if (pageIndex.getPages() == null) {
+            throw new IllegalArgumentException("Faltan las páginas del índice");
+        }
+        // Los rangos base se suman a los de cada página al servirla: se validan igual
+        checkRanges(pageIndex.getBaseRanges(), metadata.getSize());
+        for (PageIndex.PageEntry page : pageIndex.getPages()) {
+            checkRanges(page.getRanges(), metadata.getSize());
+        }
+
+        pageIndex.setPdfId(pdfId);
+        pageIndexes.put(pdfId, pageIndex);
+        savePageIndexes();
+        System.out.println("[PAGES] Índice de páginas guardado: " + pdfId + " (" +
+                           pageIndex.getPageCount() + " páginas)");
+    }
+
+    /**
+     * Verifica que cada rango sea [inicio, fin) dentro de [0, size)
+     */
+    private static void checkRanges(List<long[]> ranges, long size) {
+        if (ranges == null) {
+            throw new IllegalArgumentException("Faltan rangos de bytes en el índice de páginas");
+        }
+        for (long[] range : ranges) {
+            if (range == null || range.length != 2 || range[0] < 0 || range[1] > size || range[0] >= range[1]) {
+                throw new IllegalArgumentException("Rango de bytes inválido en el índice de páginas");
+            }
+        }
+    }
+
+    /**
+     * Obtiene el índice de páginas de un PDF o null si no fue indexado
+     */
+    public PageIndex getPageIndex(String pdfId) {
+        return pageIndexes.get(pdfId);
+    }
+
+    private synchronized void savePageIndexes() {
+        try {
+            File file = new File(metadataPath + "/page-index.json");
+            objectMapper.writeValue(file, pageIndexes);
+        } catch (IOException e) {
+            System.err.println("[WARN] Error guardando índices de páginas: " + e.getMessage());
+        }
+    }
+
+    private void loadPageIndexes() {
+        try {
+            File file = new File(metadataPath + "/page-index.json");
+            if (file.exists()) {
+                Map<String, PageIndex> loaded = objectMapper.readValue(file,
+                        objectMapper.getTypeFactory().constructMapType(
+                                HashMap.class, String.class, PageIndex.class));
+                pageIndexes.putAll(loaded);
+                System.out.println("[OK] Índices de páginas cargados: " + pageIndexes.size());
+            }
+        } catch (IOException e) {
+            System.err.println("[WARN] Error cargando índices de páginas: " + e.getMessage());
+        }
+    }
+
     /**
      * Obtiene inventario de un chunkserver
      */
@@ -424,6 +1138,23 @@ public class MasterService {
         return url;
     }
 
+    /**
+     * La sesión no puede confirmarse: faltan réplicas de algunos chunks
+     * Lleva los chunks pendientes leídos al intentar confirmar, sin volver a planificar
+     */
+    public static class IncompleteSessionException extends IllegalStateException {
+        private final List<Integer> missingChunks;
+
+        public IncompleteSessionException(List<Integer> missingChunks) {
+            super("Faltan " + missingChunks.size() + " chunks por completar");
+            this.missingChunks = List.copyOf(missingChunks);
+        }
+
+        public List<Integer> getMissingChunks() {
+            return missingChunks;
+        }
+    }
+
     /**
      * Clase interna para información de chunkserver
      */
@@ -463,6 +1194,29 @@ public class MasterService {
         }
     }
 
+    /**
+     * Clase interna para una entrada del índice de contenido
+     * replicas: servidor -> cantidad de chunks que apuntan a esa copia
+     * references: cantidad de chunks (PDF, índice) que usan el contenido
+     */
+    private static class ContentEntry {
+        final Map<String, Integer> replicas = new HashMap<>();
+        int references = 0;
+    }
+
+    /**
+     * Clase interna para una réplica planificada que se escribe después del commit
+     */
+    private static class PendingReplica {
+        final ChunkLocation location;
+        final long deadline;
+
+        PendingReplica(ChunkLocation location, long deadline) {
+            this.location = location;
+            this.deadline = deadline;
+        }
+    }
+
     /**
      * Clase interna para tracking de carga de servidor
      */
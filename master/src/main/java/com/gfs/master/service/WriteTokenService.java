@@ -0,0 +1,69 @@
+package com.gfs.master.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+
+/**
+ * Tokens de escritura para las copias de chunks que hace el Master al reparar réplicas
+ * - Mismo formato y secreto que los tokens del cliente GFS (gfs.write-token.secret)
+ * - Tokens de borrado para la recolección de basura y el exceso de réplicas
+ * - Con secreto configurado los chunkservers rechazan escrituras y borrados sin token
+ */
+@Service
+public class WriteTokenService {
+
+    public static final String TOKEN_HEADER = "X-GFS-Write-Token";
+    public static final String DELETE_TOKEN_HEADER = "X-GFS-Delete-Token";
+
+    @Value("${gfs.write-token.secret:}")
+    private String SECRET;
+
+    @Value("${gfs.write-token.ttl-seconds:900}")
+    private long TTL_SECONDS;
+
+    public boolean isEnabled() {
+        return !SECRET.isEmpty();
+    }
+
+    /**
+     * Emite un token para escribir un chunk en un único chunkserver
+     */
+    public String issue(String storageId, int storageIndex, int length, String chunkserverUrl) {
+        long expiresAt = System.currentTimeMillis() + TTL_SECONDS * 1000;
+        return token("write", String.join("\n", storageId, String.valueOf(storageIndex),
+                String.valueOf(length), "", chunkserverUrl, String.valueOf(expiresAt)));
+    }
+
+    /**
+     * Emite un token para borrar un chunk de un único chunkserver
+     * Se firma con otro propósito: un token de escritura no sirve para borrar
+     */
+    public String issueDelete(String storageId, int storageIndex, String chunkserverUrl) {
+        long expiresAt = System.currentTimeMillis() + TTL_SECONDS * 1000;
+        return token("delete", String.join("\n", storageId, String.valueOf(storageIndex),
+                chunkserverUrl, String.valueOf(expiresAt)));
+    }
+
+    private String token(String purpose, String claims) {
+        String payload = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(claims.getBytes(StandardCharsets.UTF_8));
+        return payload + "." + sign(purpose + "\n" + payload);
+    }
+
+    private String sign(String value) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(mac.doFinal(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.gfs.master.service;
+
+import com.gfs.master.model.ChunkLocation;
+import com.gfs.master.model.PageIndex;
+import com.gfs.master.model.PdfMetadata;
+import com.gfs.master.model.UploadSession;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MasterServiceTest {
+
+    private static final int CHUNK_SIZE = 4;
+    private static final List<String> SERVERS = List.of(
+            "http://localhost:9001", "http://localhost:9002", "http://localhost:9003", "http://localhost:9004");
+
+    @TempDir
+    Path metadataDir;
+
+    private MasterService masterService;
+
+    @BeforeEach
+    void setUp() {
+        masterService = new MasterService();
+        ReflectionTestUtils.setField(masterService, "CHUNK_SIZE", CHUNK_SIZE);
+        ReflectionTestUtils.setField(masterService, "REPLICATION_FACTOR", 3);
+        ReflectionTestUtils.setField(masterService, "metadataPath", metadataDir.toString());
+        ReflectionTestUtils.setField(masterService, "UPLOAD_SESSION_TTL_MS", 86_400_000L);
+        ReflectionTestUtils.setField(masterService, "PENDING_REPLICA_GRACE_MS", 60_000L);
+        masterService.init();
+        for (int i = 0; i < SERVERS.size(); i++) {
+            masterService.registerChunkserver(SERVERS.get(i), "chunkserver-" + (i + 1));
+        }
+    }
+
+    @Test
+    void commitFailsUntilEveryChunkIsConfirmed() {
+        UploadSession session = masterService.createUploadSession("doc.pdf", 2 * CHUNK_SIZE, null, 0);
+        confirm(session, 0, replicaUrls(session, 0));
+
+        MasterService.IncompleteSessionException incomplete = assertThrows(
+                MasterService.IncompleteSessionException.class,
+                () -> masterService.commitUploadSession(session.getUploadId()));
+        assertEquals(List.of(1), incomplete.getMissingChunks());
+
+        confirm(session, 1, replicaUrls(session, 1));
+        PdfMetadata metadata = masterService.commitUploadSession(session.getUploadId());
+
+        assertEquals(6, metadata.getChunks().size());
+        assertEquals(6, masterService.getMetadata("doc.pdf").getChunks().size());
+        assertThrows(RuntimeException.class, () -> masterService.getUploadSession(session.getUploadId()));
+    }
+
+    @Test
+    void concurrentCommitDoesNotPublishTwice() {
+        UploadSession session = masterService.createUploadSession("doc.pdf", CHUNK_SIZE, null, 0);
+        confirm(session, 0, replicaUrls(session, 0));
+        long version = masterService.commitUploadSession(session.getUploadId()).getVersion();
+
+        // Una segunda confirmación que obtuvo la sesión antes de que la primera la quitara
+        @SuppressWarnings("unchecked")
+        Map<String, UploadSession> uploadSessions =
+                (Map<String, UploadSession>) ReflectionTestUtils.getField(masterService, "uploadSessions");
+        uploadSessions.put(session.getUploadId(), session);
+
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> masterService.commitUploadSession(session.getUploadId()));
+        assertFalse(error instanceof IllegalStateException);
+        assertEquals(version, masterService.getMetadata("doc.pdf").getVersion());
+    }
+
+    @Test
+    void quorumCommitLeavesUnconfirmedReplicasPending() {
+        UploadSession session = masterService.createUploadSession("doc.pdf", CHUNK_SIZE, null, 2);
+        List<String> planned = replicaUrls(session, 0);
+        confirm(session, 0, planned.subList(0, 2));
+
+        PdfMetadata metadata = masterService.commitUploadSession(session.getUploadId());
+
+        assertEquals(Set.copyOf(planned.subList(0, 2)), servers(metadata, 0));
+        assertEquals(Set.of(planned.get(2)), masterService.getPendingReplicaServers("doc.pdf", 0));
+
+        assertTrue(masterService.completePendingReplica("doc.pdf", 0, planned.get(2)));
+        assertEquals(Set.copyOf(planned), servers(masterService.getMetadata("doc.pdf"), 0));
+        assertTrue(masterService.getPendingReplicaServers("doc.pdf", 0).isEmpty());
+        assertFalse(masterService.completePendingReplica("doc.pdf", 0, planned.get(2)));
+    }
+
+    @Test
+    void abandonedPendingReplicaIsNotPublished() {
+        UploadSession session = masterService.createUploadSession("doc.pdf", CHUNK_SIZE, null, 2);
+        List<String> planned = replicaUrls(session, 0);
+        confirm(session, 0, planned.subList(0, 2));
+        masterService.commitUploadSession(session.getUploadId());
+
+        masterService.abandonPendingReplica("doc.pdf", 0, planned.get(2));
+
+        assertTrue(masterService.getPendingReplicaServers("doc.pdf", 0).isEmpty());
+        assertFalse(masterService.completePendingReplica("doc.pdf", 0, planned.get(2)));
+        assertEquals(2, masterService.getMetadata("doc.pdf").getChunks().size());
+    }
+
+    @Test
+    void deferredReplicasConfirmOpenSessionOrCompleteCommittedOne() {
+        UploadSession open = masterService.createUploadSession("open.pdf", CHUNK_SIZE, null, 2);
+        List<String> openPlan = replicaUrls(open, 0);
+        masterService.reportDeferredReplicas(open.getUploadId(), "open.pdf", 0, List.of(openPlan.get(2)), List.of());
+        confirm(open, 0, openPlan.subList(0, 2));
+
+        assertEquals(3, masterService.commitUploadSession(open.getUploadId()).getChunks().size());
+        assertTrue(masterService.getPendingReplicaServers("open.pdf", 0).isEmpty());
+
+        UploadSession committed = masterService.createUploadSession("late.pdf", CHUNK_SIZE, null, 1);
+        List<String> latePlan = replicaUrls(committed, 0);
+        confirm(committed, 0, latePlan.subList(0, 1));
+        masterService.commitUploadSession(committed.getUploadId());
+        masterService.reportDeferredReplicas(committed.getUploadId(), "late.pdf", 0,
+                List.of(latePlan.get(1)), List.of(latePlan.get(2)));
+
+        assertEquals(Set.copyOf(latePlan.subList(0, 2)), servers(masterService.getMetadata("late.pdf"), 0));
+        assertTrue(masterService.getPendingReplicaServers("late.pdf", 0).isEmpty());
+    }
+
+    @Test
+    void sharedContentIsReusedAndReferenceCounted() {
+        String hash = "a".repeat(64);
+        UploadSession first = masterService.createUploadSession("first.pdf", CHUNK_SIZE, List.of(hash), 0);
+        List<String> planned = replicaUrls(first, 0);
+        confirm(first, 0, planned);
+        masterService.commitUploadSession(first.getUploadId());
+        assertFalse(masterService.isSharedReplica(hash, planned.get(0)));
+
+        // El mismo contenido en otro PDF no envía bytes: la sesión se confirma al abrirse
+        UploadSession second = masterService.createUploadSession("second.pdf", CHUNK_SIZE, List.of(hash), 0);
+        assertEquals(List.of(0), second.getAlreadyStored());
+        assertTrue(second.isCommitted());
+        assertEquals(Set.copyOf(planned), servers(masterService.getMetadata("second.pdf"), 0));
+        assertTrue(masterService.isSharedReplica(hash, planned.get(0)));
+
+        masterService.deletePdf("first.pdf");
+        assertFalse(masterService.isSharedReplica(hash, planned.get(0)));
+
+        // Sin referencias el contenido deja de reutilizarse
+        masterService.deletePdf("second.pdf");
+        UploadSession third = masterService.createUploadSession("third.pdf", CHUNK_SIZE, List.of(hash), 0);
+        assertTrue(third.getAlreadyStored().isEmpty());
+    }
+
+    @Test
+    void repeatedContentWithinFileSharesPlan() {
+        String hash = "b".repeat(64);
+        UploadSession session = masterService.createUploadSession("dup.pdf", 2 * CHUNK_SIZE,
+                List.of(hash, hash), 0);
+
+        assertEquals(replicaUrls(session, 0), replicaUrls(session, 1));
+    }
+
+    @Test
+    void pageIndexRangesMustFallInsideThePdf() {
+        UploadSession session = masterService.createUploadSession("doc.pdf", 2 * CHUNK_SIZE, null, 0);
+        confirm(session, 0, replicaUrls(session, 0));
+        confirm(session, 1, replicaUrls(session, 1));
+        long timestamp = masterService.commitUploadSession(session.getUploadId()).getTimestamp();
+
+        assertThrows(IllegalArgumentException.class, () -> masterService.savePageIndex("doc.pdf",
+                pageIndex(timestamp, List.of(new long[]{0, 2}, new long[]{6, 9}), List.of(new long[]{2, 4}))));
+        assertThrows(IllegalArgumentException.class, () -> masterService.savePageIndex("doc.pdf",
+                pageIndex(timestamp, List.of(new long[]{-1, 2}), List.of(new long[]{2, 4}))));
+        assertThrows(IllegalArgumentException.class, () -> masterService.savePageIndex("doc.pdf",
+                pageIndex(timestamp, List.of(new long[]{0, 2}), List.of(new long[]{4, 4}))));
+        assertNull(masterService.getPageIndex("doc.pdf"));
+
+        masterService.savePageIndex("doc.pdf",
+                pageIndex(timestamp, List.of(new long[]{0, 2}, new long[]{6, 8}), List.of(new long[]{2, 4})));
+        assertEquals(1, masterService.getPageIndex("doc.pdf").getPageCount());
+    }
+
+    private static PageIndex pageIndex(long timestamp, List<long[]> baseRanges, List<long[]> pageRanges) {
+        PageIndex.PageEntry page = new PageIndex.PageEntry();
+        page.setObjectNumber(3);
+        page.setRanges(pageRanges);
+
+        PageIndex pageIndex = new PageIndex();
+        pageIndex.setTimestamp(timestamp);
+        pageIndex.setBaseRanges(baseRanges);
+        pageIndex.setPages(List.of(page));
+        return pageIndex;
+    }
+
+    private void confirm(UploadSession session, int chunkIndex, List<String> replicas) {
+        masterService.confirmUploadChunks(session.getUploadId(),
+                List.of(Map.of("chunkIndex", chunkIndex, "replicas", replicas)));
+    }
+
+    private static List<String> replicaUrls(UploadSession session, int chunkIndex) {
+        return session.plannedReplicas(chunkIndex).stream()
+                .map(ChunkLocation::getChunkserverUrl)
+                .collect(Collectors.toList());
+    }
+
+    private static Set<String> servers(PdfMetadata metadata, int chunkIndex) {
+        Set<String> servers = new HashSet<>();
+        for (ChunkLocation location : metadata.getChunks()) {
+            if (location.getChunkIndex() == chunkIndex) {
+                servers.add(location.getChunkserverUrl());
+            }
+        }
+        return servers;
+    }
+}